@@ -0,0 +1,92 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import net.katsstuff.arbaro.export.Console;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeGenerator;
+import net.katsstuff.arbaro.tree.TreeGeneratorFactory;
+
+/**
+ * Loads the bundled tree species for the benchmarks. The directory with the xml files is taken from the system property
+ * arbaro.trees, otherwise it is searched as trees or ../trees from the working directory.
+ */
+final class BenchmarkTrees {
+
+	// the species bundled in the trees directory. A parameter's values have to
+	// be listed in the @Param annotation, so every species is a constant
+	static final String BARLEY = "barley";
+	static final String BLACK_TUPELO = "black_tupelo";
+	static final String CA_BLACK_OAK = "ca_black_oak";
+	static final String DESERT_BUSH = "desert_bush";
+	static final String EASTERN_COTTONWOOD = "eastern_cottonwood";
+	static final String EUROPEAN_LARCH = "european_larch";
+	static final String FANPALM = "fanpalm";
+	static final String LOMBARDY_POPLAR = "lombardy_poplar";
+	static final String PALM = "palm";
+	static final String QUAKING_ASPEN = "quaking_aspen";
+	static final String RUSH = "rush";
+	static final String SASSAFRAS = "sassafras";
+	static final String SHAVE_GRASS = "shave-grass";
+	static final String TAMARACK = "tamarack";
+	static final String WEEPING_WILLOW = "weeping_willow";
+	static final String WHEAT = "wheat";
+
+	private BenchmarkTrees() {
+	}
+
+	static File treeFile(String species) {
+		String dir = System.getProperty("arbaro.trees");
+		if (dir == null) {
+			dir = new File("trees").isDirectory() ? "trees" : "../trees";
+		}
+		return new File(dir, species + ".xml");
+	}
+
+	/**
+	 * Creates a tree generator with the parameters of a species and the default seed
+	 *
+	 * @param species the file name of the species without .xml
+	 * @return the tree generator
+	 */
+	static TreeGenerator createTreeGenerator(String species) throws IOException {
+		Console.setOutputLevel(Console.REALLY_QUIET);
+		TreeGenerator treeGenerator = TreeGeneratorFactory.createTreeGenerator();
+		InputStream in = new FileInputStream(treeFile(species));
+		try {
+			treeGenerator.readParamsFromXML(in);
+		} finally {
+			in.close();
+		}
+		return treeGenerator;
+	}
+
+	static Tree makeTree(String species) throws IOException {
+		return createTreeGenerator(species).makeTree(new Progress());
+	}
+}
@@ -0,0 +1,102 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.mesh.LeafMesh;
+import net.katsstuff.arbaro.mesh.Mesh;
+import net.katsstuff.arbaro.mesh.MeshGenerator;
+import net.katsstuff.arbaro.mesh.MeshGeneratorFactory;
+import net.katsstuff.arbaro.tree.Tree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the mesh creation for a tree, which is made once per species
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MeshBenchmark {
+
+	@Param({
+		BenchmarkTrees.BARLEY,
+		BenchmarkTrees.BLACK_TUPELO,
+		BenchmarkTrees.CA_BLACK_OAK,
+		BenchmarkTrees.DESERT_BUSH,
+		BenchmarkTrees.EASTERN_COTTONWOOD,
+		BenchmarkTrees.EUROPEAN_LARCH,
+		BenchmarkTrees.FANPALM,
+		BenchmarkTrees.LOMBARDY_POPLAR,
+		BenchmarkTrees.PALM,
+		BenchmarkTrees.QUAKING_ASPEN,
+		BenchmarkTrees.RUSH,
+		BenchmarkTrees.SASSAFRAS,
+		BenchmarkTrees.SHAVE_GRASS,
+		BenchmarkTrees.TAMARACK,
+		BenchmarkTrees.WEEPING_WILLOW,
+		BenchmarkTrees.WHEAT
+	})
+	public String species;
+
+	@Param({"false", "true"})
+	public boolean useQuads;
+
+	private Tree tree;
+	private MeshGenerator meshGenerator;
+
+	@Setup
+	public void setup() throws IOException {
+		tree = BenchmarkTrees.makeTree(species);
+		meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads);
+	}
+
+	@Benchmark
+	public Mesh createStemMesh() {
+		return meshGenerator.createStemMesh(tree, new Progress());
+	}
+
+	@Benchmark
+	public Mesh createStemMeshByLevel() {
+		return meshGenerator.createStemMeshByLevel(tree, new Progress());
+	}
+
+	@Benchmark
+	public LeafMesh createLeafMesh() {
+		return meshGenerator.createLeafMesh(tree, useQuads);
+	}
+}
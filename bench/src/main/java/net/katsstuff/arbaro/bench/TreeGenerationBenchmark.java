@@ -0,0 +1,88 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures TreeGenerator.makeTree() for the bundled species
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TreeGenerationBenchmark {
+
+	@Param({
+		BenchmarkTrees.BARLEY,
+		BenchmarkTrees.BLACK_TUPELO,
+		BenchmarkTrees.CA_BLACK_OAK,
+		BenchmarkTrees.DESERT_BUSH,
+		BenchmarkTrees.EASTERN_COTTONWOOD,
+		BenchmarkTrees.EUROPEAN_LARCH,
+		BenchmarkTrees.FANPALM,
+		BenchmarkTrees.LOMBARDY_POPLAR,
+		BenchmarkTrees.PALM,
+		BenchmarkTrees.QUAKING_ASPEN,
+		BenchmarkTrees.RUSH,
+		BenchmarkTrees.SASSAFRAS,
+		BenchmarkTrees.SHAVE_GRASS,
+		BenchmarkTrees.TAMARACK,
+		BenchmarkTrees.WEEPING_WILLOW,
+		BenchmarkTrees.WHEAT
+	})
+	public String species;
+
+	@Param({"1"})
+	public int parallelism;
+
+	private TreeGenerator treeGenerator;
+
+	@Setup
+	public void setup() throws IOException {
+		treeGenerator = BenchmarkTrees.createTreeGenerator(species);
+		treeGenerator.setParallelism(parallelism);
+	}
+
+	@Benchmark
+	public Tree makeTree() {
+		return treeGenerator.makeTree(new Progress());
+	}
+}
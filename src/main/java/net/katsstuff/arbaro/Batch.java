@@ -0,0 +1,303 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.katsstuff.arbaro.export.Console;
+import net.katsstuff.arbaro.export.Exporter;
+import net.katsstuff.arbaro.export.ExporterFactory;
+import net.katsstuff.arbaro.export.InvalidExportFormatError;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.params.ParamException;
+import net.katsstuff.arbaro.params.Params;
+import net.katsstuff.arbaro.tree.CompactTree;
+import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeCache;
+import net.katsstuff.arbaro.tree.TreeGenerator;
+import net.katsstuff.arbaro.tree.TreeGeneratorFactory;
+
+/**
+ * Generates many trees in one process, e.g. the variants of a forest. The trees are listed in a manifest, every line
+ * has the form
+ * <pre>
+ *   species-file  seeds  format  output-pattern
+ * </pre>
+ * The seeds are a number, a range like 1-100 or a comma separated list of both. In the output pattern {species} and
+ * {seed} are replaced for every tree. Empty lines and lines beginning with # are ignored.
+ * <p>
+ * Every species file is read only once. The trees are made and written by a fixed number of workers, every tree with
+ * its own copy of the parameters.
+ */
+class Batch {
+
+	/**
+	 * One tree of the batch
+	 */
+	static class Job {
+		String speciesFile;
+		Params params;
+		int seed;
+		int format;
+		String outputPattern;
+
+		// results
+		String outputFile;
+		long makeMillis;
+		long exportMillis;
+		long stems;
+		long leaves;
+		Throwable error;
+	}
+
+	private final java.util.Vector jobs = new java.util.Vector();
+	private final Hashtable species = new Hashtable(); // species file -> Params
+
+	int workers = Runtime.getRuntime().availableProcessors();
+	int threads = 1;
+	int levels = -1;
+	double smooth = -1;
+	boolean positionalRandom = false;
+	boolean lazyLeaves = false;
+	boolean compact = false;
+	TreeCache cache = null;
+
+	/**
+	 * Reads the manifest and the species files given in it
+	 */
+	public void readManifest(InputStream in)
+		throws IOException, ParamException, InvalidExportFormatError {
+
+		BufferedReader r = new BufferedReader(new InputStreamReader(in));
+		String line;
+		int lineNo = 0;
+		while ((line = r.readLine()) != null) {
+			lineNo++;
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+
+			StringTokenizer tokens = new StringTokenizer(line);
+			if (tokens.countTokens() != 4) {
+				throw new ParamException("Manifest line " + lineNo
+										 + ": expected species file, seeds, format and output pattern");
+			}
+			String file = tokens.nextToken();
+			String seeds = tokens.nextToken();
+			int format = getExportFormat(tokens.nextToken());
+			String pattern = tokens.nextToken();
+
+			Params params = readSpecies(file);
+			for (StringTokenizer parts = new StringTokenizer(seeds, ","); parts.hasMoreTokens(); ) {
+				String part = parts.nextToken();
+				int dash = part.indexOf('-', 1);
+				int first;
+				int last;
+				try {
+					if (dash > 0) {
+						first = Integer.parseInt(part.substring(0, dash));
+						last = Integer.parseInt(part.substring(dash + 1));
+					} else {
+						first = last = Integer.parseInt(part);
+					}
+				} catch (NumberFormatException e) {
+					throw new ParamException("Manifest line " + lineNo + ": invalid seeds " + seeds);
+				}
+
+				for (int seed = first; seed <= last; seed++) {
+					Job job = new Job();
+					job.speciesFile = file;
+					job.params = params;
+					job.seed = seed;
+					job.format = format;
+					job.outputPattern = pattern;
+					jobs.addElement(job);
+				}
+			}
+		}
+	}
+
+	private static int getExportFormat(String format) throws InvalidExportFormatError {
+		String[] formats = ExporterFactory.getShortExportFormats();
+		for (int i = 0; i < formats.length; i++) {
+			if (formats[i].equals(format)) {
+				return i;
+			}
+		}
+		throw new InvalidExportFormatError("Invalid export format " + format + " in manifest.");
+	}
+
+	private Params readSpecies(String file) throws IOException {
+		Params params = (Params) species.get(file);
+		if (params == null) {
+			Console.verboseOutput("Reading parameters from " + file + "...");
+			params = new Params();
+			InputStream in = new FileInputStream(file);
+			try {
+				if (file.endsWith(".cfg")) {
+					params.readFromCfg(in);
+				} else {
+					params.readFromXML(in);
+				}
+			} finally {
+				in.close();
+			}
+			if (smooth >= 0) {
+				params.setParam("Smooth", Double.toString(smooth));
+			}
+			params.positionalRandom = positionalRandom;
+			params.lazyLeaves = lazyLeaves;
+			species.put(file, params);
+		}
+		return params;
+	}
+
+	public int size() {
+		return jobs.size();
+	}
+
+	/**
+	 * Makes and writes all trees of the manifest and reports the timings
+	 *
+	 * @return the number of failed trees
+	 */
+	public int run() throws InterruptedException {
+		long start = System.currentTimeMillis();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers));
+		java.util.Vector futures = new java.util.Vector();
+		try {
+			for (int i = 0; i < jobs.size(); i++) {
+				final Job job = (Job) jobs.elementAt(i);
+				futures.addElement(pool.submit(new Callable() {
+					public Object call() {
+						runJob(job);
+						return null;
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					((Future) futures.elementAt(i)).get();
+				} catch (ExecutionException e) {
+					// runJob records its failures in the job, this is only reached if recording failed too
+					Job job = (Job) jobs.elementAt(i);
+					if (job.error == null) {
+						job.error = e.getCause();
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		report(System.currentTimeMillis() - start);
+
+		int failed = 0;
+		for (int i = 0; i < jobs.size(); i++) {
+			if (((Job) jobs.elementAt(i)).error != null) {
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	private void runJob(Job job) {
+		try {
+			long start = System.nanoTime();
+			TreeGenerator treeGenerator =
+				TreeGeneratorFactory.createTreeGenerator(new Params(job.params));
+			treeGenerator.setSeed(job.seed);
+			treeGenerator.setParallelism(threads);
+			treeGenerator.setCache(cache);
+			Progress progress = new Progress();
+			Tree tree = treeGenerator.makeTree(progress);
+			if (compact) {
+				tree = CompactTree.compact(tree);
+			}
+			treeGenerator.getParams().stopLevel = levels;
+			long made = System.nanoTime();
+
+			job.outputFile = job.outputPattern
+				.replace("{species}", tree.getSpecies())
+				.replace("{seed}", Integer.toString(job.seed));
+			Exporter exporter = ExporterFactory.createExporter(tree, job.format);
+			OutputStream out = new FileOutputStream(job.outputFile);
+			try {
+				exporter.write(out, progress);
+			} finally {
+				out.close();
+			}
+
+			job.stems = tree.getStemCount();
+			job.leaves = tree.getLeafCount();
+			job.makeMillis = (made - start) / 1000000;
+			job.exportMillis = (System.nanoTime() - made) / 1000000;
+		} catch (Throwable e) {
+			// errors like OutOfMemoryError fail only this tree, the others can still be made
+			job.error = e;
+		}
+	}
+
+	private void report(long wallMillis) {
+		long makeMillis = 0;
+		long exportMillis = 0;
+		long stems = 0;
+		long leaves = 0;
+		int failed = 0;
+
+		for (int i = 0; i < jobs.size(); i++) {
+			Job job = (Job) jobs.elementAt(i);
+			if (job.error != null) {
+				failed++;
+				Console.errorOutput(job.speciesFile + " seed " + job.seed + ": FAILED " + job.error);
+				continue;
+			}
+			makeMillis += job.makeMillis;
+			exportMillis += job.exportMillis;
+			stems += job.stems;
+			leaves += job.leaves;
+			Console.errorOutput(job.outputFile + ": make " + job.makeMillis + " ms, export "
+								+ job.exportMillis + " ms, " + job.stems + " stems, "
+								+ job.leaves + " leaves");
+		}
+
+		Console.errorOutput(jobs.size() + " trees (" + failed + " failed) with " + workers
+							+ " workers in " + wallMillis + " ms, summed make " + makeMillis
+							+ " ms, export " + exportMillis + " ms, " + stems + " stems, "
+							+ leaves + " leaves");
+	}
+}
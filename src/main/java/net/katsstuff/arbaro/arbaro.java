@@ -24,8 +24,10 @@ package net.katsstuff.arbaro;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import net.katsstuff.arbaro.export.Console;
@@ -33,8 +35,12 @@ import net.katsstuff.arbaro.export.Exporter;
 import net.katsstuff.arbaro.export.ExporterFactory;
 import net.katsstuff.arbaro.export.InvalidExportFormatError;
 import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.mesh.LevelOfDetail;
 import net.katsstuff.arbaro.params.Params;
+import net.katsstuff.arbaro.tree.CompactTree;
 import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeCache;
+import net.katsstuff.arbaro.tree.TreeFile;
 import net.katsstuff.arbaro.tree.TreeGenerator;
 import net.katsstuff.arbaro.tree.TreeGeneratorFactory;
 
@@ -46,6 +52,7 @@ public class arbaro {
 
 	static int XMLinput = 0;
 	static int CFGinput = 1;
+	static int TREEinput = 2;
 	static int XMLoutput = 99;
 
 	static void println(String s) {
@@ -107,6 +114,10 @@ public class arbaro {
 		println("                         RIB       -- RenderMan RIB archive");
 		println("                         OBJ       -- Wavefront OBJ file");
 		println("                         DXF       -- Autocad DXF file");
+		println("                         PLY       -- binary Stanford PLY file");
+		println("                         STL       -- binary STL file");
+		println("                         GLB       -- binary glTF 2.0 file, the leaves");
+		println("                                      are instances of one leaf mesh");
 		println("                         The default is POV_CONES");
 		println();
 		println("    --uvleaves           For the export formats POV_MESH and OBJ:");
@@ -115,6 +126,26 @@ public class arbaro {
 		println("    --uvstems            For the export formats POV_MESH, OBJ and RIB:");
 		println("                         Output uv coordinates for the stems");
 		println();
+		println("    --streaming          For the export format OBJ: write every stem");
+		println("                         when its mesh is created instead of creating");
+		println("                         the whole mesh first. Needs less memory, the");
+		println("                         output is the same.");
+		println();
+		println("    --instances          For the export format POV_MESH: declare the");
+		println("                         leaf mesh once and write every leaf as an");
+		println("                         object with a matrix. Gives much smaller files.");
+		println();
+		println("    --welded             For the export formats PLY, STL and GLB: the");
+		println("                         clones use the vertices of the stem section,");
+		println("                         where they are split off, so the stem mesh");
+		println("                         has no gaps and fewer vertices");
+		println();
+		println("    --lod <n>            0..3 -- for all mesh export formats: level of");
+		println("                         detail of the stems. Higher levels use fewer");
+		println("                         points per section, leave out sections where");
+		println("                         the stem is nearly straight and drop small");
+		println("                         stems. 0 is full detail.");
+		println();
 		println("    -s|--smooth <value>  0.0..1.0 -- for the export formats POV_MESH,");
 		println("                         RIB, OBJ and DXF, the smooth value influences");
 		println("                         how many vertices are used for every stem");
@@ -125,6 +156,15 @@ public class arbaro {
 		println("                         less typing for a new tree than writing XML");
 		println("                         code");
 		println();
+		println("    --treefile           Input file is a tree saved with --savetree,");
+		println("                         the tree isn't made again");
+		println();
+		println("    --savetree <file>    Additionally save the made tree in a binary");
+		println("                         file, which can be exported later with");
+		println("                         --treefile");
+		println();
+		println("    --deflate            Compress the file written with --savetree");
+		println();
 		println("    -x|--xml             Output parameters as XML tree definition");
 		println("                         instead of creating the tree and writing it");
 		println("                         as a 3D file. Useful for converting a simple");
@@ -134,6 +174,43 @@ public class arbaro {
 		println();
 		println("    -p|--scene <file>    Additionally output renderer scene to file");
 		println();
+		println("    -t|--threads <n>     Use n threads for creating the tree and the");
+		println("                         stem meshes and for writing OBJ, POV_MESH");
+		println("                         and DXF files, the output is the same as");
+		println("                         with one thread");
+		println();
+		println("    --posrandom          Every stem gets its own random numbers,");
+		println("                         derived from the seed and its position in");
+		println("                         the tree. Creates other trees than without,");
+		println("                         but a stem doesn't depend on the stems made");
+		println("                         before it.");
+		println();
+		println("    --lazyleaves         Don't keep the leaves in memory, but make them");
+		println("                         again whenever they are needed. The output is");
+		println("                         the same.");
+		println();
+		println("    --compact            Keep the tree in compact arrays after making");
+		println("                         it. Needs much less memory for big trees,");
+		println("                         the output is the same.");
+		println();
+		println("    --batch <manifest>   Make many trees in one process. Every line of");
+		println("                         the manifest file has the form");
+		println("                            species-file seeds format output-pattern");
+		println("                         e.g. \"trees/palm.xml 1-100 OBJ palm_{seed}.obj\".");
+		println("                         Seeds are a number, a range or a comma");
+		println("                         separated list, in the output pattern");
+		println("                         {species} and {seed} are replaced.");
+		println();
+		println("    --workers <n>        Number of trees made at the same time in");
+		println("                         batch mode, default is the number of processors");
+		println();
+		println("    --cache <dir>        Keep made trees in this directory and read them");
+		println("                         from there, when a tree with the same parameters");
+		println("                         and seed is needed again");
+		println();
+		println("    --cachesize <MB>     Maximal size of the tree cache, the least recently");
+		println("                         used trees are deleted, default is 1024 MB");
+		println();
 		println("example:");
 		println();
 		println("    java -jar arbaro_cmd.jar quaking_aspen.xml > quaking_aspen.inc");
@@ -158,7 +235,21 @@ public class arbaro {
 		boolean debug = false;
 		boolean uvLeaves = false;
 		boolean uvStems = false;
+		boolean streaming = false;
+		boolean leafInstancing = false;
+		boolean weldedStems = false;
+		LevelOfDetail lod = null;
 		int seed = 13;
+		int threads = 1;
+		boolean positionalRandom = false;
+		boolean lazyLeaves = false;
+		boolean compact = false;
+		String batchFile = null;
+		int workers = Runtime.getRuntime().availableProcessors();
+		String cacheDir = null;
+		String treeFile = null;
+		boolean deflate = false;
+		long cacheSize = 1024;
 		int levels = -1;
 		int output = ExporterFactory.POV_MESH;
 		double smooth = -1;
@@ -194,14 +285,52 @@ public class arbaro {
 			} else if (args[i].equals("--uvstems")) {
 				uvStems = true;
 				i++;
+			} else if (args[i].equals("--streaming")) {
+				streaming = true;
+			} else if (args[i].equals("--instances")) {
+				leafInstancing = true;
+			} else if (args[i].equals("--welded")) {
+				weldedStems = true;
+			} else if (args[i].equals("--lod")) {
+				int level = Integer.parseInt(args[++i]);
+				LevelOfDetail[] levelsOfDetail = LevelOfDetail.getDefaultLevels();
+				if (level < 0 || level >= levelsOfDetail.length) {
+					printProgramName();
+					usage();
+					System.err.println("Invalid level of detail " + level + "!");
+					System.exit(1);
+				}
+				lod = levelsOfDetail[level];
 			} else if (args[i].equals("-s") || args[i].equals("--smooth")) {
 				smooth = Double.parseDouble(args[++i]);
 			} else if (args[i].equals("-x") || args[i].equals("--xml")) {
 				output = XMLoutput;
 			} else if (args[i].equals("-r") || args[i].equals("--treecfg")) {
 				input = CFGinput;
+			} else if (args[i].equals("--treefile")) {
+				input = TREEinput;
+			} else if (args[i].equals("--savetree")) {
+				treeFile = args[++i];
+			} else if (args[i].equals("--deflate")) {
+				deflate = true;
 			} else if (args[i].equals("-p") || args[i].equals("--scene")) {
 				scene_file = args[++i];
+			} else if (args[i].equals("-t") || args[i].equals("--threads")) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--posrandom")) {
+				positionalRandom = true;
+			} else if (args[i].equals("--lazyleaves")) {
+				lazyLeaves = true;
+			} else if (args[i].equals("--compact")) {
+				compact = true;
+			} else if (args[i].equals("--batch")) {
+				batchFile = args[++i];
+			} else if (args[i].equals("--workers")) {
+				workers = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--cache")) {
+				cacheDir = args[++i];
+			} else if (args[i].equals("--cachesize")) {
+				cacheSize = Long.parseLong(args[++i]);
 			} else if (args[i].charAt(0) == '-') {
 				printProgramName();
 				usage();
@@ -231,6 +360,46 @@ public class arbaro {
 			Console.setOutputLevel(Console.VERBOSE);
 		}
 
+		TreeCache cache = null;
+		if (cacheDir != null) {
+			cache = new TreeCache(new File(cacheDir), cacheSize * 1024 * 1024);
+		}
+
+		if (batchFile != null) {
+			Batch batch = new Batch();
+			batch.cache = cache;
+			batch.workers = workers;
+			batch.threads = threads;
+			batch.levels = levels;
+			batch.smooth = smooth;
+			batch.positionalRandom = positionalRandom;
+			batch.lazyLeaves = lazyLeaves;
+			batch.compact = compact;
+			ExporterFactory.setOutputStemUVs(uvStems);
+			ExporterFactory.setOutputLeafUVs(uvLeaves);
+			ExporterFactory.setStreaming(streaming);
+			ExporterFactory.setLeafInstancing(leafInstancing);
+			ExporterFactory.setWeldedStems(weldedStems);
+			ExporterFactory.setParallelism(threads);
+			ExporterFactory.setLevelOfDetail(lod);
+
+			InputStream in = new FileInputStream(batchFile);
+			try {
+				batch.readManifest(in);
+			} finally {
+				in.close();
+			}
+
+			// progress output of concurrent trees would be mixed up
+			if (!debug && !quiet) {
+				Console.setOutputLevel(Console.QUIET);
+			}
+			if (batch.run() > 0) {
+				System.exit(1);
+			}
+			return;
+		}
+
 		TreeGenerator treeGenerator = TreeGeneratorFactory.createTreeGenerator();
 		Exporter exporter;
 
@@ -238,7 +407,18 @@ public class arbaro {
 		//if (smooth>=0) treeFactory.params.Smooth = smooth;
 
 		InputStream in;
-		if (input_file == null) {
+		Tree savedTree = null;
+		if (input == TREEinput) {
+			if (input_file == null) {
+				printProgramName();
+				usage();
+				System.err.println("No tree file given!");
+				System.exit(1);
+			}
+			Console.verboseOutput("Reading tree from " + input_file + "...");
+			savedTree = TreeFile.read(new File(input_file));
+			in = null;
+		} else if (input_file == null) {
 			Console.verboseOutput("No tree definition file given.");
 			Console.verboseOutput("Reading parameters from STDIN...");
 
@@ -250,7 +430,9 @@ public class arbaro {
 		}
 
 		// read parameters
-		if (input == CFGinput) {
+		if (input == TREEinput) {
+			// the tree file has its own parameters
+		} else if (input == CFGinput) {
 			treeGenerator.readParamsFromCfg(in);
 		} else {
 			treeGenerator.readParamsFromXML(in);
@@ -261,27 +443,46 @@ public class arbaro {
 			treeGenerator.setParam("Smooth", Double.toString(smooth));
 		}
 
-		PrintWriter out;
+		OutputStream os;
 		if (output_file == null) {
-			out = new PrintWriter(new OutputStreamWriter(System.out));
+			os = System.out;
 		} else {
-			out = new PrintWriter(new FileWriter(new File(output_file)));
+			os = new FileOutputStream(new File(output_file));
 		}
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(os));
 
-		if (output == XMLoutput) {
+		if (output == XMLoutput && savedTree != null) {
+			savedTree.paramsToXML(out);
+		} else if (output == XMLoutput) {
 			// save parameters in XML file, don't create tree
 			treeGenerator.writeParamsToXML(out);
 		} else {
 			treeGenerator.setSeed(seed);
+			treeGenerator.setParallelism(threads);
+			treeGenerator.setCache(cache);
+			treeGenerator.getParams().positionalRandom = positionalRandom;
+			treeGenerator.getParams().lazyLeaves = lazyLeaves;
 			Progress progress = new Progress();
-			Tree tree = treeGenerator.makeTree(progress);
+			Tree tree = savedTree != null ? savedTree : treeGenerator.makeTree(progress);
+			if (compact) {
+				tree = CompactTree.compact(tree);
+			}
+			if (treeFile != null) {
+				Console.verboseOutput("Saving tree to " + treeFile + "...");
+				TreeFile.write(tree, new File(treeFile), deflate);
+			}
 			Params params = treeGenerator.getParams();
 			params.stopLevel = levels;
 			ExporterFactory.setExportFormat(output);
 			ExporterFactory.setOutputStemUVs(uvStems);
 			ExporterFactory.setOutputLeafUVs(uvLeaves);
+			ExporterFactory.setStreaming(streaming);
+			ExporterFactory.setLeafInstancing(leafInstancing);
+			ExporterFactory.setWeldedStems(weldedStems);
+			ExporterFactory.setParallelism(threads);
+			ExporterFactory.setLevelOfDetail(lod);
 			exporter = ExporterFactory.createExporter(tree);
-			exporter.write(out, progress);
+			exporter.write(os, progress);
 
 			if (scene_file != null) {
 				if (!quiet) {
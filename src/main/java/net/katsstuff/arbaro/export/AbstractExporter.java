@@ -22,6 +22,8 @@
 
 package net.katsstuff.arbaro.export;
 
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 
 /**
@@ -56,7 +58,17 @@ abstract class AbstractExporter implements Exporter {
 		return w;
 	}
 
-	public void write(PrintWriter w, Progress progress) {
+	public void write(PrintWriter w, Progress progress) throws InvalidExportFormatError {
+		writeText(w, progress);
+	}
+
+	public void write(OutputStream out, Progress progress) {
+		PrintWriter pw = new PrintWriter(new OutputStreamWriter(out));
+		writeText(pw, progress);
+		pw.flush();
+	}
+
+	private void writeText(PrintWriter w, Progress progress) {
 		this.w = w;
 		this.progress = progress;
 
@@ -0,0 +1,188 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.export;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import net.katsstuff.arbaro.mesh.LeafMesh;
+import net.katsstuff.arbaro.mesh.MeshGenerator;
+import net.katsstuff.arbaro.mesh.UVVector;
+import net.katsstuff.arbaro.transformation.Vector;
+
+/**
+ * Base class for exporters writing a binary little-endian file format. The data is collected in a ByteBuffer and
+ * written through a channel without any text formatting. Binary formats can only be written to an OutputStream.
+ */
+abstract class BinaryMeshExporter extends MeshExporter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	protected ByteBuffer buffer;
+	private WritableByteChannel channel;
+
+	/**
+	 * If true, the clones share the vertices of the stem sections, where they are split off, so the stems have no
+	 * gaps and fewer vertices
+	 */
+	public boolean weldedStems = false;
+
+	/**
+	 *
+	 */
+	public BinaryMeshExporter(MeshGenerator meshGenerator) {
+		super(meshGenerator);
+	}
+
+	public void write(PrintWriter w, Progress progress) throws InvalidExportFormatError {
+		throw new InvalidExportFormatError("Binary formats can only be written to an OutputStream");
+	}
+
+	public void write(OutputStream out, Progress progress) {
+		this.progress = progress;
+		if (out instanceof FileOutputStream) {
+			channel = ((FileOutputStream) out).getChannel();
+		} else {
+			channel = Channels.newChannel(out);
+		}
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		progress.beginPhase("writing tree code", -1);
+		doWrite();
+		flushBuffer();
+		progress.endPhase();
+
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Makes sure, the buffer has room for the given number of bytes
+	 */
+	protected void reserve(int bytes) {
+		if (buffer.remaining() < bytes) {
+			flushBuffer();
+		}
+	}
+
+	protected void flushBuffer() {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		buffer.clear();
+	}
+
+	protected void putASCII(String s) {
+		putBytes(s.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Puts the bytes, they may be more than fit into the buffer
+	 */
+	protected void putBytes(byte[] bytes) {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining()) {
+				flushBuffer();
+			}
+			int len = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, len);
+			offset += len;
+		}
+	}
+
+	/**
+	 * Puts a vector as three floats, a missing vector is written as null vector. The caller has to reserve the 12
+	 * bytes.
+	 */
+	protected void putVector(Vector v) {
+		if (v == null) {
+			buffer.putFloat(0).putFloat(0).putFloat(0);
+		} else {
+			buffer.putFloat((float) v.getX())
+				.putFloat((float) v.getY())
+				.putFloat((float) v.getZ());
+		}
+	}
+
+	/**
+	 * Puts the vector i of an array holding x, y and z of every vector, like the positions of an indexed mesh, as three
+	 * floats. The caller has to reserve the 12 bytes.
+	 */
+	protected void putVector(double[] coords, int i) {
+		buffer.putFloat((float) coords[3 * i])
+			.putFloat((float) coords[3 * i + 1])
+			.putFloat((float) coords[3 * i + 2]);
+	}
+
+	/**
+	 * Puts a uv vector as two floats. The caller has to reserve the 8 bytes.
+	 */
+	protected void putUV(UVVector uv) {
+		if (uv == null) {
+			buffer.putFloat(0).putFloat(0);
+		} else {
+			buffer.putFloat((float) uv.u).putFloat((float) uv.v);
+		}
+	}
+
+	/**
+	 * Returns the normals of the leaf shape's vertices in leaf coordinates. The leaf mesh has no normals itself. Flat
+	 * leaves lie in the x-z-plane, the normals of a spherical leaf point away from its center.
+	 */
+	static Vector[] leafNormals(LeafMesh leafMesh) {
+		int cnt = leafMesh.getShapeVertexCount();
+		Vector[] normals = new Vector[cnt];
+
+		if (leafMesh.isFlat()) {
+			for (int i = 0; i < cnt; i++) {
+				normals[i] = Vector.Y_AXIS;
+			}
+		} else {
+			Vector center = new Vector();
+			for (int i = 0; i < cnt; i++) {
+				center.addLocal(leafMesh.shapeVertexAt(i).point);
+			}
+			center.divLocal(cnt);
+			for (int i = 0; i < cnt; i++) {
+				normals[i] = leafMesh.shapeVertexAt(i).point.sub(center).normalizeLocal();
+			}
+		}
+		return normals;
+	}
+}
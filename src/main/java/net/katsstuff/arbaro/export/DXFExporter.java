@@ -23,7 +23,6 @@
 package net.katsstuff.arbaro.export;
 
 import java.io.PrintWriter;
-import java.text.NumberFormat;
 import net.katsstuff.arbaro.mesh.Face;
 import net.katsstuff.arbaro.mesh.LeafMesh;
 import net.katsstuff.arbaro.mesh.Mesh;
@@ -31,7 +30,8 @@ import net.katsstuff.arbaro.mesh.MeshGenerator;
 import net.katsstuff.arbaro.mesh.MeshPart;
 import net.katsstuff.arbaro.mesh.MeshSection;
 import net.katsstuff.arbaro.mesh.VFace;
-import net.katsstuff.arbaro.params.FloatFormat;
+import net.katsstuff.arbaro.params.FloatEncoder;
+import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
 import net.katsstuff.arbaro.tree.Leaf;
@@ -44,12 +44,17 @@ import net.katsstuff.arbaro.tree.Tree;
 final class DXFWriter {
 
 	PrintWriter w;
-	NumberFormat frm = FloatFormat.getInstance();
+	FloatEncoder frm = new FloatEncoder();
 
 	public DXFWriter(PrintWriter w) {
 		this.w = w;
 	}
 
+	public DXFWriter(PrintWriter w, FloatEncoder frm) {
+		this.w = w;
+		this.frm = frm;
+	}
+
 	public void writeHeader(String comment, Vector minPoint, Vector maxPoint) {
 		wg(999, comment);
 		wg(0, "SECTION");
@@ -129,10 +134,16 @@ final class DXFWriter {
 	}
 
 	void wg(int code, String val) {
-		w.println("" + code);
+		w.println(code);
 		w.println(val);
 	}
 
+	void wg(int code, double val) {
+		w.println(code);
+		frm.write(w, val);
+		w.println();
+	}
+
 	public void writeFace(
 		Vector u, Vector v, Vector w,
 		String layer
@@ -159,36 +170,38 @@ final class DXFWriter {
 	}
 
 	public void writePoint(Vector v, int n) {
-		wg(10 + n, frm.format(v.getX()));
-		wg(20 + n, frm.format(v.getZ()));
-		wg(30 + n, frm.format(v.getY()));
+		wg(10 + n, v.getX());
+		wg(20 + n, v.getZ());
+		wg(30 + n, v.getY());
 	}
 }
 
 /**
- * Exports the mesh's faces to the DXF file
+ * Exports the mesh's faces to the DXF file, the leaves are written in chunks of several leaves
  */
 class DXFLeafWriter extends DefaultTreeTraversal {
 
+	static final int LEAVES_PER_CHUNK = 1000;
+
 	LeafMesh leafMesh;
-	VFace vFace;
 	String layer;
-	DXFWriter writer;
 	AbstractExporter exporter;
 	Progress progress;
 	MeshGenerator meshGenerator;
+	ParallelChunkWriter chunks;
+	java.util.Vector leaves = new java.util.Vector();
 
 
 	/**
 	 *
 	 */
-	public DXFLeafWriter(AbstractExporter exporter, MeshGenerator meshGenerator, String layer) {
+	public DXFLeafWriter(AbstractExporter exporter, MeshGenerator meshGenerator, String layer,
+						 ParallelChunkWriter chunks) {
 		super();
 		this.layer = layer;
 		this.exporter = exporter;
-		this.writer = new DXFWriter(exporter.getWriter());
-		vFace = new VFace(new Vector(), new Vector(), new Vector());
 		this.meshGenerator = meshGenerator;
+		this.chunks = chunks;
 	}
 
 	public boolean enterTree(Tree tree) {
@@ -198,21 +211,47 @@ class DXFLeafWriter extends DefaultTreeTraversal {
 	}
 
 	public boolean visitLeaf(Leaf leaf) {
-		for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
-
-			Face face = leafMesh.shapeFaceAt(i);
-			for (int k = 0; k < 3; k++) {
-				vFace.points[k] = leaf.getTransformation().apply(
-					leafMesh.shapeVertexAt((int) face.points[k]).point);
-			}
-
-			writer.writeFace(vFace, layer);
+		leaves.addElement(leaf);
+		if (leaves.size() == LEAVES_PER_CHUNK) {
+			flush();
 		}
 
 		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
 
 		return true;
 	}
+
+	public boolean leaveTree(Tree tree) {
+		flush();
+		return true;
+	}
+
+	private void flush() {
+		if (leaves.isEmpty()) {
+			return;
+		}
+		final Leaf[] batch = new Leaf[leaves.size()];
+		leaves.copyInto(batch);
+		leaves.removeAllElements();
+
+		chunks.add(new ParallelChunkWriter.Chunk() {
+			public void write(PrintWriter[] sections, FloatEncoder fmt) {
+				DXFWriter writer = new DXFWriter(sections[0], fmt);
+				VFace vFace = new VFace(new Vector(), new Vector(), new Vector());
+				for (int l = 0; l < batch.length; l++) {
+					Transformation trf = batch[l].getTransformation();
+					for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
+						Face face = leafMesh.shapeFaceAt(i);
+						for (int k = 0; k < 3; k++) {
+							vFace.points[k] = trf.apply(leafMesh.shapeVertexAt((int) face.points[k]).point);
+						}
+
+						writer.writeFace(vFace, layer);
+					}
+				}
+			}
+		});
+	}
 }
 
 /**
@@ -220,7 +259,6 @@ class DXFLeafWriter extends DefaultTreeTraversal {
  */
 class DXFExporter extends MeshExporter {
 
-	NumberFormat frm = FloatFormat.getInstance();
 	Tree tree;
 
 	/**
@@ -260,27 +298,37 @@ class DXFExporter extends MeshExporter {
 //		}
 	}
 
-	private void writeStems(String layer) {
+	private void writeStems(final String layer) {
 		// FIXME: optimize speed, maybe using enumerations
 
 		Mesh mesh = meshGenerator.createStemMesh(tree, progress);
 		progress.beginPhase("Writing stem mesh", mesh.size());
-		DXFWriter writer = new DXFWriter(w);
+		ParallelChunkWriter chunks = new ParallelChunkWriter(w, parallelism);
 
-		for (int i = 0; i < mesh.size(); i++) {
+		try {
+			for (int i = 0; i < mesh.size(); i++) {
 
-			MeshPart mp = (MeshPart) mesh.elementAt(i);
+				final MeshPart mp = (MeshPart) mesh.elementAt(i);
 
-			for (int k = 0; k < mp.size() - 1; k++) {
-				java.util.Vector faces = mp.vFaces((MeshSection) mp.elementAt(k));
+				chunks.add(new ParallelChunkWriter.Chunk() {
+					public void write(PrintWriter[] sections, FloatEncoder fmt) {
+						DXFWriter writer = new DXFWriter(sections[0], fmt);
+						for (int k = 0; k < mp.size() - 1; k++) {
+							java.util.Vector faces = mp.vFaces((MeshSection) mp.elementAt(k));
 
-				for (int j = 0; j < faces.size(); j++) {
-					VFace face = (VFace) faces.elementAt(j);
-					writer.writeFace(face, layer);
-				}
-			}
+							for (int j = 0; j < faces.size(); j++) {
+								VFace face = (VFace) faces.elementAt(j);
+								writer.writeFace(face, layer);
+							}
+						}
+					}
+				});
 
-			incProgressCount(AbstractExporter.STEM_PROGRESS_STEP);
+				incProgressCount(AbstractExporter.STEM_PROGRESS_STEP);
+			}
+			chunks.finish();
+		} finally {
+			chunks.shutdown();
 		}
 
 		progress.endPhase();
@@ -289,8 +337,13 @@ class DXFExporter extends MeshExporter {
 	private void writeLeafs(String layer) {
 		progress.beginPhase("Writing leaf mesh", tree.getLeafCount());
 
-		DXFLeafWriter exporter = new DXFLeafWriter(this, meshGenerator, layer);
-		tree.traverseTree(exporter);
+		ParallelChunkWriter chunks = new ParallelChunkWriter(w, parallelism);
+		try {
+			tree.traverseTree(new DXFLeafWriter(this, meshGenerator, layer, chunks));
+			chunks.finish();
+		} finally {
+			chunks.shutdown();
+		}
 
 		progress.endPhase();
 	}
@@ -25,6 +25,7 @@ package net.katsstuff.arbaro.export;
 // explaining of 3D graphic formats at
 // http://www.dcs.ed.ac.uk/home/mxr/gfx/3d-hi.html
 
+import java.io.OutputStream;
 import java.io.PrintWriter;
 
 /**
@@ -34,7 +35,18 @@ import java.io.PrintWriter;
  */
 public interface Exporter {
 
-	void write(PrintWriter w, Progress progress);
+	/**
+	 * Writes the tree to a PrintWriter
+	 *
+	 * @throws InvalidExportFormatError if the format is a binary one, which can't be written to a PrintWriter
+	 */
+	void write(PrintWriter w, Progress progress) throws InvalidExportFormatError;
+
+	/**
+	 * Writes the tree to an output stream. Binary formats can only be written this way, text formats are written
+	 * through a PrintWriter using the default encoding.
+	 */
+	void write(OutputStream out, Progress progress);
 
 	PrintWriter getWriter();
 }
@@ -23,6 +23,7 @@
 package net.katsstuff.arbaro.export;
 
 import net.katsstuff.arbaro.mesh.MeshGenerator;
+import net.katsstuff.arbaro.mesh.LevelOfDetail;
 import net.katsstuff.arbaro.mesh.MeshGeneratorFactory;
 import net.katsstuff.arbaro.params.Params;
 import net.katsstuff.arbaro.tree.Tree;
@@ -39,6 +40,9 @@ public class ExporterFactory {
 	public final static int RIB = 2;
 	public final static int DXF = 3;
 	public final static int OBJ = 4;
+	public final static int PLY = 5;
+	public final static int STL = 6;
+	public final static int GLB = 7;
 
 	static int exportFormat = ExporterFactory.POV_MESH;
 	static String outputPath = System.getProperty("user.dir") + System.getProperty("file.separator");
@@ -51,14 +55,27 @@ public class ExporterFactory {
 	static boolean outputStemUVs = false;
 	static boolean outputLeafUVs = false;
 
+	static boolean streaming = false;
+
+	static boolean leafInstancing = false;
+
+	static int parallelism = 1;
+
+	static boolean weldedStems = false;
+
+	static LevelOfDetail levelOfDetail = null;
+
 	final static String[] formats = {
 		"Povray meshes",
 		"Povray primitives",
 		"RenderMan RIB",
 		"AutoCAD DXF",
-		"Wavefront OBJ"
+		"Wavefront OBJ",
+		"Stanford PLY (binary)",
+		"STL (binary)",
+		"glTF 2.0 (binary)"
 	};
-	final static String[] shortformats = {"POV_MESH", "POV_CONES", "RIB", "DXF", "OBJ"};
+	final static String[] shortformats = {"POV_MESH", "POV_CONES", "RIB", "DXF", "OBJ", "PLY", "STL", "GLB"};
 
 
 	/**
@@ -120,8 +137,76 @@ public class ExporterFactory {
 		return outputLeafUVs;
 	}
 
+	/**
+	 * Sets, if the exporters should write the stems while the mesh is created instead of creating the whole mesh
+	 * first. This needs less memory and gives the same output. Only OBJ supports this for now.
+	 */
+	static public void setStreaming(boolean s) {
+		streaming = s;
+	}
+
+	static public boolean getStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sets, if the POV_MESH exporter should write every leaf as an instance of one leaf mesh instead of putting all
+	 * leaves into one big mesh. This gives much smaller files, which Povray parses faster.
+	 */
+	static public void setLeafInstancing(boolean i) {
+		leafInstancing = i;
+	}
+
+	static public boolean getLeafInstancing() {
+		return leafInstancing;
+	}
+
+	/**
+	 * Sets the number of threads the mesh exporters use for creating the stem meshes and the OBJ, POV_MESH and DXF
+	 * exporters use for formatting the output. The output is the same as with one thread.
+	 */
+	static public void setParallelism(int threads) {
+		parallelism = threads;
+	}
+
+	static public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets, if the PLY, STL and GLB exporters should weld the clones to the stems, they are split off, so the clones
+	 * use the vertices of the stem section, where they begin, instead of having their own ones
+	 */
+	static public void setWeldedStems(boolean w) {
+		weldedStems = w;
+	}
+
+	static public boolean getWeldedStems() {
+		return weldedStems;
+	}
+
+	/**
+	 * Sets the level of detail of the stem meshes for all mesh exporters, null means full detail
+	 */
+	static public void setLevelOfDetail(LevelOfDetail lod) {
+		levelOfDetail = lod;
+	}
+
+	static public LevelOfDetail getLevelOfDetail() {
+		return levelOfDetail;
+	}
+
 	static public Exporter createExporter(Tree tree/*, Params params*/)
 		throws InvalidExportFormatError {
+		return createExporter(tree, exportFormat);
+	}
+
+	/**
+	 * Creates an exporter for the given format instead of the one set with setExportFormat. The other settings are
+	 * taken from the factory. Useful when creating exporters for different formats concurrently.
+	 */
+	static public Exporter createExporter(Tree tree, int exportFormat)
+		throws InvalidExportFormatError {
 
 		Exporter exporter = null;
 		MeshGenerator meshGenerator;
@@ -130,29 +215,47 @@ public class ExporterFactory {
 		if (exportFormat == POV_CONES) {
 			exporter = new POVConeExporter(tree/*,params*/);
 		} else if (exportFormat == POV_MESH) {
-			meshGenerator = MeshGeneratorFactory.createMeshGenerator(/*params,*/ useQuads);
+			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads, levelOfDetail, parallelism);
 			exporter = new POVMeshExporter(tree, meshGenerator);
 			((POVMeshExporter) exporter).outputStemUVs = outputStemUVs;
 			((POVMeshExporter) exporter).outputLeafUVs = outputLeafUVs;
+			((POVMeshExporter) exporter).leafInstancing = leafInstancing;
 		} else if (exportFormat == RIB) {
 			useQuads = true;
-			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads);
+			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads, levelOfDetail, parallelism);
 			exporter = new RIBExporter(tree, meshGenerator);
 			((RIBExporter) exporter).outputStemUVs = outputStemUVs;
 			((RIBExporter) exporter).outputLeafUVs = outputLeafUVs;
 		} else if (exportFormat == DXF) {
-			meshGenerator = MeshGeneratorFactory.createMeshGenerator(/*params,*/ useQuads);
+			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads, levelOfDetail, parallelism);
 			exporter = new DXFExporter(tree, meshGenerator);
 		} else if (exportFormat == OBJ) {
 			useQuads = true;
-			meshGenerator = MeshGeneratorFactory.createMeshGenerator(/*params,*/ useQuads);
+			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads, levelOfDetail, parallelism);
 			exporter = new OBJExporter(tree, meshGenerator);
 			((OBJExporter) exporter).outputStemUVs = outputStemUVs;
 			((OBJExporter) exporter).outputLeafUVs = outputLeafUVs;
+			((OBJExporter) exporter).streaming = streaming;
+		} else if (exportFormat == PLY) {
+			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads, levelOfDetail, parallelism);
+			exporter = new PLYExporter(tree, meshGenerator);
+		} else if (exportFormat == STL) {
+			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads, levelOfDetail, parallelism);
+			exporter = new STLExporter(tree, meshGenerator);
+		} else if (exportFormat == GLB) {
+			meshGenerator = MeshGeneratorFactory.createMeshGenerator(useQuads, levelOfDetail, parallelism);
+			exporter = new GLBExporter(tree, meshGenerator);
 		} else {
 			throw new InvalidExportFormatError("Invalid export format");
 		}
 
+		if (exportFormat == POV_MESH || exportFormat == DXF || exportFormat == OBJ) {
+			((MeshExporter) exporter).parallelism = parallelism;
+		}
+		if (exportFormat == PLY || exportFormat == STL || exportFormat == GLB) {
+			((BinaryMeshExporter) exporter).weldedStems = weldedStems;
+		}
+
 		return exporter;
 	}
 
@@ -0,0 +1,430 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.export;
+
+import java.nio.charset.StandardCharsets;
+import net.katsstuff.arbaro.mesh.Face;
+import net.katsstuff.arbaro.mesh.IndexedMesh;
+import net.katsstuff.arbaro.mesh.LeafMesh;
+import net.katsstuff.arbaro.mesh.Mesh;
+import net.katsstuff.arbaro.mesh.MeshGenerator;
+import net.katsstuff.arbaro.mesh.UVVector;
+import net.katsstuff.arbaro.transformation.Matrix;
+import net.katsstuff.arbaro.transformation.Vector;
+import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
+import net.katsstuff.arbaro.tree.Leaf;
+import net.katsstuff.arbaro.tree.Tree;
+
+/**
+ * Writes the translation or the rotation of every leaf as instance attribute
+ */
+class GLBLeafInstanceWriter extends DefaultTreeTraversal {
+
+	GLBExporter exporter;
+	boolean rotation;
+
+	public GLBLeafInstanceWriter(GLBExporter exporter, boolean rotation) {
+		super();
+		this.exporter = exporter;
+		this.rotation = rotation;
+	}
+
+	public boolean visitLeaf(Leaf l) {
+		if (rotation) {
+			exporter.putRotation(l.getTransformation().matrix());
+		} else {
+			exporter.reserve(12);
+			exporter.putPoint(l.getTransformation().getT());
+		}
+
+		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
+
+		return true;
+	}
+}
+
+/**
+ * Exports a tree as binary glTF 2.0 file (GLB). The stems are one mesh with float positions, normals and uv vectors
+ * and uint indices. The leaves aren't baked: the leaf shape is written once and every leaf is an instance of it with
+ * translation and rotation given by the EXT_mesh_gpu_instancing extension.
+ * <p>
+ * glTF has the y-axis up, so (x,y,z) in Arbaro becomes (x,z,-y).
+ */
+final class GLBExporter extends BinaryMeshExporter {
+
+	private static final int GLB_MAGIC = 0x46546C67; // "glTF"
+	private static final int CHUNK_JSON = 0x4E4F534A;
+	private static final int CHUNK_BIN = 0x004E4942;
+
+	// glTF constants
+	private static final int FLOAT = 5126;
+	private static final int UNSIGNED_INT = 5125;
+	private static final int ARRAY_BUFFER = 34962;
+	private static final int ELEMENT_ARRAY_BUFFER = 34963;
+
+	private static final int VERTEX_SIZE = 32; // position, normal, uv
+
+	Tree tree;
+	Mesh mesh;
+	IndexedMesh stems;
+	LeafMesh leafMesh;
+	Vector[] leafNormals;
+
+	int stemVertexCount;
+	int stemFaceCount;
+	int leafCount;
+
+	private final Vector vertex = new Vector();
+
+	/**
+	 *
+	 */
+	public GLBExporter(Tree tree, MeshGenerator meshGenerator) {
+		super(meshGenerator);
+		this.tree = tree;
+	}
+
+	public void doWrite() {
+		mesh = meshGenerator.createStemMeshByLevel(tree, progress);
+		// glTF primitives are triangles
+		leafMesh = meshGenerator.createLeafMesh(tree, false);
+		leafNormals = leafNormals(leafMesh);
+
+		stems = new IndexedMesh(mesh, true, true, weldedStems);
+		stemVertexCount = stems.vertexCount;
+		stemFaceCount = stems.faceCount;
+		leafCount = (int) tree.getLeafCount();
+
+		byte[] json = createJSON().getBytes(StandardCharsets.UTF_8);
+		int jsonLength = padded(json.length);
+		int binLength = binLength();
+
+		// header
+		reserve(12 + 8);
+		buffer.putInt(GLB_MAGIC);
+		buffer.putInt(2);
+		buffer.putInt(12 + 8 + jsonLength + 8 + binLength);
+
+		// JSON chunk, padded with spaces
+		buffer.putInt(jsonLength);
+		buffer.putInt(CHUNK_JSON);
+		putBytes(json);
+		for (int i = json.length; i < jsonLength; i++) {
+			reserve(1);
+			buffer.put((byte) ' ');
+		}
+
+		// binary chunk, all sections have a length divisible by 4
+		reserve(8);
+		buffer.putInt(binLength);
+		buffer.putInt(CHUNK_BIN);
+
+		progress.beginPhase("Writing stems", tree.getStemCount());
+		for (int v = 0; v < stemVertexCount; v++) {
+			reserve(VERTEX_SIZE);
+			putPoint(stems.positions, v);
+			putPoint(stems.normals, v);
+			buffer.putFloat((float) stems.vertexUVs[2 * v]).putFloat((float) (1 - stems.vertexUVs[2 * v + 1]));
+		}
+		for (int f = 0; f < stemFaceCount; f++) {
+			int i = stems.faceStarts[f];
+			reserve(12);
+			buffer.putInt(stems.indices[i])
+				.putInt(stems.indices[i + 1])
+				.putInt(stems.indices[i + 2]);
+		}
+		progress.endPhase();
+
+		if (leafCount > 0) {
+			progress.beginPhase("Writing leaves", leafCount * 2L);
+			for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
+				putVertex(leafMesh.shapeVertexAt(i).point, leafNormals[i], leafMesh.shapeUVAt(i));
+			}
+			for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
+				putTriangle(leafMesh.shapeFaceAt(i));
+			}
+			tree.traverseTree(new GLBLeafInstanceWriter(this, false));
+			tree.traverseTree(new GLBLeafInstanceWriter(this, true));
+			progress.endPhase();
+		}
+	}
+
+	private static int padded(int length) {
+		return (length + 3) & ~3;
+	}
+
+	private int stemVerticesLength() {
+		return stemVertexCount * VERTEX_SIZE;
+	}
+
+	private int stemIndicesLength() {
+		return stemFaceCount * 3 * 4;
+	}
+
+	private int leafVerticesLength() {
+		return leafMesh.getShapeVertexCount() * VERTEX_SIZE;
+	}
+
+	private int leafIndicesLength() {
+		return leafMesh.getShapeFaceCount() * 3 * 4;
+	}
+
+	private int binLength() {
+		int length = stemVerticesLength() + stemIndicesLength();
+		if (leafCount > 0) {
+			length += leafVerticesLength() + leafIndicesLength() + leafCount * (12 + 16);
+		}
+		return length;
+	}
+
+	/**
+	 * Creates the JSON chunk describing the scene, meshes and the layout of the binary chunk
+	 */
+	private String createJSON() {
+		// bounds of the stem positions, needed for the POSITION accessor
+		Vector min = new Vector(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+		Vector max = new Vector(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
+		for (int v = 0; v < stemVertexCount; v++) {
+			convert(stems.positions, v, vertex);
+			min.setMinCoord(vertex);
+			max.setMaxCoord(vertex);
+		}
+
+		StringBuilder json = new StringBuilder();
+		json.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"Arbaro\"},");
+		if (leafCount > 0) {
+			json.append("\"extensionsUsed\":[\"EXT_mesh_gpu_instancing\"],");
+		}
+		json.append("\"scene\":0,\"scenes\":[{\"name\":").append(quote(tree.getSpecies()))
+			.append(leafCount > 0 ? ",\"nodes\":[0,1]}]," : ",\"nodes\":[0]}],");
+
+		// nodes and meshes
+		json.append("\"nodes\":[{\"name\":\"stems\",\"mesh\":0}");
+		if (leafCount > 0) {
+			json.append(",{\"name\":\"leaves\",\"mesh\":1,\"extensions\":{\"EXT_mesh_gpu_instancing\":")
+				.append("{\"attributes\":{\"TRANSLATION\":8,\"ROTATION\":9}}}}");
+		}
+		json.append("],\"meshes\":[")
+			.append("{\"name\":\"stems\",\"primitives\":[{\"attributes\":")
+			.append("{\"POSITION\":0,\"NORMAL\":1,\"TEXCOORD_0\":2},\"indices\":3,\"material\":0}]}");
+		if (leafCount > 0) {
+			json.append(",{\"name\":\"leaf\",\"primitives\":[{\"attributes\":")
+				.append("{\"POSITION\":4,\"NORMAL\":5,\"TEXCOORD_0\":6},\"indices\":7,\"material\":1}]}");
+		}
+		json.append("],\"materials\":[")
+			.append("{\"name\":\"stems\",\"pbrMetallicRoughness\":")
+			.append("{\"baseColorFactor\":[0.4,0.3,0.2,1],\"metallicFactor\":0}},")
+			.append("{\"name\":\"leaves\",\"pbrMetallicRoughness\":")
+			.append("{\"baseColorFactor\":[0.2,0.5,0.1,1],\"metallicFactor\":0},\"doubleSided\":true}],");
+
+		// buffer views, in the order of the binary chunk
+		json.append("\"buffers\":[{\"byteLength\":").append(binLength()).append("}],\"bufferViews\":[");
+		int offset = 0;
+		offset = bufferView(json, offset, stemVerticesLength(), VERTEX_SIZE, ARRAY_BUFFER);
+		json.append(',');
+		offset = bufferView(json, offset, stemIndicesLength(), 0, ELEMENT_ARRAY_BUFFER);
+		if (leafCount > 0) {
+			json.append(',');
+			offset = bufferView(json, offset, leafVerticesLength(), VERTEX_SIZE, ARRAY_BUFFER);
+			json.append(',');
+			offset = bufferView(json, offset, leafIndicesLength(), 0, ELEMENT_ARRAY_BUFFER);
+			json.append(',');
+			offset = bufferView(json, offset, leafCount * 12, 0, 0);
+			json.append(',');
+			bufferView(json, offset, leafCount * 16, 0, 0);
+		}
+
+		// accessors
+		json.append("],\"accessors\":[");
+		vertexAccessors(json, 0, stemVertexCount, min, max);
+		json.append(',');
+		accessor(json, 1, 0, UNSIGNED_INT, stemFaceCount * 3, "SCALAR", null, null);
+		if (leafCount > 0) {
+			min = new Vector(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+			max = new Vector(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
+			for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
+				convert(leafMesh.shapeVertexAt(i).point, vertex);
+				min.setMinCoord(vertex);
+				max.setMaxCoord(vertex);
+			}
+			json.append(',');
+			vertexAccessors(json, 2, leafMesh.getShapeVertexCount(), min, max);
+			json.append(',');
+			accessor(json, 3, 0, UNSIGNED_INT, leafMesh.getShapeFaceCount() * 3, "SCALAR", null, null);
+			json.append(',');
+			accessor(json, 4, 0, FLOAT, leafCount, "VEC3", null, null);
+			json.append(',');
+			accessor(json, 5, 0, FLOAT, leafCount, "VEC4", null, null);
+		}
+		json.append("]}");
+
+		return json.toString();
+	}
+
+	private static int bufferView(StringBuilder json, int offset, int length, int stride, int target) {
+		json.append("{\"buffer\":0,\"byteOffset\":").append(offset)
+			.append(",\"byteLength\":").append(length);
+		if (stride > 0) {
+			json.append(",\"byteStride\":").append(stride);
+		}
+		if (target > 0) {
+			json.append(",\"target\":").append(target);
+		}
+		json.append('}');
+		return offset + length;
+	}
+
+	private static void vertexAccessors(StringBuilder json, int bufferView, int count, Vector min, Vector max) {
+		accessor(json, bufferView, 0, FLOAT, count, "VEC3", min, max);
+		json.append(',');
+		accessor(json, bufferView, 12, FLOAT, count, "VEC3", null, null);
+		json.append(',');
+		accessor(json, bufferView, 24, FLOAT, count, "VEC2", null, null);
+	}
+
+	private static void accessor(
+		StringBuilder json, int bufferView, int offset, int componentType,
+		int count, String type, Vector min, Vector max
+	) {
+		json.append("{\"bufferView\":").append(bufferView)
+			.append(",\"byteOffset\":").append(offset)
+			.append(",\"componentType\":").append(componentType)
+			.append(",\"count\":").append(count)
+			.append(",\"type\":\"").append(type).append('"');
+		if (min != null) {
+			json.append(",\"min\":[").append((float) min.getX()).append(',')
+				.append((float) min.getY()).append(',').append((float) min.getZ())
+				.append("],\"max\":[").append((float) max.getX()).append(',')
+				.append((float) max.getY()).append(',').append((float) max.getZ()).append(']');
+		}
+		json.append('}');
+	}
+
+	private static String quote(String s) {
+		StringBuilder q = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				q.append('\\').append(c);
+			} else if (c < ' ') {
+				q.append(String.format("\\u%04x", (int) c));
+			} else {
+				q.append(c);
+			}
+		}
+		return q.append('"').toString();
+	}
+
+	/**
+	 * Converts a vector from Arbaro's z-up coordinates to glTF's y-up coordinates
+	 */
+	private static Vector convert(Vector v, Vector dst) {
+		return dst.set(v.getX(), v.getZ(), -v.getY());
+	}
+
+	private static Vector convert(double[] coords, int i, Vector dst) {
+		return dst.set(coords[3 * i], coords[3 * i + 2], -coords[3 * i + 1]);
+	}
+
+	private void putPoint(double[] coords, int i) {
+		putVector(convert(coords, i, vertex));
+	}
+
+	void putPoint(Vector v) {
+		putVector(v == null ? null : convert(v, vertex));
+	}
+
+	private void putVertex(Vector point, Vector normal, UVVector uv) {
+		reserve(VERTEX_SIZE);
+		putPoint(point);
+		putPoint(normal);
+		// glTF has the origin of the uv coordinates at the top left
+		if (uv == null) {
+			buffer.putFloat(0).putFloat(0);
+		} else {
+			buffer.putFloat((float) uv.u).putFloat((float) (1 - uv.v));
+		}
+	}
+
+	private void putTriangle(Face face) {
+		reserve(12);
+		buffer.putInt((int) face.points[0])
+			.putInt((int) face.points[1])
+			.putInt((int) face.points[2]);
+	}
+
+	/**
+	 * Puts the rotation matrix as unit quaternion (x,y,z,w) in glTF coordinates
+	 */
+	void putRotation(Matrix m) {
+		// the rotation in glTF coordinates is C*m*C^T, with C mapping
+		// (x,y,z) to (x,z,-y)
+		double m00 = m.get(0, 0);
+		double m01 = m.get(0, 2);
+		double m02 = -m.get(0, 1);
+		double m10 = m.get(2, 0);
+		double m11 = m.get(2, 2);
+		double m12 = -m.get(2, 1);
+		double m20 = -m.get(1, 0);
+		double m21 = -m.get(1, 2);
+		double m22 = m.get(1, 1);
+
+		double x;
+		double y;
+		double z;
+		double w;
+		double trace = m00 + m11 + m22;
+		if (trace > 0) {
+			double s = 0.5 / Math.sqrt(trace + 1);
+			w = 0.25 / s;
+			x = (m21 - m12) * s;
+			y = (m02 - m20) * s;
+			z = (m10 - m01) * s;
+		} else if (m00 > m11 && m00 > m22) {
+			double s = 2 * Math.sqrt(1 + m00 - m11 - m22);
+			w = (m21 - m12) / s;
+			x = 0.25 * s;
+			y = (m01 + m10) / s;
+			z = (m02 + m20) / s;
+		} else if (m11 > m22) {
+			double s = 2 * Math.sqrt(1 + m11 - m00 - m22);
+			w = (m02 - m20) / s;
+			x = (m01 + m10) / s;
+			y = 0.25 * s;
+			z = (m12 + m21) / s;
+		} else {
+			double s = 2 * Math.sqrt(1 + m22 - m00 - m11);
+			w = (m10 - m01) / s;
+			x = (m02 + m20) / s;
+			y = (m12 + m21) / s;
+			z = 0.25 * s;
+		}
+		double len = Math.sqrt(x * x + y * y + z * z + w * w);
+
+		reserve(16);
+		buffer.putFloat((float) (x / len))
+			.putFloat((float) (y / len))
+			.putFloat((float) (z / len))
+			.putFloat((float) (w / len));
+	}
+}
@@ -32,6 +32,11 @@ abstract class MeshExporter extends AbstractExporter {
 
 	protected MeshGenerator meshGenerator;
 
+	/**
+	 * The number of threads encoding the mesh parts and leaves, used by the exporters for OBJ, POV_MESH and DXF
+	 */
+	public int parallelism = 1;
+
 	/**
 	 *
 	 */
@@ -19,11 +19,11 @@
 //  #    Send comments and bug fixes to diestel@steloj.de
 //  #
 //  #**************************************************************************/
-
 package net.katsstuff.arbaro.export;
 
+import java.io.IOException;
 import java.io.PrintWriter;
-import java.text.NumberFormat;
+import java.io.UncheckedIOException;
 import java.util.Enumeration;
 import net.katsstuff.arbaro.mesh.Face;
 import net.katsstuff.arbaro.mesh.LeafMesh;
@@ -32,188 +32,121 @@ import net.katsstuff.arbaro.mesh.MeshGenerator;
 import net.katsstuff.arbaro.mesh.MeshPart;
 import net.katsstuff.arbaro.mesh.UVVector;
 import net.katsstuff.arbaro.mesh.Vertex;
-import net.katsstuff.arbaro.params.FloatFormat;
+import net.katsstuff.arbaro.params.FloatEncoder;
+import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
 import net.katsstuff.arbaro.tree.Leaf;
 import net.katsstuff.arbaro.tree.Tree;
 
 
-class OBJLeafWriterBase extends DefaultTreeTraversal {
+/**
+ * Writes the vertices, normals and faces of the leaves in chunks of several leaves. The vertex and smoothing group
+ * offsets of every chunk are taken from the exporter when the chunk is added.
+ */
+class OBJLeafWriter extends DefaultTreeTraversal {
 
-	Progress progress;
-	LeafMesh leafMesh;
-	AbstractExporter exporter;
-	public int leafVertexOffset;
-	PrintWriter w;
-	long leavesProgressCount = 0;
-	Tree tree;
+	static final int LEAVES_PER_CHUNK = 1000;
 
-	static final NumberFormat fmt = FloatFormat.getInstance();
+	OBJExporter exporter;
+	LeafMesh leafMesh;
+	ParallelChunkWriter chunks;
+	java.util.Vector leaves = new java.util.Vector();
+	boolean firstLeaf = true;
 
-	/**
-	 *
-	 */
-	public OBJLeafWriterBase(
-		Tree tree,
-		LeafMesh leafMesh,
-		AbstractExporter exporter,
-		int leafVertexOffset
-	) {
+	public OBJLeafWriter(OBJExporter exporter, LeafMesh leafMesh, ParallelChunkWriter chunks) {
 		super();
 		this.exporter = exporter;
-		this.w = exporter.getWriter();
 		this.leafMesh = leafMesh;
-		this.leafVertexOffset = leafVertexOffset;
+		this.chunks = chunks;
 	}
 
-	public boolean enterTree(Tree tree) {
-		this.tree = tree;
-		return true;
-	}
-}
-
-/**
- * @author wolfram
- */
-class OBJLeafFaceWriter extends OBJLeafWriterBase {
-
-	boolean firstLeaf;
-	long faceProgressCount = 0;
-
-	long smoothingGroup;
-	int uvVertexOffset;
-	boolean outputLeafUVs = true;
-	boolean outputStemUVs = true;
-
-	//	instead of Arbaro's normals use smoothing to interpolate normals
-//  this should be give the same result	
-	boolean outputNormals = false;
-
-	/**
-	 *
-	 */
-	public OBJLeafFaceWriter(
-		Tree tree, AbstractExporter exporter,
-		LeafMesh leafMesh,
-		int leafVertexOffset, int uvVertexOffset,
-		long smoothingGroup,
-		boolean outputLeafUVs, boolean outputStemUVs
-	) {
-		super(tree, leafMesh, exporter, leafVertexOffset);
-
-		firstLeaf = true;
-		this.smoothingGroup = smoothingGroup;
-		this.uvVertexOffset = uvVertexOffset;
-		this.outputLeafUVs = outputLeafUVs;
-		this.outputStemUVs = outputStemUVs;
-	}
-
-
 	public boolean visitLeaf(Leaf l) {
-		if (firstLeaf) {
-
-			w.println("g leaves");
-			w.println("usemtl leaves");
-			//		uvVertexOffset++;
-
-			firstLeaf = false;
+		leaves.addElement(l);
+		if (leaves.size() == LEAVES_PER_CHUNK) {
+			flush();
 		}
 
-		w.println("s " + smoothingGroup++);
-		for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
-			Face face = leafMesh.shapeFaceAt(i);
-			writeFace(
-				face, leafVertexOffset,
-				face, uvVertexOffset,
-				outputLeafUVs, outputNormals
-			);
-		}
-
-		// increment face offset
-		leafVertexOffset += leafMesh.getShapeVertexCount();
-
 		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
 
 		return true;
 	}
 
-
-	private void writeFace(Face f, long offset, Face uv, long uvOffset, boolean writeUVs, boolean writeNormals) {
-		w.print("f ");
-
-		for (int i = 0; i < f.points.length; i++) {
-			w.print(offset + f.points[i]);
-			if (writeUVs || writeNormals) {
-				w.print("/");
-				if (writeUVs) {
-					w.print(uvOffset + uv.points[i]);
-				}
-				if (writeNormals) {
-					w.print("/" + offset + f.points[i]);
-				}
-			}
-			if (i < f.points.length - 1) {
-				w.print(" ");
-			} else {
-				w.println();
-			}
-		}
-	}
-}
-
-
-/**
- * @author wolfram
- */
-class OBJLeafVertexWriter extends OBJLeafWriterBase {
-
-	String type;
-	long vertexProgressCount = 0;
-
 	/**
-	 *
+	 * Adds the collected leaves as a chunk
 	 */
-	public OBJLeafVertexWriter(
-		Tree tree, AbstractExporter exporter, LeafMesh leafMesh,
-		int leafVertexOffset, String type
-	) {
-		super(tree, leafMesh, exporter, leafVertexOffset);
-		this.type = type;
+	void flush() {
+		if (leaves.isEmpty()) {
+			return;
+		}
+		final Leaf[] batch = new Leaf[leaves.size()];
+		leaves.copyInto(batch);
+		leaves.removeAllElements();
+
+		final boolean first = firstLeaf;
+		final int vertexOffset = exporter.vertexOffset;
+		final long smoothingGroup = exporter.smoothingGroup;
+		final int uvVertexOffset = exporter.uvVertexOffset;
+		firstLeaf = false;
+		exporter.vertexOffset += batch.length * leafMesh.getShapeVertexCount();
+		exporter.smoothingGroup += batch.length;
+
+		chunks.add(new ParallelChunkWriter.Chunk() {
+			public void write(PrintWriter[] sections, FloatEncoder fmt) {
+				writeLeaves(sections, fmt, batch, first, vertexOffset, smoothingGroup, uvVertexOffset);
+			}
+		});
 	}
 
-	public boolean visitLeaf(Leaf l) {
-		for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
-
-			if (type.equals("v")) {
-				writeVertex(l.getTransformation().apply(leafMesh.shapeVertexAt(i).point), type);
-			} else {
-				writeVertex(l.getTransformation().apply(leafMesh.shapeVertexAt(i).normal), type);
-			}
+	private void writeLeaves(PrintWriter[] sections, FloatEncoder fmt, Leaf[] batch, boolean first,
+							 int vertexOffset, long smoothingGroup, int uvVertexOffset) {
+		Vector vertex = new Vector(); // transformed vertex, reused for every vertex
+		PrintWriter faces = sections[OBJExporter.FACES];
+		if (first) {
+			faces.println("g leaves");
+			faces.println("usemtl leaves");
 		}
 
-		exporter.incProgressCount(AbstractExporter.MESH_PROGRESS_STEP);
+		for (int l = 0; l < batch.length; l++) {
+			Transformation trf = batch[l].getTransformation();
+			for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
+				OBJExporter.writeVertex(sections[OBJExporter.VERTICES], fmt,
+					trf.apply(leafMesh.shapeVertexAt(i).point, vertex), "v");
+				if (exporter.outputNormals) {
+					OBJExporter.writeVertex(sections[OBJExporter.NORMALS], fmt,
+						trf.apply(leafMesh.shapeVertexAt(i).normal, vertex), "vn");
+				}
+			}
 
-		return true;
-	}
+			faces.println("s " + smoothingGroup++);
+			for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
+				Face face = leafMesh.shapeFaceAt(i);
+				OBJExporter.writeFace(faces, face, vertexOffset, face, uvVertexOffset,
+					exporter.outputLeafUVs, exporter.outputNormals);
+			}
 
-	private void writeVertex(Vector v, String type) {
-		w.println(type + " "
-				  + fmt.format(v.getX()) + " "
-				  + fmt.format(v.getZ()) + " "
-				  + fmt.format(v.getY()));
+			// increment face offset
+			vertexOffset += leafMesh.getShapeVertexCount();
+		}
 	}
 }
 
 
 /**
  * Exports a tree mesh as Wavefront OBJ file
+ * <p>
+ * Every mesh part and every leaf is visited only once. The vertices are written directly, while the normals and faces
+ * are collected in sections, which are appended when all vertices are written. The mesh parts and leaves can be
+ * encoded on several threads.
  */
 final class OBJExporter extends MeshExporter {
 
-	long vertexProgressCount = 0;
-	long faceProgressCount = 0;
-	NumberFormat frm = FloatFormat.getInstance();
+	// the sections of the chunks
+	static final int VERTICES = 0;
+	static final int NORMALS = 1;
+	static final int FACES = 2;
+
+	FloatEncoder frm = new FloatEncoder();
 	Mesh mesh;
 	LeafMesh leafMesh;
 	Tree tree;
@@ -223,191 +156,241 @@ final class OBJExporter extends MeshExporter {
 	public boolean outputLeafUVs = true;
 	public boolean outputStemUVs = true;
 
+	/**
+	 * When set, the vertices of every stem are written as soon as its mesh part is created, so the whole stem mesh is
+	 * never held in memory. The output is the same.
+	 */
+	public boolean streaming = false;
+
 	//	instead of Arbaro's normals use smoothing to interpolate normals
 //  this should be give the same result	
 	boolean outputNormals = false;
 
+	// the writer of the vertices, normals and faces and the last written group
+	ParallelChunkWriter chunks;
+	int groupLevel;
+
 	/**
-	 *
+	 * A mesh, which writes every added mesh part instead of collecting them. Only the first part of every level is
+	 * kept, it's needed for the uv vectors.
 	 */
-	public OBJExporter(Tree tree, MeshGenerator meshGenerator) {
-		super(meshGenerator);
-		this.tree = tree;
-	}
-
-	public void doWrite() {
-		smoothingGroup = 1;
-
-		long objCount =
-			(tree.getStemCount()
-			 + tree.getLeafCount()) * (outputNormals ? 2 : 1);
-
-//		try {
-		mesh = meshGenerator.createStemMeshByLevel(tree, progress);
-		leafMesh = meshGenerator.createLeafMesh(tree, meshGenerator.getUseQuads());
+	private class StreamingMesh extends Mesh {
 
-		// vertices
-		progress.beginPhase("Writing vertices", objCount);
+		private static final long serialVersionUID = 1L;
 
-		writeStemVertices("v");
-		writeLeafVertices("v");
-
-		if (outputStemUVs) {
-			writeStemVertices("vt");
-		}
-		if (outputLeafUVs) {
-			writeLeafVertices("vt");
+		public StreamingMesh(int levels) {
+			super(levels);
 		}
 
-// use smoothing to interpolate normals			
-		if (outputNormals) {
-			writeStemVertices("vn");
-			writeLeafVertices("vn");
+		public void addMeshpart(MeshPart meshpart) {
+			if (firstMeshPart[meshpart.getLevel()] < 0) {
+				super.addMeshpart(meshpart);
+			}
+			writePart(this, meshpart);
 		}
-
-		progress.endPhase();
-
-		// faces
-		progress.beginPhase("Writing faces", objCount);
-		writeStemFaces();
-		//writeLeafFaces();
-		OBJLeafFaceWriter faceExporter =
-			new OBJLeafFaceWriter(tree, this, leafMesh,
-				vertexOffset, uvVertexOffset, smoothingGroup,
-				outputLeafUVs, outputStemUVs
-			);
-		tree.traverseTree(faceExporter);
-		vertexOffset = faceExporter.leafVertexOffset;
-		progress.endPhase();
-		w.flush();
-
-//		}	catch (Exception e) {
-//			e.printStackTrace(System.err);
-//			throw new ExportError(e.getMessage());
-//			//e.printStackTrace(System.err);
-//		}
 	}
 
-	private void writeStemVertices(String type) {
+	/**
+	 *
+	 */
+	public OBJExporter(Tree tree, MeshGenerator meshGenerator) {
+		super(meshGenerator);
+		this.tree = tree;
+	}
 
-		if (type.equals("vt")) {
-			// texture vectors
-			for (Enumeration vertices = mesh.allVertices(true);
-				vertices.hasMoreElements(); ) {
-				UVVector vertex = (UVVector) vertices.nextElement();
-				writeUVVertex(vertex);
-			}
-			// incStemsProgressCount();
-		} else {
-			// vertex and normal vectors
-			for (Enumeration vertices = mesh.allVertices(false);
-				vertices.hasMoreElements(); ) {
-				Vertex vertex = (Vertex) vertices.nextElement();
-
-				if (type.equals("v")) {
-					writeVertex(vertex.point, "v");
-				} else {
-					writeVertex(vertex.normal, "vn");
+	public void doWrite() {
+		smoothingGroup = 1;
+		vertexOffset = 1;
+		groupLevel = -1;
+
+		SpoolWriter faces = new SpoolWriter();
+		SpoolWriter normals = new SpoolWriter();
+		PrintWriter faceWriter = new PrintWriter(faces);
+		PrintWriter normalWriter = new PrintWriter(normals);
+		chunks = new ParallelChunkWriter(new PrintWriter[]{w, normalWriter, faceWriter}, parallelism);
+		try {
+			// stems
+			if (streaming) {
+				mesh = meshGenerator.createStemMeshByLevel(tree, progress,
+					new StreamingMesh(tree.getLevels()));
+			} else {
+				mesh = meshGenerator.createStemMeshByLevel(tree, progress);
+				progress.beginPhase("Writing stems", tree.getStemCount());
+				for (Enumeration parts = mesh.elements(); parts.hasMoreElements(); ) {
+					writePart(mesh, (MeshPart) parts.nextElement());
 				}
+				progress.endPhase();
 			}
+			writeGroupHeaders(tree.getLevels() - 1);
 
-			incProgressCount(AbstractExporter.MESH_PROGRESS_STEP);
-		}
-	}
-
-	private void writeLeafVertices(String type) {
+			// leaves
+			leafMesh = meshGenerator.createLeafMesh(tree, meshGenerator.getUseQuads());
+			progress.beginPhase("Writing leaves", tree.getLeafCount());
+			OBJLeafWriter leafWriter = new OBJLeafWriter(this, leafMesh, chunks);
+			tree.traverseTree(leafWriter);
+			leafWriter.flush();
+			chunks.finish();
+			progress.endPhase();
 
-		if (type.equals("vt")) {
 			// texture vectors
-			if (leafMesh.isFlat()) {
+			if (outputStemUVs) {
+				for (Enumeration vertices = mesh.allVertices(true);
+					vertices.hasMoreElements(); ) {
+					writeUVVertex((UVVector) vertices.nextElement());
+				}
+			}
+			if (outputLeafUVs && leafMesh.isFlat()) {
 				for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
 					writeUVVertex(leafMesh.shapeUVAt(i));
 				}
 			}
-		} else {
-
-			OBJLeafVertexWriter vertexExporter =
-				new OBJLeafVertexWriter(tree, this, leafMesh,
-					vertexOffset, type
-				);
-			tree.traverseTree(vertexExporter);
-			vertexOffset = vertexExporter.leafVertexOffset;
+
+			// normals and faces
+			faceWriter.flush();
+			normalWriter.flush();
+			if (faceWriter.checkError() || normalWriter.checkError()) {
+				throw new IOException("Error writing temporary file");
+			}
+			normals.appendTo(w);
+			faces.appendTo(w);
+			w.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			chunks.shutdown();
+			chunks = null;
+			faces.delete();
+			normals.delete();
 		}
 	}
 
+	/**
+	 * Adds a chunk with the vertices, normals and faces of a mesh part
+	 */
+	private void writePart(final Mesh mesh, final MeshPart mp) {
+		final int fromLevel = groupLevel + 1;
+		final int toLevel = mp.getLevel();
+		final int offset = vertexOffset;
+		final int uvOffset = 1 + mesh.firstUVIndex(mp.getLevel());
+		final long group = smoothingGroup++;
+		groupLevel = Math.max(groupLevel, toLevel);
+		vertexOffset += mp.vertexCount();
+
+		// FIXME: only needed for last stem before leaves
+		uvVertexOffset = uvOffset + mp.uvCount();
+
+		chunks.add(new ParallelChunkWriter.Chunk() {
+			public void write(PrintWriter[] sections, FloatEncoder fmt) {
+				double[] normals = outputNormals ? mp.getNormals() : null;
+				int k = 0;
+				for (Enumeration vertices = mp.allVertices(false);
+					vertices.hasMoreElements(); k++) {
+					Vertex vertex = (Vertex) vertices.nextElement();
+					writeVertex(sections[VERTICES], fmt, vertex.point, "v");
+					if (outputNormals) {
+						writeVertex(sections[NORMALS], fmt, normals, k, "vn");
+					}
+				}
 
-	private void writeStemFaces() {
-		// output mesh triangles
-		vertexOffset = 1;
-		//boolean separate_trunk = false;
-		for (int stemLevel = 0; stemLevel < tree.getLevels(); stemLevel++) {
-
-			// => start a new group
-			w.println("g " +
-					  (stemLevel == 0 ? "trunk" : "stems_" + stemLevel));
-			w.println("usemtl " +
-					  (stemLevel == 0 ? "trunk" : "stems_" + stemLevel));
-
-			for (Enumeration parts = mesh.allParts(stemLevel);
-				parts.hasMoreElements(); ) {
+				for (int level = fromLevel; level <= toLevel; level++) {
+					writeGroupHeader(sections[FACES], level);
+				}
+				writePartFaces(sections[FACES], mesh, mp, offset, uvOffset, group);
+			}
+		});
 
-				MeshPart mp = (MeshPart) parts.nextElement();
-				uvVertexOffset = 1 + mesh.firstUVIndex(mp.getStem().getLevel());
-				w.println("s " + smoothingGroup++);
+		incProgressCount(AbstractExporter.MESH_PROGRESS_STEP);
+	}
 
-				Enumeration faces = mp.allFaces(mesh, vertexOffset, false);
-				Enumeration uvFaces = mp.allFaces(mesh, uvVertexOffset, true);
+	private static void writeGroupHeader(PrintWriter out, int stemLevel) {
+		out.println("g " +
+					(stemLevel == 0 ? "trunk" : "stems_" + stemLevel));
+		out.println("usemtl " +
+					(stemLevel == 0 ? "trunk" : "stems_" + stemLevel));
+	}
 
-				while (faces.hasMoreElements()) {
-					Face face = (Face) faces.nextElement();
-					Face uvFace = (Face) uvFaces.nextElement();
-					writeFace(face, 0, uvFace, 0, outputStemUVs, outputNormals);
+	/**
+	 * Adds a chunk with the missing group headers up to the given level
+	 */
+	private void writeGroupHeaders(final int stemLevel) {
+		final int fromLevel = groupLevel + 1;
+		groupLevel = Math.max(groupLevel, stemLevel);
+
+		chunks.add(new ParallelChunkWriter.Chunk() {
+			public void write(PrintWriter[] sections, FloatEncoder fmt) {
+				for (int level = fromLevel; level <= stemLevel; level++) {
+					writeGroupHeader(sections[FACES], level);
 				}
+			}
+		});
+	}
 
-				vertexOffset += mp.vertexCount();
-
-				// FIXME: only needed for last stem before leaves
-				uvVertexOffset += mp.uvCount();
+	private void writePartFaces(PrintWriter out, Mesh mesh, MeshPart mp, int offset, int uvOffset, long group) {
+		out.println("s " + group);
 
-				//			offset += ((MeshPart)mesh.elementAt(i)).vertexCount();
+		Enumeration faces = mp.allFaces(mesh, offset, false);
+		Enumeration uvFaces = mp.allFaces(mesh, uvOffset, true);
 
-				incProgressCount(AbstractExporter.MESH_PROGRESS_STEP);
-			}
+		while (faces.hasMoreElements()) {
+			Face face = (Face) faces.nextElement();
+			Face uvFace = (Face) uvFaces.nextElement();
+			writeFace(out, face, 0, uvFace, 0, outputStemUVs, outputNormals);
 		}
 	}
 
-	private void writeVertex(Vector v, String type) {
-		w.println(type + " "
-				  + frm.format(v.getX()) + " "
-				  + frm.format(v.getZ()) + " "
-				  + frm.format(v.getY()));
+	static void writeVertex(PrintWriter out, FloatEncoder fmt, Vector v, String type) {
+		out.print(type);
+		out.print(' ');
+		fmt.write(out, v.getX());
+		out.print(' ');
+		fmt.write(out, v.getZ());
+		out.print(' ');
+		fmt.write(out, v.getY());
+		out.println();
+	}
+
+	/**
+	 * Writes the vector i of an array with x, y and z of every vector
+	 */
+	static void writeVertex(PrintWriter out, FloatEncoder fmt, double[] coords, int i, String type) {
+		out.print(type);
+		out.print(' ');
+		fmt.write(out, coords[3 * i]);
+		out.print(' ');
+		fmt.write(out, coords[3 * i + 2]);
+		out.print(' ');
+		fmt.write(out, coords[3 * i + 1]);
+		out.println();
 	}
 
 	private void writeUVVertex(UVVector v) {
-		w.println("vt "
-				  + frm.format(v.u) + " "
-				  + frm.format(v.v) + " "
-				  + frm.format(0));
+		w.print("vt ");
+		frm.write(w, v.u);
+		w.print(' ');
+		frm.write(w, v.v);
+		w.print(' ');
+		frm.write(w, 0);
+		w.println();
 	}
 
-	private void writeFace(Face f, long offset, Face uv, long uvOffset, boolean writeUVs, boolean writeNormals) {
-		w.print("f ");
+	static void writeFace(PrintWriter out, Face f, long offset, Face uv, long uvOffset, boolean writeUVs, boolean writeNormals) {
+		out.print("f ");
 
 		for (int i = 0; i < f.points.length; i++) {
-			w.print(offset + f.points[i]);
+			out.print(offset + f.points[i]);
 			if (writeUVs || writeNormals) {
-				w.print("/");
+				out.print("/");
 				if (writeUVs) {
-					w.print(uvOffset + uv.points[i]);
+					out.print(uvOffset + uv.points[i]);
 				}
 				if (writeNormals) {
-					w.print("/" + offset + f.points[i]);
+					out.print("/" + offset + f.points[i]);
 				}
 			}
 			if (i < f.points.length - 1) {
-				w.print(" ");
+				out.print(" ");
 			} else {
-				w.println();
+				out.println();
 			}
 		}
 	}
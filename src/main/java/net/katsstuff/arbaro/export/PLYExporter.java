@@ -0,0 +1,182 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.export;
+
+import net.katsstuff.arbaro.mesh.Face;
+import net.katsstuff.arbaro.mesh.IndexedMesh;
+import net.katsstuff.arbaro.mesh.LeafMesh;
+import net.katsstuff.arbaro.mesh.Mesh;
+import net.katsstuff.arbaro.mesh.MeshGenerator;
+import net.katsstuff.arbaro.mesh.UVVector;
+import net.katsstuff.arbaro.transformation.Vector;
+import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
+import net.katsstuff.arbaro.tree.Leaf;
+import net.katsstuff.arbaro.tree.Tree;
+
+/**
+ * Writes the vertices of all leaves with normals and uv vectors
+ */
+class PLYLeafVertexWriter extends DefaultTreeTraversal {
+
+	PLYExporter exporter;
+	LeafMesh leafMesh;
+	Vector[] normals;
+	private final Vector point = new Vector();
+	private final Vector normal = new Vector();
+
+	public PLYLeafVertexWriter(PLYExporter exporter, LeafMesh leafMesh) {
+		super();
+		this.exporter = exporter;
+		this.leafMesh = leafMesh;
+		normals = BinaryMeshExporter.leafNormals(leafMesh);
+	}
+
+	public boolean visitLeaf(Leaf l) {
+		for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
+			l.getTransformation().apply(leafMesh.shapeVertexAt(i).point, point);
+			l.getTransformation().matrix().prod(normals[i], normal);
+			exporter.putVertex(point, normal, leafMesh.shapeUVAt(i));
+		}
+
+		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
+
+		return true;
+	}
+}
+
+/**
+ * Writes the faces of all leaves
+ */
+class PLYLeafFaceWriter extends DefaultTreeTraversal {
+
+	PLYExporter exporter;
+	LeafMesh leafMesh;
+	public long leafVertexOffset;
+
+	public PLYLeafFaceWriter(PLYExporter exporter, LeafMesh leafMesh, long leafVertexOffset) {
+		super();
+		this.exporter = exporter;
+		this.leafMesh = leafMesh;
+		this.leafVertexOffset = leafVertexOffset;
+	}
+
+	public boolean visitLeaf(Leaf l) {
+		for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
+			exporter.putFace(leafMesh.shapeFaceAt(i), leafVertexOffset);
+		}
+		leafVertexOffset += leafMesh.getShapeVertexCount();
+
+		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
+
+		return true;
+	}
+}
+
+/**
+ * Exports a tree mesh as binary little-endian Stanford PLY file. Every vertex has a normal and uv coordinates, the
+ * coordinates are written as they are in Arbaro (z-axis up).
+ */
+final class PLYExporter extends BinaryMeshExporter {
+
+	Tree tree;
+	Mesh mesh;
+	LeafMesh leafMesh;
+
+	/**
+	 *
+	 */
+	public PLYExporter(Tree tree, MeshGenerator meshGenerator) {
+		super(meshGenerator);
+		this.tree = tree;
+	}
+
+	public void doWrite() {
+		mesh = meshGenerator.createStemMesh(tree, progress);
+		leafMesh = meshGenerator.createLeafMesh(tree, meshGenerator.getUseQuads());
+		IndexedMesh stems = new IndexedMesh(mesh, true, true, weldedStems);
+
+		long objCount = tree.getStemCount() + tree.getLeafCount();
+
+		writeHeader(
+			stems.vertexCount + tree.getLeafCount() * leafMesh.getShapeVertexCount(),
+			stems.faceCount + tree.getLeafCount() * leafMesh.getShapeFaceCount()
+		);
+
+		// vertices
+		progress.beginPhase("Writing vertices", objCount);
+		for (int v = 0; v < stems.vertexCount; v++) {
+			reserve(32);
+			putVector(stems.positions, v);
+			putVector(stems.normals, v);
+			buffer.putFloat((float) stems.vertexUVs[2 * v]).putFloat((float) stems.vertexUVs[2 * v + 1]);
+		}
+		tree.traverseTree(new PLYLeafVertexWriter(this, leafMesh));
+		progress.endPhase();
+
+		// faces
+		progress.beginPhase("Writing faces", objCount);
+		for (int f = 0; f < stems.faceCount; f++) {
+			int size = stems.faceSize(f);
+			reserve(1 + 4 * size);
+			buffer.put((byte) size);
+			for (int i = stems.faceStarts[f]; i < stems.faceStarts[f + 1]; i++) {
+				buffer.putInt(stems.indices[i]);
+			}
+		}
+		tree.traverseTree(new PLYLeafFaceWriter(this, leafMesh, stems.vertexCount));
+		progress.endPhase();
+	}
+
+	private void writeHeader(long vertexCount, long faceCount) {
+		putASCII("ply\n"
+				 + "format binary_little_endian 1.0\n"
+				 + "comment Created with Arbaro, tree species: " + tree.getSpecies() + "\n"
+				 + "element vertex " + vertexCount + "\n"
+				 + "property float x\n"
+				 + "property float y\n"
+				 + "property float z\n"
+				 + "property float nx\n"
+				 + "property float ny\n"
+				 + "property float nz\n"
+				 + "property float s\n"
+				 + "property float t\n"
+				 + "element face " + faceCount + "\n"
+				 + "property list uchar int vertex_indices\n"
+				 + "end_header\n");
+	}
+
+	void putVertex(Vector point, Vector normal, UVVector uv) {
+		reserve(32);
+		putVector(point);
+		putVector(normal);
+		putUV(uv);
+	}
+
+	void putFace(Face face, long offset) {
+		reserve(1 + 4 * face.points.length);
+		buffer.put((byte) face.points.length);
+		for (int i = 0; i < face.points.length; i++) {
+			buffer.putInt((int) (offset + face.points[i]));
+		}
+	}
+}
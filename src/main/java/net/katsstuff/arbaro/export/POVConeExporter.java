@@ -23,9 +23,8 @@
 package net.katsstuff.arbaro.export;
 
 import java.io.PrintWriter;
-import java.text.NumberFormat;
 import java.util.Enumeration;
-import net.katsstuff.arbaro.params.FloatFormat;
+import net.katsstuff.arbaro.params.FloatEncoder;
 import net.katsstuff.arbaro.params.Params;
 import net.katsstuff.arbaro.transformation.Matrix;
 import net.katsstuff.arbaro.transformation.Transformation;
@@ -44,6 +43,7 @@ class POVConeLeafWriter implements TreeTraversal {
 	//private long leavesProgressCount=0;
 	String povrayDeclarationPrefix;
 	AbstractExporter exporter;
+	final FloatEncoder fmt = new FloatEncoder();
 
 	/**
 	 *
@@ -98,32 +98,13 @@ class POVConeLeafWriter implements TreeTraversal {
 		String indent = "    ";
 
 		w.println(indent + "object { " + povrayDeclarationPrefix + "leaf "
-				  + transformationStr(leaf.getTransformation()) + "}");
+				  + POVConeExporter.transformationStr(fmt, leaf.getTransformation()) + "}");
 
 //		increment progress count
 		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
 
 		return true;
 	}
-
-	private String transformationStr(Transformation trf) {
-		NumberFormat fmt = FloatFormat.getInstance();
-		Matrix matrix = trf.matrix();
-		Vector vector = trf.vector();
-		return "matrix <"
-			   + fmt.format(matrix.get(Transformation.X, Transformation.X)) + ","
-			   + fmt.format(matrix.get(Transformation.Z, Transformation.X)) + ","
-			   + fmt.format(matrix.get(Transformation.Y, Transformation.X)) + ","
-			   + fmt.format(matrix.get(Transformation.X, Transformation.Z)) + ","
-			   + fmt.format(matrix.get(Transformation.Z, Transformation.Z)) + ","
-			   + fmt.format(matrix.get(Transformation.Y, Transformation.Z)) + ","
-			   + fmt.format(matrix.get(Transformation.X, Transformation.Y)) + ","
-			   + fmt.format(matrix.get(Transformation.Z, Transformation.Y)) + ","
-			   + fmt.format(matrix.get(Transformation.Y, Transformation.Y)) + ","
-			   + fmt.format(vector.getX()) + ","
-			   + fmt.format(vector.getZ()) + ","
-			   + fmt.format(vector.getY()) + ">";
-	}
 }
 
 
@@ -139,6 +120,7 @@ class POVConeStemWriter implements TreeTraversal {
 	PrintWriter w;
 	Params params;
 	int level;
+	final FloatEncoder fmt = new FloatEncoder();
 
 	/**
 	 *
@@ -162,7 +144,6 @@ class POVConeStemWriter implements TreeTraversal {
 		} else {
 
 			String indent = whitespace(stem.getLevel() * 2 + 4);
-			NumberFormat fmt = FloatFormat.getInstance();
 			Enumeration sections = stem.sections();
 
 			if (sections.hasMoreElements()) {
@@ -210,7 +191,6 @@ class POVConeStemWriter implements TreeTraversal {
 	}
 
 	private String vectorStr(Vector v) {
-		NumberFormat fmt = FloatFormat.getInstance();
 		return "<" + fmt.format(v.getX()) + ","
 			   + fmt.format(v.getZ()) + ","
 			   + fmt.format(v.getY()) + ">";
@@ -286,7 +266,7 @@ class POVConeExporter extends AbstractExporter {
 	public void doWrite() {
 //		try {
 		// some declarations in the POV file
-		NumberFormat frm = FloatFormat.getInstance();
+		FloatEncoder frm = new FloatEncoder();
 
 		// tree scale
 		w.println("#declare " + povrayDeclarationPrefix + "height = "
@@ -371,4 +351,25 @@ class POVConeExporter extends AbstractExporter {
 				  + " translate " + (tree.getLeafStemLength() + 0.5) + "*y scale <"
 				  + width + "," + length + "," + width + "> }");
 	}
+
+	/**
+	 * @return the Povray matrix for a transformation, with y and z swapped like all Povray coordinates
+	 */
+	static String transformationStr(FloatEncoder fmt, Transformation trf) {
+		Matrix matrix = trf.matrix();
+		Vector vector = trf.vector();
+		return "matrix <"
+			   + fmt.format(matrix.get(Transformation.X, Transformation.X)) + ","
+			   + fmt.format(matrix.get(Transformation.Z, Transformation.X)) + ","
+			   + fmt.format(matrix.get(Transformation.Y, Transformation.X)) + ","
+			   + fmt.format(matrix.get(Transformation.X, Transformation.Z)) + ","
+			   + fmt.format(matrix.get(Transformation.Z, Transformation.Z)) + ","
+			   + fmt.format(matrix.get(Transformation.Y, Transformation.Z)) + ","
+			   + fmt.format(matrix.get(Transformation.X, Transformation.Y)) + ","
+			   + fmt.format(matrix.get(Transformation.Z, Transformation.Y)) + ","
+			   + fmt.format(matrix.get(Transformation.Y, Transformation.Y)) + ","
+			   + fmt.format(vector.getX()) + ","
+			   + fmt.format(vector.getZ()) + ","
+			   + fmt.format(vector.getY()) + ">";
+	}
 }
@@ -23,7 +23,6 @@
 package net.katsstuff.arbaro.export;
 
 import java.io.PrintWriter;
-import java.text.NumberFormat;
 import java.util.Enumeration;
 import net.katsstuff.arbaro.mesh.Face;
 import net.katsstuff.arbaro.mesh.LeafMesh;
@@ -33,36 +32,41 @@ import net.katsstuff.arbaro.mesh.MeshGenerator;
 import net.katsstuff.arbaro.mesh.MeshPart;
 import net.katsstuff.arbaro.mesh.UVVector;
 import net.katsstuff.arbaro.mesh.Vertex;
-import net.katsstuff.arbaro.params.FloatFormat;
+import net.katsstuff.arbaro.params.FloatEncoder;
+import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
 import net.katsstuff.arbaro.tree.Leaf;
 import net.katsstuff.arbaro.tree.Tree;
 
 
-class POVMeshLeafWriterBase extends DefaultTreeTraversal {
+/**
+ * Base class of the leaf writers. The leaves are collected and written in chunks, which can be encoded on several
+ * threads.
+ */
+abstract class POVMeshLeafWriterBase extends DefaultTreeTraversal {
+
+	static final int LEAVES_PER_CHUNK = 1000;
 
 	LeafMesh leafMesh;
 	AbstractExporter exporter;
 	long leafVertexOffset;
-	PrintWriter w;
-	long leavesProgressCount = 0;
+	ParallelChunkWriter chunks;
+	java.util.Vector leaves = new java.util.Vector();
 	Tree tree;
 
-	static final NumberFormat fmt = FloatFormat.getInstance();
-
 	/**
 	 *
 	 */
 	public POVMeshLeafWriterBase(
 		AbstractExporter exporter, LeafMesh leafMesh,
-		long leafVertexOffset
+		long leafVertexOffset, ParallelChunkWriter chunks
 	) {
 		super();
-		this.w = exporter.getWriter();
 		this.exporter = exporter;
 		this.leafMesh = leafMesh;
 		this.leafVertexOffset = leafVertexOffset;
+		this.chunks = chunks;
 	}
 
 	public boolean enterTree(Tree tree) {
@@ -70,10 +74,69 @@ class POVMeshLeafWriterBase extends DefaultTreeTraversal {
 		return true;
 	}
 
-	void writeVector(Vector v) {
-		w.print("<" + fmt.format(v.getX()) + ","
-				+ fmt.format(v.getZ()) + ","
-				+ fmt.format(v.getY()) + ">");
+	public boolean visitLeaf(Leaf leaf) {
+		leaves.addElement(leaf);
+		if (leaves.size() == LEAVES_PER_CHUNK) {
+			flush();
+		}
+
+		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
+
+		return true;
+	}
+
+	public boolean leaveTree(Tree tree) {
+		flush();
+		return true;
+	}
+
+	private void flush() {
+		if (leaves.isEmpty()) {
+			return;
+		}
+		final Leaf[] batch = new Leaf[leaves.size()];
+		leaves.copyInto(batch);
+		leaves.removeAllElements();
+
+		final long offset = leafVertexOffset;
+		final int vertexCount = leafMesh.getShapeVertexCount();
+		leafVertexOffset += (long) batch.length * vertexCount;
+
+		chunks.add(new ParallelChunkWriter.Chunk() {
+			public void write(PrintWriter[] sections, FloatEncoder fmt) {
+				for (int l = 0; l < batch.length; l++) {
+					writeLeaf(sections[0], fmt, batch[l], offset + (long) l * vertexCount);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes one leaf, the first vertex of the leaf has the given index
+	 */
+	abstract void writeLeaf(PrintWriter w, FloatEncoder fmt, Leaf leaf, long leafVertexOffset);
+
+	static void writeVector(PrintWriter w, FloatEncoder fmt, Vector v) {
+		w.print('<');
+		fmt.write(w, v.getX());
+		w.print(',');
+		fmt.write(w, v.getZ());
+		w.print(',');
+		fmt.write(w, v.getY());
+		w.print('>');
+	}
+
+	/**
+	 * Writes the vector i of an array with x, y and z of every vector
+	 */
+	static void writeVector(PrintWriter w, FloatEncoder fmt, double[] coords, int i) {
+		w.print('<');
+		fmt.write(w, coords[3 * i]);
+		w.print(',');
+		fmt.write(w, coords[3 * i + 2]);
+		w.print(',');
+		fmt.write(w, coords[3 * i + 1]);
+		w.print('>');
 	}
 }
 
@@ -84,12 +147,12 @@ class POVMeshLeafFaceWriter extends POVMeshLeafWriterBase {
 
 	public POVMeshLeafFaceWriter(
 		AbstractExporter exporter, LeafMesh leafMesh,
-		long leafVertexOffset
+		long leafVertexOffset, ParallelChunkWriter chunks
 	) {
-		super(exporter, leafMesh, leafVertexOffset);
+		super(exporter, leafMesh, leafVertexOffset, chunks);
 	}
 
-	public boolean visitLeaf(Leaf leaf) {
+	void writeLeaf(PrintWriter w, FloatEncoder fmt, Leaf leaf, long leafVertexOffset) {
 		String indent = "    ";
 
 		for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
@@ -107,13 +170,6 @@ class POVMeshLeafFaceWriter extends POVMeshLeafWriterBase {
 			}
 		}
 		w.println();
-
-		// increment face offset
-		leafVertexOffset += leafMesh.getShapeVertexCount();
-
-		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
-
-		return true;
 	}
 }
 
@@ -128,18 +184,17 @@ class POVMeshLeafNormalWriter extends POVMeshLeafWriterBase {
 	 */
 	public POVMeshLeafNormalWriter(
 		AbstractExporter exporter, LeafMesh leafMesh,
-		long leafVertexOffset
+		long leafVertexOffset, ParallelChunkWriter chunks
 	) {
-		super(exporter, leafMesh, leafVertexOffset);
-		// TODO Auto-generated constructor stub
+		super(exporter, leafMesh, leafVertexOffset, chunks);
 	}
 
-	public boolean visitLeaf(Leaf leaf) {
+	void writeLeaf(PrintWriter w, FloatEncoder fmt, Leaf leaf, long leafVertexOffset) {
 		String indent = "    ";
+		Vector vertex = new Vector(); // transformed vector
 
-//		try {
 		for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
-			writeVector(leaf.getTransformation().apply(leafMesh.shapeVertexAt(i).normal));
+			writeVector(w, fmt, leaf.getTransformation().apply(leafMesh.shapeVertexAt(i).normal, vertex));
 
 			if (i < leafMesh.getShapeVertexCount() - 1) {
 				w.print(",");
@@ -151,17 +206,8 @@ class POVMeshLeafNormalWriter extends POVMeshLeafWriterBase {
 			}
 		}
 
-		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
-
 		throw new RuntimeException("Not implemented: if using normals for leaves use factor " +
 								   "3 instead of 2 in progress.beginPhase");
-
-//		} catch (Exception e) {
-//			throw new TraversalException(e.toString());
-//		}
-
-		//return true;
-
 	}
 }
 
@@ -176,13 +222,12 @@ class POVMeshLeafUVFaceWriter extends POVMeshLeafWriterBase {
 	 */
 	public POVMeshLeafUVFaceWriter(
 		AbstractExporter exporter, LeafMesh leafMesh,
-		long leafVertexOffset
+		long leafVertexOffset, ParallelChunkWriter chunks
 	) {
-		super(exporter, leafMesh, leafVertexOffset);
-		// TODO Auto-generated constructor stub
+		super(exporter, leafMesh, leafVertexOffset, chunks);
 	}
 
-	public boolean visitLeaf(Leaf l) {
+	void writeLeaf(PrintWriter w, FloatEncoder fmt, Leaf l, long leafVertexOffset) {
 		String indent = "    ";
 
 		for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
@@ -200,13 +245,6 @@ class POVMeshLeafUVFaceWriter extends POVMeshLeafWriterBase {
 			}
 		}
 		w.println();
-
-		// increment face offset
-		//leafFaceOffset += leafMesh.getShapeVertexCount();
-
-		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
-
-		return true;
 	}
 }
 
@@ -221,17 +259,18 @@ class POVMeshLeafVertexWriter extends POVMeshLeafWriterBase {
 	 */
 	public POVMeshLeafVertexWriter(
 		AbstractExporter exporter, LeafMesh leafMesh,
-		long leafVertexOffset
+		long leafVertexOffset, ParallelChunkWriter chunks
 	) {
-		super(exporter, leafMesh, leafVertexOffset);
-		// TODO Auto-generated constructor stub
+		super(exporter, leafMesh, leafVertexOffset, chunks);
 	}
 
-	public boolean visitLeaf(Leaf l) {
+	void writeLeaf(PrintWriter w, FloatEncoder fmt, Leaf l, long leafVertexOffset) {
 		String indent = "    ";
+		Vector vertex = new Vector(); // transformed vector
+		Transformation trf = l.getTransformation();
 
 		for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
-			writeVector(l.getTransformation().apply(leafMesh.shapeVertexAt(i).point));
+			writeVector(w, fmt, trf.apply(leafMesh.shapeVertexAt(i).point, vertex));
 
 			if (i < leafMesh.getShapeVertexCount() - 1) {
 				w.print(",");
@@ -242,10 +281,28 @@ class POVMeshLeafVertexWriter extends POVMeshLeafWriterBase {
 				w.print(indent + "          ");
 			}
 		}
+	}
+}
 
-		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
 
-		return true;
+/**
+ * Writes every leaf as an instance of the declared leaf mesh
+ */
+class POVMeshLeafInstanceWriter extends POVMeshLeafWriterBase {
+
+	String povrayDeclarationPrefix;
+
+	public POVMeshLeafInstanceWriter(
+		AbstractExporter exporter, LeafMesh leafMesh,
+		String povrayDeclarationPrefix, ParallelChunkWriter chunks
+	) {
+		super(exporter, leafMesh, 0, chunks);
+		this.povrayDeclarationPrefix = povrayDeclarationPrefix;
+	}
+
+	void writeLeaf(PrintWriter w, FloatEncoder fmt, Leaf leaf, long leafVertexOffset) {
+		w.println("    object { " + povrayDeclarationPrefix + "leaf "
+				  + POVConeExporter.transformationStr(fmt, leaf.getTransformation()) + "}");
 	}
 }
 
@@ -270,9 +327,15 @@ class POVMeshExporter extends MeshExporter {
 	public boolean outputLeafUVs = true;
 	public boolean outputStemUVs = true;
 
+	/**
+	 * Declare the leaf mesh once and write every leaf as an object with a matrix transformation instead of putting
+	 * all leaf vertices into one mesh2
+	 */
+	public boolean leafInstancing = false;
+
 	String povrayDeclarationPrefix;
 
-	static final NumberFormat fmt = FloatFormat.getInstance();
+	final FloatEncoder fmt = new FloatEncoder();
 
 	public POVMeshExporter(Tree tree, MeshGenerator meshGenerator) {
 		super(meshGenerator);
@@ -314,14 +377,20 @@ class POVMeshExporter extends MeshExporter {
 			passes = passes++;
 		}
 
-		progress.beginPhase("Writing leaf mesh", tree.getLeafCount() * 2);
 		long leafCount = tree.getLeafCount();
 
+		if (leafInstancing) {
+			writeLeafInstances(leafCount);
+			return;
+		}
+
+		progress.beginPhase("Writing leaf mesh", tree.getLeafCount() * 2);
+
 		if (leafCount > 0) {
 			w.println("#declare " + povrayDeclarationPrefix + "leaves = mesh2 {");
 			w.println("     vertex_vectors { " + leafMesh.getShapeVertexCount() * leafCount);
 			//writeLeavesPoints();
-			tree.traverseTree(new POVMeshLeafVertexWriter(this, leafMesh, leafVertexOffset));
+			traverseLeaves(new POVMeshLeafVertexWriter(this, leafMesh, leafVertexOffset, null));
 			w.println("     }");
 
 			if (outputLeafNormals) {
@@ -353,16 +422,67 @@ class POVMeshExporter extends MeshExporter {
 
 			w.println("     face_indices { " + leafMesh.getShapeFaceCount() * leafCount);
 			//writeLeavesFaces();
-			tree.traverseTree(new POVMeshLeafFaceWriter(this, leafMesh, leafVertexOffset));
+			traverseLeaves(new POVMeshLeafFaceWriter(this, leafMesh, leafVertexOffset, null));
 			w.println("     }");
 
 			if (outputLeafUVs && leafMesh.isFlat()) {
 				w.println("     uv_indices { " + leafMesh.getShapeFaceCount() * leafCount);
 //				writeLeavesUVFaces();
-				tree.traverseTree(new POVMeshLeafUVFaceWriter(this, leafMesh, leafVertexOffset));
+				traverseLeaves(new POVMeshLeafUVFaceWriter(this, leafMesh, leafVertexOffset, null));
+				w.println("     }");
+			}
+
+			w.println("}");
+		} else {
+			// empty declaration
+			w.println("#declare " + povrayDeclarationPrefix + "leaves = sphere {<0,0,0>,0}");
+		}
+
+		progress.endPhase();
+	}
+
+	private void writeLeafInstances(long leafCount) {
+		progress.beginPhase("Writing leaf instances", leafCount);
+
+		if (leafCount > 0) {
+			// the leaf shape in the local coordinates of a leaf
+			w.println("#declare " + povrayDeclarationPrefix + "leaf = mesh2 {");
+			w.println("     vertex_vectors { " + leafMesh.getShapeVertexCount());
+			for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
+				writeVector(leafMesh.shapeVertexAt(i).point);
+				if (i < leafMesh.getShapeVertexCount() - 1) {
+					w.print(",");
+				}
+			}
+			w.println();
+			w.println("     }");
+
+			boolean uvs = outputLeafUVs && leafMesh.isFlat();
+			if (uvs) {
+				w.println("     uv_vectors { " + leafMesh.getShapeVertexCount());
+				for (int i = 0; i < leafMesh.getShapeVertexCount(); i++) {
+					writeUVVector(leafMesh.shapeUVAt(i));
+					if (i < leafMesh.getShapeVertexCount() - 1) {
+						w.print(",");
+					}
+				}
+				w.println();
+				w.println("     }");
+			}
+
+			w.println("     face_indices { " + leafMesh.getShapeFaceCount());
+			writeLeafShapeFaces();
+			w.println("     }");
+
+			if (uvs) {
+				w.println("     uv_indices { " + leafMesh.getShapeFaceCount());
+				writeLeafShapeFaces();
 				w.println("     }");
 			}
+			w.println("}");
 
+			w.println("#declare " + povrayDeclarationPrefix + "leaves = union {");
+			traverseLeaves(new POVMeshLeafInstanceWriter(this, leafMesh, povrayDeclarationPrefix, null));
 			w.println("}");
 		} else {
 			// empty declaration
@@ -372,6 +492,17 @@ class POVMeshExporter extends MeshExporter {
 		progress.endPhase();
 	}
 
+	private void writeLeafShapeFaces() {
+		for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
+			Face face = leafMesh.shapeFaceAt(i);
+			w.print("<" + face.points[0] + "," + face.points[1] + "," + face.points[2] + ">");
+			if (i < leafMesh.getShapeFaceCount() - 1) {
+				w.print(",");
+			}
+		}
+		w.println();
+	}
+
 	private void writeStems() {
 		String indent = "  ";
 
@@ -462,41 +593,131 @@ class POVMeshExporter extends MeshExporter {
 	}
 
 
+	/**
+	 * Writes the leaves with a leaf writer, which gets its own chunk writer
+	 */
+	private void traverseLeaves(POVMeshLeafWriterBase leafWriter) {
+		leafWriter.chunks = new ParallelChunkWriter(w, parallelism);
+		try {
+			tree.traverseTree(leafWriter);
+			leafWriter.chunks.finish();
+		} finally {
+			leafWriter.chunks.shutdown();
+		}
+	}
+
 	private void writeStemPoints(/*String indent*/) {
 		// w.println(indent + "  /* stem " + mp.getTreePosition() + "*/ ");
+		writeStemVectors(false, AbstractExporter.STEM_PROGRESS_STEP);
+		w.println();
+	}
 
-		int i = 0;
-		for (Enumeration vertices = mesh.allVertices(false);
-			vertices.hasMoreElements(); ) {
+	/**
+	 * Writes the points or normals of all mesh parts, every part is a chunk
+	 */
+	private void writeStemVectors(final boolean normals, int progressStep) {
+		final int total = mesh.vertexCount();
+		ParallelChunkWriter chunks = new ParallelChunkWriter(w, parallelism);
+		try {
+			int start = 0;
+			for (Enumeration parts = mesh.elements(); parts.hasMoreElements(); ) {
+				final MeshPart mp = (MeshPart) parts.nextElement();
+				final int first = start;
+				start += mp.vertexCount();
+
+				chunks.add(new ParallelChunkWriter.Chunk() {
+					public void write(PrintWriter[] sections, FloatEncoder fmt) {
+						writePartVectors(sections[0], fmt, mp, normals, first, total);
+					}
+				});
+
+				for (int k = first; k < start; k++) {
+					incProgressCount(progressStep);
+				}
+			}
+			chunks.finish();
+		} finally {
+			chunks.shutdown();
+		}
+	}
+
+	private static void writePartVectors(PrintWriter w, FloatEncoder fmt, MeshPart mp, boolean normals,
+										 int i, int total) {
+		double[] partNormals = normals ? mp.getNormals() : null;
+		int k = 0;
+		for (Enumeration vertices = mp.allVertices(false);
+			vertices.hasMoreElements(); k++) {
 
 			Vertex vertex = (Vertex) vertices.nextElement();
-			writeVector(vertex.point);
-			if (vertices.hasMoreElements()) {
+			if (normals) {
+				POVMeshLeafWriterBase.writeVector(w, fmt, partNormals, k);
+			} else {
+				POVMeshLeafWriterBase.writeVector(w, fmt, vertex.point);
+			}
+			if (++i < total) {
 				w.print(",");
 			}
-			if (++i % 6 == 2) {
+			if (i % 6 == 2) {
 				// new line
 				w.println();
 			}
-
-			incProgressCount(AbstractExporter.STEM_PROGRESS_STEP);
 		}
-
-		w.println();
 	}
 
-	public void writeStemFaces(boolean uv/*, String indent*/)
+	public void writeStemFaces(final boolean uv/*, String indent*/)
 		throws MeshException {
 
-		int j = 0;
-		for (Enumeration faces = mesh.allFaces(0, uv, -1 /* all levels */);
+		// count the faces like the enumerators produce them, for degenerated
+		// sections this can differ from MeshPart.faceCount()
+		int[] startIndices = new int[mesh.size()];
+		int[] firstFaces = new int[mesh.size() + 1];
+		int vertexStart = 0;
+		for (int i = 0; i < mesh.size(); i++) {
+			MeshPart mp = (MeshPart) mesh.elementAt(i);
+			startIndices[i] = uv ? mesh.firstUVIndex(mp.getLevel()) : vertexStart;
+			vertexStart += mp.vertexCount();
+
+			int cnt = 0;
+			for (Enumeration faces = mp.allFaces(mesh, startIndices[i], uv);
+				faces.hasMoreElements(); faces.nextElement()) {
+				cnt++;
+			}
+			firstFaces[i + 1] = firstFaces[i] + cnt;
+		}
+
+		final int total = firstFaces[mesh.size()];
+		ParallelChunkWriter chunks = new ParallelChunkWriter(w, parallelism);
+		try {
+			for (int i = 0; i < mesh.size(); i++) {
+				final MeshPart mp = (MeshPart) mesh.elementAt(i);
+				final int startIndex = startIndices[i];
+				final int first = firstFaces[i];
+
+				chunks.add(new ParallelChunkWriter.Chunk() {
+					public void write(PrintWriter[] sections, FloatEncoder fmt) {
+						writePartFaces(sections[0], mp, uv, startIndex, first, total);
+					}
+				});
+
+				for (int k = first; k < firstFaces[i + 1]; k++) {
+					incProgressCount(AbstractExporter.STEM_PROGRESS_STEP);
+				}
+			}
+			chunks.finish();
+		} finally {
+			chunks.shutdown();
+		}
+	}
+
+	private void writePartFaces(PrintWriter w, MeshPart mp, boolean uv, int startIndex, int j, int total) {
+		for (Enumeration faces = mp.allFaces(mesh, startIndex, uv);
 			faces.hasMoreElements(); ) {
 
 			Face face = (Face) faces.nextElement();
 			w.print("<" + face.points[0] + ","
 					+ face.points[1] + ","
 					+ face.points[2] + ">");
-			if (faces.hasMoreElements()) {
+			if (j < total - 1) {
 				w.print(",");
 			}
 
@@ -505,46 +726,13 @@ class POVMeshExporter extends MeshExporter {
 				w.println();
 				// w.print(indent + "          ");
 			}
-
-			incProgressCount(AbstractExporter.STEM_PROGRESS_STEP);
 		}
 	}
 
-	private void writeStemNormals(/*String indent*/)
-//	throws MeshException
-	{
-
-		int i = 0;
-
-//		try {
-		for (Enumeration parts = mesh.elements();
-			parts.hasMoreElements(); ) {
-			((MeshPart) parts.nextElement()).setNormals(true /* check */);
-		}
+	private void writeStemNormals(/*String indent*/) {
 		// w.println(indent + "  /* stem " + mp.getTreePosition() + "*/ ");
-
-		for (Enumeration vertices = mesh.allVertices(false);
-			vertices.hasMoreElements(); ) {
-
-			Vertex vertex = (Vertex) vertices.nextElement();
-			writeVector(vertex.normal);
-			if (vertices.hasMoreElements()) {
-				w.print(",");
-			}
-			if (++i % 6 == 2) {
-				// new line
-				w.println();
-			}
-
-			incProgressCount(AbstractExporter.MESH_PROGRESS_STEP);
-		}
-
+		writeStemVectors(true, AbstractExporter.MESH_PROGRESS_STEP);
 		w.println();
-
-//		} catch (Exception e) {
-//			// e.printStackTrace(System.err);
-//			throw new MeshException("Error in MeshSection "+i+": "+e); //.getMessage());
-//		}
 	}
 
 
@@ -577,14 +765,21 @@ class POVMeshExporter extends MeshExporter {
 	}
 
 	private void writeVector(Vector v) {
-		w.print("<" + fmt.format(v.getX()) + ","
-				+ fmt.format(v.getZ()) + ","
-				+ fmt.format(v.getY()) + ">");
+		w.print('<');
+		fmt.write(w, v.getX());
+		w.print(',');
+		fmt.write(w, v.getZ());
+		w.print(',');
+		fmt.write(w, v.getY());
+		w.print('>');
 	}
 
 	private void writeUVVector(UVVector uv) {
-		// NumberFormat fmt = FloatFormat.getInstance();
-		w.print("<" + fmt.format(uv.u) + "," + fmt.format(uv.v) + ">");
+		w.print('<');
+		fmt.write(w, uv.u);
+		w.print(',');
+		fmt.write(w, uv.v);
+		w.print('>');
 	}
 }
 
@@ -0,0 +1,160 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.export;
+
+import java.io.CharArrayWriter;
+import java.io.PrintWriter;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.katsstuff.arbaro.params.FloatEncoder;
+
+/**
+ * Encodes the chunks of an output file on several threads and writes them in the order they were added. A chunk can
+ * write to several sections of the file, e.g. the vertices and the faces of an OBJ file, every section goes to its own
+ * writer.
+ * <p>
+ * With only one thread the chunks are written directly, so the output is the same in both cases, as long as every
+ * chunk gets all the information it needs, like vertex offsets, when it is created.
+ */
+class ParallelChunkWriter {
+
+	/**
+	 * A piece of the output, which can be written independently of the others
+	 */
+	interface Chunk {
+
+		/**
+		 * @param sections a writer for every section of the output
+		 * @param fmt an encoder, which is used only by the current thread
+		 */
+		void write(PrintWriter[] sections, FloatEncoder fmt);
+	}
+
+	// chunks encoded ahead of the writer per thread
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final PrintWriter[] destinations;
+	private final ExecutorService pool;
+	private final int maxPending;
+	private final LinkedList pending = new LinkedList(); // futures of the encoded sections
+	private final FloatEncoder fmt = new FloatEncoder();
+
+	private final ThreadLocal encoders = new ThreadLocal() {
+		protected Object initialValue() {
+			return new FloatEncoder();
+		}
+	};
+
+	/**
+	 * @param destinations the writers of the sections
+	 * @param threads the number of threads encoding the chunks
+	 */
+	public ParallelChunkWriter(PrintWriter[] destinations, int threads) {
+		this.destinations = destinations;
+		if (threads > 1) {
+			pool = Executors.newFixedThreadPool(threads);
+			maxPending = threads * CHUNKS_PER_THREAD;
+		} else {
+			pool = null;
+			maxPending = 0;
+		}
+	}
+
+	public ParallelChunkWriter(PrintWriter destination, int threads) {
+		this(new PrintWriter[]{destination}, threads);
+	}
+
+	/**
+	 * Adds a chunk, which is written after all chunks added before
+	 */
+	public void add(final Chunk chunk) {
+		if (pool == null) {
+			chunk.write(destinations, fmt);
+			return;
+		}
+
+		while (pending.size() >= maxPending) {
+			writeNext();
+		}
+
+		pending.addLast(pool.submit(new Callable() {
+			public Object call() {
+				CharArrayWriter[] buffers = new CharArrayWriter[destinations.length];
+				PrintWriter[] sections = new PrintWriter[destinations.length];
+				for (int i = 0; i < sections.length; i++) {
+					buffers[i] = new CharArrayWriter();
+					sections[i] = new PrintWriter(buffers[i]);
+				}
+				chunk.write(sections, (FloatEncoder) encoders.get());
+				for (int i = 0; i < sections.length; i++) {
+					sections[i].flush();
+				}
+				return buffers;
+			}
+		}));
+	}
+
+	/**
+	 * Writes all pending chunks and stops the threads
+	 */
+	public void finish() {
+		try {
+			while (!pending.isEmpty()) {
+				writeNext();
+			}
+		} finally {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Stops the threads without writing the pending chunks, e.g. after an error
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+	}
+
+	private void writeNext() {
+		CharArrayWriter[] buffers;
+		try {
+			buffers = (CharArrayWriter[]) ((Future) pending.removeFirst()).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		for (int i = 0; i < buffers.length; i++) {
+			destinations[i].write(buffers[i].toCharArray());
+		}
+	}
+}
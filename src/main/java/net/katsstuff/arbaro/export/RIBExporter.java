@@ -23,7 +23,6 @@
 
 package net.katsstuff.arbaro.export;
 
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Enumeration;
@@ -34,7 +33,7 @@ import net.katsstuff.arbaro.mesh.MeshGenerator;
 import net.katsstuff.arbaro.mesh.MeshPart;
 import net.katsstuff.arbaro.mesh.UVVector;
 import net.katsstuff.arbaro.mesh.Vertex;
-import net.katsstuff.arbaro.params.FloatFormat;
+import net.katsstuff.arbaro.params.FloatEncoder;
 import net.katsstuff.arbaro.transformation.Box;
 import net.katsstuff.arbaro.transformation.Vector;
 import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
@@ -110,7 +109,7 @@ class RIBLeafTraversal extends DefaultTreeTraversal {
  */
 final class RIBExporter extends MeshExporter {
 
-	NumberFormat frm = FloatFormat.getInstance();
+	FloatEncoder frm = new FloatEncoder();
 	Tree tree;
 	Mesh mesh;
 	java.util.Vector leafVertexClusters;
@@ -439,8 +438,8 @@ final class RIBExporter extends MeshExporter {
 
 		for (int stemLevel = 0; stemLevel < tree.getLevels(); stemLevel++) {
 
-			for (Enumeration parts = mesh.allParts(stemLevel);
-				parts.hasMoreElements(); ) {
+			int levelEnd = mesh.levelEnd(stemLevel);
+			for (int p = mesh.levelStart(stemLevel); p < levelEnd; p++) {
 
 				// => start a gprim
 				if (outputNormals) {
@@ -452,7 +451,7 @@ final class RIBExporter extends MeshExporter {
 
 				indent.increase();
 
-				MeshPart mp = (MeshPart) parts.nextElement();
+				MeshPart mp = (MeshPart) mesh.elementAt(p);
 
 				long highestVertexIndex = 0;
 				{
@@ -537,17 +536,16 @@ final class RIBExporter extends MeshExporter {
 					// output normal data (not needed for subdivision surfaces)
 					print("\"N\" [ ");
 
-					Enumeration vertices = mp.allVertices(false);
+					double[] normals = mp.getNormals();
 					elementCounter = 0;
 
-					while (vertices.hasMoreElements()) {
+					for (int k = 0; k < normals.length / 3; k++) {
 						if (3 < elementCounter++) {
 							elementCounter = 1;
 							println();
 							print("  ");
 						}
-						Vertex vertex = (Vertex) vertices.nextElement();
-						writeVector(vertex.normal);
+						writeVector(normals, k);
 					}
 					w.println("]");
 				}
@@ -594,14 +592,28 @@ final class RIBExporter extends MeshExporter {
 
 
 	private void writeVector(Vector v) {
-		w.print(frm.format(v.getX()) + " "
-				+ frm.format(v.getZ()) + " "
-				+ frm.format(v.getY()) + " ");
+		frm.write(w, v.getX());
+		w.print(' ');
+		frm.write(w, v.getZ());
+		w.print(' ');
+		frm.write(w, v.getY());
+		w.print(' ');
+	}
+
+	private void writeVector(double[] coords, int i) {
+		frm.write(w, coords[3 * i]);
+		w.print(' ');
+		frm.write(w, coords[3 * i + 2]);
+		w.print(' ');
+		frm.write(w, coords[3 * i + 1]);
+		w.print(' ');
 	}
 
 	private void writeUVPrimvar(UVVector v) {
-		w.print(frm.format(v.u) + " "
-				+ frm.format(v.v) + " ");
+		frm.write(w, v.u);
+		w.print(' ');
+		frm.write(w, v.v);
+		w.print(' ');
 	}
 
 	private void writeFaceVertexIndices(Face f) {
@@ -24,10 +24,9 @@
 package net.katsstuff.arbaro.export;
 
 import java.io.File;
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import net.katsstuff.arbaro.params.FloatFormat;
+import net.katsstuff.arbaro.params.FloatEncoder;
 import net.katsstuff.arbaro.tree.Tree;
 
 
@@ -43,7 +42,7 @@ class RIBSceneExporter extends AbstractExporter {
 	String archiveFile;
 	String image;
 	StringIndenter indent = new StringIndenter("  ");
-	NumberFormat frm = FloatFormat.getInstance();
+	FloatEncoder frm = new FloatEncoder();
 
 	/**
 	 *
@@ -0,0 +1,164 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.export;
+
+import java.nio.charset.StandardCharsets;
+import net.katsstuff.arbaro.mesh.Face;
+import net.katsstuff.arbaro.mesh.IndexedMesh;
+import net.katsstuff.arbaro.mesh.LeafMesh;
+import net.katsstuff.arbaro.mesh.Mesh;
+import net.katsstuff.arbaro.mesh.MeshGenerator;
+import net.katsstuff.arbaro.transformation.Vector;
+import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
+import net.katsstuff.arbaro.tree.Leaf;
+import net.katsstuff.arbaro.tree.Tree;
+
+/**
+ * Writes the triangles of all leaves
+ */
+class STLLeafWriter extends DefaultTreeTraversal {
+
+	STLExporter exporter;
+	LeafMesh leafMesh;
+	Vector[] points;
+
+	public STLLeafWriter(STLExporter exporter, LeafMesh leafMesh) {
+		super();
+		this.exporter = exporter;
+		this.leafMesh = leafMesh;
+		points = new Vector[leafMesh.getShapeVertexCount()];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new Vector();
+		}
+	}
+
+	public boolean visitLeaf(Leaf l) {
+		for (int i = 0; i < points.length; i++) {
+			l.getTransformation().apply(leafMesh.shapeVertexAt(i).point, points[i]);
+		}
+		for (int i = 0; i < leafMesh.getShapeFaceCount(); i++) {
+			exporter.putFace(leafMesh.shapeFaceAt(i), points);
+		}
+
+		exporter.incProgressCount(AbstractExporter.LEAF_PROGRESS_STEP);
+
+		return true;
+	}
+}
+
+/**
+ * Exports a tree mesh as binary STL file. STL knows only triangles with a facet normal, so there are no uv vectors.
+ * The coordinates are written as they are in Arbaro (z-axis up).
+ */
+final class STLExporter extends BinaryMeshExporter {
+
+	private static final int HEADER_SIZE = 80;
+
+	Tree tree;
+	Mesh mesh;
+	LeafMesh leafMesh;
+
+	private final Vector edge1 = new Vector();
+	private final Vector edge2 = new Vector();
+	private final Vector normal = new Vector();
+	private final Vector corner0 = new Vector();
+	private final Vector corner1 = new Vector();
+	private final Vector corner2 = new Vector();
+
+	/**
+	 *
+	 */
+	public STLExporter(Tree tree, MeshGenerator meshGenerator) {
+		super(meshGenerator);
+		this.tree = tree;
+	}
+
+	public void doWrite() {
+		mesh = meshGenerator.createStemMesh(tree, progress);
+		// STL needs triangles, the mesh generator must not use quads
+		leafMesh = meshGenerator.createLeafMesh(tree, false);
+		IndexedMesh stems = new IndexedMesh(mesh, false, false, weldedStems);
+
+		writeHeader(stems.faceCount + tree.getLeafCount() * leafMesh.getShapeFaceCount());
+
+		progress.beginPhase("Writing triangles", tree.getStemCount() + tree.getLeafCount());
+		for (int p = 0; p < stems.partCount; p++) {
+			for (int f = stems.partFaceStarts[p]; f < stems.partFaceStarts[p + 1]; f++) {
+				int i = stems.faceStarts[f];
+				putFace(
+					point(stems, stems.indices[i], corner0),
+					point(stems, stems.indices[i + 1], corner1),
+					point(stems, stems.indices[i + 2], corner2)
+				);
+			}
+			incProgressCount(AbstractExporter.STEM_PROGRESS_STEP);
+		}
+		tree.traverseTree(new STLLeafWriter(this, leafMesh));
+		progress.endPhase();
+	}
+
+	private void writeHeader(long triangleCount) {
+		// the header must not begin with "solid", that's the ASCII format
+		byte[] comment = ("Created with Arbaro, tree species: " + tree.getSpecies())
+			.getBytes(StandardCharsets.US_ASCII);
+		reserve(HEADER_SIZE + 4);
+		for (int i = 0; i < HEADER_SIZE; i++) {
+			buffer.put(i < comment.length ? comment[i] : 0);
+		}
+		buffer.putInt((int) triangleCount);
+	}
+
+	private static Vector point(IndexedMesh mesh, int vertex, Vector dst) {
+		return dst.set(mesh.positions[3 * vertex], mesh.positions[3 * vertex + 1], mesh.positions[3 * vertex + 2]);
+	}
+
+	/**
+	 * Puts a triangle with its facet normal, the face's indices refer to the given points
+	 */
+	void putFace(Face face, Vector[] points) {
+		putFace(points[(int) face.points[0]], points[(int) face.points[1]], points[(int) face.points[2]]);
+	}
+
+	/**
+	 * Puts a triangle with its facet normal
+	 */
+	private void putFace(Vector a, Vector b, Vector c) {
+		edge1.set(b).subLocal(a);
+		edge2.set(c).subLocal(a);
+		normal.set(
+			edge1.getY() * edge2.getZ() - edge1.getZ() * edge2.getY(),
+			edge1.getZ() * edge2.getX() - edge1.getX() * edge2.getZ(),
+			edge1.getX() * edge2.getY() - edge1.getY() * edge2.getX()
+		);
+		if (normal.abs() > 0) {
+			normal.normalizeLocal();
+		}
+
+		reserve(50);
+		putVector(normal);
+		putVector(a);
+		putVector(b);
+		putVector(c);
+		buffer.putShort((short) 0);
+	}
+}
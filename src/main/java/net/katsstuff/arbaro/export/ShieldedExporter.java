@@ -22,6 +22,7 @@
 
 package net.katsstuff.arbaro.export;
 
+import java.io.OutputStream;
 import java.io.PrintWriter;
 
 /**
@@ -66,4 +67,15 @@ public class ShieldedExporter implements Exporter {
 			showException(e);
 		}
 	}
+
+	/**
+	 * Delegates to exporter.write and handles exceptions
+	 */
+	public void write(OutputStream out, Progress progress) {
+		try {
+			exporter.write(out, progress);
+		} catch (Exception e) {
+			showException(e);
+		}
+	}
 }
@@ -0,0 +1,111 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.export;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * A writer collecting one section of an output file, which is appended to the file later. The text is kept in memory
+ * until it gets large, then it is spooled to a temporary file.
+ */
+class SpoolWriter extends Writer {
+
+	// chars kept in memory before switching to a temporary file
+	static final int MEMORY_LIMIT = 1 << 22;
+
+	private CharArrayWriter memory = new CharArrayWriter();
+	private File file;
+	private Writer fileWriter;
+
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if (fileWriter == null && memory.size() + len > MEMORY_LIMIT) {
+			file = File.createTempFile("arbaro", ".spool");
+			fileWriter = new BufferedWriter(new FileWriter(file));
+			memory.writeTo(fileWriter);
+			memory = null;
+		}
+		if (fileWriter != null) {
+			fileWriter.write(cbuf, off, len);
+		} else {
+			memory.write(cbuf, off, len);
+		}
+	}
+
+	public void flush() throws IOException {
+		if (fileWriter != null) {
+			fileWriter.flush();
+		}
+	}
+
+	public void close() throws IOException {
+		if (fileWriter != null) {
+			fileWriter.close();
+		}
+	}
+
+	/**
+	 * Writes the collected text to another writer
+	 */
+	public void appendTo(Writer out) throws IOException {
+		if (file == null) {
+			memory.writeTo(out);
+			return;
+		}
+
+		fileWriter.close();
+		Reader in = new BufferedReader(new FileReader(file));
+		try {
+			char[] buf = new char[8192];
+			int len;
+			while ((len = in.read(buf)) > 0) {
+				out.write(buf, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Removes the temporary file, if there is one
+	 */
+	public void delete() {
+		try {
+			close();
+		} catch (IOException e) {
+			// the file is deleted anyway
+		}
+		if (file != null) {
+			file.delete();
+			file = null;
+		}
+		memory = null;
+	}
+}
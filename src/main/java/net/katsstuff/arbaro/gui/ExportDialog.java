@@ -38,8 +38,10 @@ import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -260,6 +262,19 @@ public class ExportDialog {
 				uvStemsCheckbox.setEnabled(true);
 				uvLeavesCheckbox.setEnabled(true);
 			}
+			case ExporterFactory.PLY, ExporterFactory.STL, ExporterFactory.GLB -> {
+				fileField.setText(fileChooser.getCurrentDirectory().getPath()
+								  + fileSep + params.Species + "."
+								  + ExporterFactory.getShortExportFormats()[outputFormat].toLowerCase());
+				sceneCheckbox.setSelected(false);
+				sceneCheckbox.setEnabled(false);
+				renderCheckbox.setSelected(false);
+				renderCheckbox.setEnabled(false);
+				smoothField.setEnabled(true);
+				tabbedPane.setEnabledAt(1, false);
+				uvStemsCheckbox.setEnabled(false);
+				uvLeavesCheckbox.setEnabled(false);
+			}
 		}
 	}
 
@@ -671,7 +686,7 @@ class TreeCreationTask {
 	//	ExporterFactory exporterFactory;
 	Progress progress;
 	//Tree tmptree;
-	PrintWriter writer;
+	OutputStream out;
 	File scene_file = null;
 	PrintWriter scenewriter = null;
 	String renderFilename = null;
@@ -714,7 +729,7 @@ class TreeCreationTask {
 //			this.exporterFactory = exporterFactory;
 
 			//writer = new PrintWriter(new GZIPOutputStream(new FileOutputStream(outFile)));
-			writer = new PrintWriter(new FileWriter(outFile));
+			out = new FileOutputStream(outFile);
 			if (sceneFile != null) {
 				scene_file = sceneFile;
 				scenewriter = new PrintWriter(new FileWriter(sceneFile));
@@ -806,7 +821,8 @@ class TreeCreationTask {
 					parent,
 					ExporterFactory.createExporter(tree)
 				);
-				exporter.write(writer, progress);
+				exporter.write(out, progress);
+				out.close();
 
 				// export rendering scene ?
 				if (scenewriter != null) {
@@ -35,6 +35,7 @@ import net.katsstuff.arbaro.params.IntParam;
 import net.katsstuff.arbaro.params.Params;
 import net.katsstuff.arbaro.transformation.Vector;
 import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeBVH;
 import net.katsstuff.arbaro.tree.TreeGenerator;
 import net.katsstuff.arbaro.tree.TreeGeneratorFactory;
 import net.katsstuff.arbaro.tree.TreeTraversal;
@@ -101,6 +102,10 @@ public final class PreviewTree implements Tree {
 		return tree.getMaxPoint();
 	}
 
+	public TreeBVH getBVH() {
+		return tree.getBVH();
+	}
+
 	public Vector getMinPoint() {
 		return tree.getMinPoint();
 	}
@@ -0,0 +1,66 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.mesh;
+
+/**
+ * A mesh, which collects the added mesh parts by level instead of holding them. Afterwards they are added to another
+ * mesh level by level, so a mesh ordered by level is created in one traversal of the tree.
+ */
+class ByLevelMesh extends Mesh {
+
+	private static final long serialVersionUID = 1L;
+
+	private final java.util.Vector[] levels;
+
+	public ByLevelMesh(int levels) {
+		super(levels);
+		this.levels = new java.util.Vector[firstMeshPart.length];
+		for (int l = 0; l < this.levels.length; l++) {
+			this.levels[l] = new java.util.Vector();
+		}
+	}
+
+	public void addMeshpart(MeshPart meshpart) {
+		int level = meshpart.getLevel();
+		if (firstMeshPart[level] < 0) {
+			firstMeshPart[level] = levels[level].size();
+		}
+		levels[level].addElement(meshpart);
+	}
+
+	/**
+	 * Adds the collected mesh parts to the mesh, the parts of every level in the order they were collected
+	 *
+	 * @param mesh the mesh
+	 * @return the mesh
+	 */
+	public Mesh addTo(Mesh mesh) {
+		for (int l = 0; l < levels.length; l++) {
+			for (int i = 0; i < levels[l].size(); i++) {
+				mesh.addMeshpart((MeshPart) levels[l].elementAt(i));
+			}
+			levels[l] = null;
+		}
+		return mesh;
+	}
+}
@@ -0,0 +1,384 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.mesh;
+
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import net.katsstuff.arbaro.export.Console;
+import net.katsstuff.arbaro.transformation.Vector;
+
+/**
+ * A mesh held in primitive arrays: the coordinates of all vertices, normals and uv vectors one after the other and the
+ * faces as indices into them. It's built once from a Mesh, so writing it needs no Vertex and Face objects.
+ * <p>
+ * The vertices and faces are in the order of the mesh's enumerations, the vertex and face indices are the same as the
+ * ones of {@link Mesh#allFaces(int, boolean, int)} with start index 0. A face has three or four vertices, the vertices
+ * of face f are the indices from faceStarts[f] to faceStarts[f+1]-1.
+ * <p>
+ * A welded indexed mesh leaves out the first ring of every clone, the clone's first faces use the vertices of the ring
+ * of its parent stem, where it was split off. So the stems and their clones have no gaps between them and the mesh has
+ * fewer vertices, but the indices differ from the mesh's enumerations.
+ */
+public final class IndexedMesh {
+
+	/**
+	 * Number of vertices, faces, uv vectors and mesh parts
+	 */
+	public final int vertexCount;
+	public final int faceCount;
+	public final int uvCount;
+	public final int partCount;
+
+	/**
+	 * x, y and z of every vertex
+	 */
+	public final double[] positions;
+
+	/**
+	 * x, y and z of every vertex normal, or null if created without normals
+	 */
+	public final double[] normals;
+
+	/**
+	 * u and v of every vertex, or null if created without uv vectors
+	 */
+	public final double[] vertexUVs;
+
+	/**
+	 * u and v of every uv vector, or null if created without uv vectors. The uv vectors are shared by the mesh parts
+	 * of a level like the ones of {@link Mesh#allVertices(boolean)}.
+	 */
+	public final double[] uvs;
+
+	/**
+	 * the vertex indices of all faces
+	 */
+	public final int[] indices;
+
+	/**
+	 * the uv indices of all faces, parallel to indices, or null if created without uv vectors
+	 */
+	public final int[] uvIndices;
+
+	/**
+	 * where the indices of every face begin, faceCount+1 entries
+	 */
+	public final int[] faceStarts;
+
+	/**
+	 * the first vertex and the first face of every mesh part, partCount+1 entries each
+	 */
+	public final int[] partVertexStarts;
+	public final int[] partFaceStarts;
+
+	/**
+	 * the stem level of every mesh part
+	 */
+	public final int[] partLevels;
+
+	private int faceFill;
+	private int indexFill;
+
+	// for every welded clone the first vertex of the parent's ring and which
+	// of its vertices takes the place of the clone's first vertex, else -1
+	private int[] weldStarts;
+	private int[] weldShifts;
+
+	/**
+	 * Creates the indexed mesh
+	 *
+	 * @param mesh the mesh
+	 * @param withNormals if true, the normals of the mesh parts are copied
+	 * @param withUVs if true, the uv vectors and uv indices are copied
+	 */
+	public IndexedMesh(Mesh mesh, boolean withNormals, boolean withUVs) {
+		this(mesh, withNormals, withUVs, false);
+	}
+
+	/**
+	 * Creates the indexed mesh
+	 *
+	 * @param mesh the mesh
+	 * @param withNormals if true, the normals of the mesh parts are copied
+	 * @param withUVs if true, the uv vectors and uv indices are copied
+	 * @param welded if true, the clones share the vertices of the rings, where they are split off
+	 */
+	public IndexedMesh(Mesh mesh, boolean withNormals, boolean withUVs, boolean welded) {
+		partCount = mesh.size();
+		partVertexStarts = new int[partCount + 1];
+		partFaceStarts = new int[partCount + 1];
+		partLevels = new int[partCount];
+
+		IdentityHashMap partIndices = null;
+		if (welded) {
+			partIndices = new IdentityHashMap();
+			weldStarts = new int[partCount];
+			weldShifts = new int[partCount];
+		}
+
+		// count everything first, so every array is allocated once
+		int vertices = 0;
+		for (int p = 0; p < partCount; p++) {
+			MeshPart part = (MeshPart) mesh.elementAt(p);
+			partVertexStarts[p] = vertices;
+			partFaceStarts[p] = faceFill;
+			partLevels[p] = part.getLevel();
+			vertices += part.vertexCount();
+			if (welded) {
+				partIndices.put(part, Integer.valueOf(p));
+				Integer parent = part.clonedFrom != null ? (Integer) partIndices.get(part.clonedFrom) : null;
+				if (parent != null && weld(p, part, part.clonedFrom, parent.intValue())) {
+					vertices -= ((MeshSection) part.elementAt(1)).size();
+				} else {
+					weldStarts[p] = -1;
+				}
+			}
+			for (int s = 1; s < part.size() - 1; s++) {
+				countFaces(((MeshSection) part.elementAt(s)).size(),
+					((MeshSection) part.elementAt(s + 1)).size(), part.useQuads);
+			}
+		}
+		partVertexStarts[partCount] = vertices;
+		partFaceStarts[partCount] = faceFill;
+
+		vertexCount = vertices;
+		faceCount = faceFill;
+		positions = new double[3 * vertexCount];
+		normals = withNormals ? new double[3 * vertexCount] : null;
+		vertexUVs = withUVs ? new double[2 * vertexCount] : null;
+		indices = new int[indexFill];
+		uvIndices = withUVs ? new int[indexFill] : null;
+		faceStarts = new int[faceCount + 1];
+		faceFill = 0;
+		indexFill = 0;
+
+		int v = 0;
+		for (int p = 0; p < partCount; p++) {
+			MeshPart part = (MeshPart) mesh.elementAt(p);
+			double[] partNormals = withNormals ? part.getNormals() : null;
+			int partVertex = 0;
+
+			int inx = partVertexStarts[p];
+			int uvInx = withUVs ? mesh.firstUVIndex(part.getLevel()) + part.uvCloneOffset(mesh) : 0;
+			for (int s = 1; s < part.size(); s++) {
+				MeshSection section = (MeshSection) part.elementAt(s);
+				int size = section.size();
+				if (s == 1 && weldStarts != null && weldStarts[p] >= 0) {
+					// the first ring is the parent's one
+					addFaces(weldStarts[p], weldShifts[p], inx, uvInx, size,
+						((MeshSection) part.elementAt(s + 1)).size(), part.useQuads);
+					uvInx += size + 1;
+					partVertex += size;
+					continue;
+				}
+				for (int i = 0; i < size; i++, v++, partVertex++) {
+					Vertex vertex = (Vertex) section.elementAt(i);
+					put(positions, v, vertex.point);
+					if (withNormals) {
+						System.arraycopy(partNormals, 3 * partVertex, normals, 3 * v, 3);
+					}
+					if (withUVs) {
+						vertexUVs[2 * v] = vertex.uv.u;
+						vertexUVs[2 * v + 1] = vertex.uv.v;
+					}
+				}
+
+				if (s < part.size() - 1) {
+					addFaces(inx, 0, inx + size, uvInx, size, ((MeshSection) part.elementAt(s + 1)).size(),
+						part.useQuads);
+				}
+				inx += size;
+				uvInx += size == 1 ? 1 : size + 1;
+			}
+		}
+		faceStarts[faceCount] = indexFill;
+
+		if (withUVs) {
+			uvCount = mesh.uvCount();
+			uvs = new double[2 * uvCount];
+			int u = 0;
+			if (partCount > 0) {
+				for (Enumeration e = mesh.allVertices(true); e.hasMoreElements(); u += 2) {
+					UVVector uv = (UVVector) e.nextElement();
+					uvs[u] = uv.u;
+					uvs[u + 1] = uv.v;
+				}
+			}
+		} else {
+			uvCount = 0;
+			uvs = null;
+		}
+	}
+
+	private static void put(double[] dst, int i, Vector v) {
+		if (v != null) {
+			dst[3 * i] = v.getX();
+			dst[3 * i + 1] = v.getY();
+			dst[3 * i + 2] = v.getZ();
+		}
+	}
+
+	/**
+	 * Finds the ring of the parent's mesh part, where a clone is split off. The clone is welded to it, if the ring
+	 * wasn't left out for a lower level of detail and has as many vertices as the clone's first ring.
+	 *
+	 * @param p the index of the clone's mesh part
+	 * @param part the clone's mesh part
+	 * @param parent the parent's mesh part
+	 * @param q the index of the parent's mesh part
+	 * @return true, if the clone is welded to the parent
+	 */
+	private boolean weld(int p, MeshPart part, MeshPart parent, int q) {
+		MeshSection first = (MeshSection) part.elementAt(1);
+		if (part.size() < 3 || first.size() < 2 || first.stemSection != 0) {
+			return false;
+		}
+
+		// the clone begins at the parent's section after the ones below it
+		int stemSection = part.getStem().getCloneSectionOffset();
+		int inx = partVertexStarts[q];
+		for (int s = 1; s < parent.size(); s++) {
+			MeshSection ring = (MeshSection) parent.elementAt(s);
+			// a welded parent has no vertices of its own for its first ring
+			boolean leftOut = s == 1 && weldStarts[q] >= 0;
+			if (ring.stemSection == stemSection) {
+				if (ring.size() != first.size()) {
+					return false;
+				}
+
+				// the clone is rotated against the parent, so its first
+				// vertex is matched with the parent's nearest one
+				Vector point = ((Vertex) first.elementAt(0)).point;
+				int shift = 0;
+				double nearest = Double.MAX_VALUE;
+				for (int i = 0; i < ring.size(); i++) {
+					double distance = ((Vertex) ring.elementAt(i)).point.sub(point).abs();
+					if (distance < nearest) {
+						nearest = distance;
+						shift = i;
+					}
+				}
+				if (leftOut) {
+					// the parent's ring is the one it is welded to itself
+					weldStarts[p] = weldStarts[q];
+					weldShifts[p] = (shift + weldShifts[q]) % ring.size();
+				} else {
+					weldStarts[p] = inx;
+					weldShifts[p] = shift;
+				}
+				return true;
+			}
+			if (!leftOut) {
+				inx += ring.size();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the faces between a section and the next one like the face enumeration of MeshSection does
+	 *
+	 * @param inx the index of the section's first vertex
+	 * @param shift the vertex of the section used as its first one, 0 except for welded clones
+	 * @param ninx the index of the next section's first vertex
+	 * @param uvInx the index of the section's first uv vector
+	 * @param size the number of vertices of the section
+	 * @param nextSize the number of vertices of the next section
+	 * @param quads whether quads are used between sections with the same number of vertices
+	 */
+	private void addFaces(int inx, int shift, int ninx, int uvInx, int size, int nextSize, boolean quads) {
+		if (size == 1 && nextSize == 1) {
+			// normaly this shouldn't occur, only for very small radius?
+			Console.errorOutput("WARNING: two adjacent mesh sections with only one point.");
+		}
+
+		int uvNinx = uvInx + (size == 1 ? 1 : size + 1);
+		int uvCnt = size + 1;
+		int uvNextCnt = nextSize + 1;
+
+		int i = 0;
+		int ni = 0;
+		while (!((size == 1 && ni >= nextSize) || (nextSize == 1 && i >= size) || (ni >= nextSize && i >= size))) {
+			faceStarts[faceFill++] = indexFill;
+			if (quads && size > 1 && nextSize == size) {
+				addIndex(vertex(inx, i, shift, size), uvInx + i);
+				addIndex(ninx + ni, uvNinx + ni);
+				addIndex(ninx + (ni + 1) % nextSize, uvNinx + (ni + 1) % uvNextCnt);
+				addIndex(vertex(inx, (i + 1) % size, shift, size), uvInx + (i + 1) % uvCnt);
+				ni++;
+				i++;
+			} else if (i <= ni || nextSize == 1) {
+				addIndex(vertex(inx, i, shift, size), uvInx + i);
+				addIndex(ninx + ni, uvNinx + ni);
+				addIndex(vertex(inx, (i + 1) % size, shift, size), uvInx + (i + 1) % uvCnt);
+				i++;
+			} else {
+				addIndex(vertex(inx, i % size, shift, size), uvInx + i % uvCnt);
+				addIndex(ninx + ni, uvNinx + ni);
+				addIndex(ninx + (ni + 1) % nextSize, uvNinx + (ni + 1) % uvNextCnt);
+				ni++;
+			}
+		}
+	}
+
+	private static int vertex(int inx, int i, int shift, int size) {
+		return shift == 0 ? inx + i : inx + (i + shift) % size;
+	}
+
+	/**
+	 * Counts the faces between a section and the next one, stepping through them like addFaces
+	 */
+	private void countFaces(int size, int nextSize, boolean quads) {
+		int i = 0;
+		int ni = 0;
+		while (!((size == 1 && ni >= nextSize) || (nextSize == 1 && i >= size) || (ni >= nextSize && i >= size))) {
+			faceFill++;
+			if (quads && size > 1 && nextSize == size) {
+				indexFill += 4;
+				ni++;
+				i++;
+			} else if (i <= ni || nextSize == 1) {
+				indexFill += 3;
+				i++;
+			} else {
+				indexFill += 3;
+				ni++;
+			}
+		}
+	}
+
+	private void addIndex(int vertex, int uv) {
+		indices[indexFill] = vertex;
+		if (uvIndices != null) {
+			uvIndices[indexFill] = uv;
+		}
+		indexFill++;
+	}
+
+	/**
+	 * Returns the number of vertices of face f
+	 */
+	public int faceSize(int f) {
+		return faceStarts[f + 1] - faceStarts[f];
+	}
+}
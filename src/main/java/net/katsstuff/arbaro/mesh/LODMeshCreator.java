@@ -0,0 +1,151 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.mesh;
+
+import java.util.Enumeration;
+import java.util.Stack;
+import net.katsstuff.arbaro.export.Console;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.transformation.Vector;
+import net.katsstuff.arbaro.tree.Leaf;
+import net.katsstuff.arbaro.tree.Stem;
+import net.katsstuff.arbaro.tree.StemSection;
+import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeTraversal;
+
+/**
+ * Creates meshes of several levels of detail from the tree's stems
+ * in one traversal. Every stem's sections are calculated only once
+ * and then used for all the meshes.
+ */
+class LODMeshCreator implements TreeTraversal {
+
+	Mesh[] meshes;
+	LevelOfDetail[] lods;
+	Tree tree;
+	Progress progress;
+	int level; // only stems of this level should be created
+	boolean useQuads;
+
+	// the stem, below which nothing goes into the mesh of
+	// a level of detail, or null
+	Stem[] droppedStems;
+
+	// the mesh parts of the entered stems for every level of detail,
+	// a clone's mesh part is linked to the one below it
+	private final Stack meshparts = new Stack();
+
+	public LODMeshCreator(Mesh[] meshes, LevelOfDetail[] lods, int level,
+		boolean useQuads, Progress progress
+	) {
+		super();
+		this.meshes = meshes;
+		this.lods = lods;
+		this.level = level;
+		this.useQuads = useQuads;
+		this.progress = progress;
+		droppedStems = new Stem[lods.length];
+	}
+
+	public boolean enterStem(Stem stem) {
+		MeshPart[] parts = new MeshPart[lods.length];
+		meshparts.push(parts);
+		if (level >= 0 && stem.getLevel() > level) {
+			return false; // go back to higher level
+		}
+
+		for (int i = 0; i < lods.length; i++) {
+			if (droppedStems[i] == null
+				&& stem.getLength() < lods[i].minStemSize * tree.getHeight()
+			) {
+				droppedStems[i] = stem;
+			}
+		}
+
+		if (level >= 0 && stem.getLevel() < level) {
+			return true; // look further for stems
+		}
+
+		// get the section points only once, they can depend on random numbers
+		java.util.Vector sectionList = new java.util.Vector();
+		for (Enumeration e = stem.sections(); e.hasMoreElements(); ) {
+			sectionList.addElement(e.nextElement());
+		}
+		StemSection[] sections = new StemSection[sectionList.size()];
+		sectionList.copyInto(sections);
+		Vector[][] points = new Vector[sections.length][];
+		for (int s = 0; s < sections.length; s++) {
+			points[s] = sections[s].getSectionPoints();
+		}
+
+		MeshPartCreator partCreator = new MeshPartCreator(stem, useQuads);
+		MeshPart[] below = stem.isClone() && meshparts.size() > 1
+			? (MeshPart[]) meshparts.elementAt(meshparts.size() - 2) : null;
+		for (int i = 0; i < lods.length; i++) {
+			if (droppedStems[i] != null) {
+				continue;
+			}
+			// the uv coordinates of a level are calculated from its
+			// first mesh part, so this one keeps all its sections
+			boolean merge = meshes[i].firstMeshPart[stem.getLevel()] >= 0;
+			MeshPart meshpart = partCreator.createMeshPart(sections, points, lods[i], merge);
+			if (meshpart != null) {
+				if (below != null) {
+					meshpart.clonedFrom = below[i];
+				}
+				meshes[i].addMeshpart(meshpart);
+			}
+			parts[i] = meshpart;
+		}
+
+		// show progress
+		if (stem.getLevel() <= 1 && !stem.isClone()) {
+			Console.progressChar();
+		}
+		progress.incProgress(1);
+		return true; // proceed
+	}
+
+	public boolean enterTree(Tree tree) {
+		this.tree = tree;
+		return true;
+	}
+
+	public boolean leaveStem(Stem stem) {
+		meshparts.pop();
+		for (int i = 0; i < lods.length; i++) {
+			if (droppedStems[i] == stem) {
+				droppedStems[i] = null;
+			}
+		}
+		return true;
+	}
+
+	public boolean leaveTree(Tree tree) {
+		return true; // Meshes created successfully
+	}
+
+	public boolean visitLeaf(Leaf leaf) {
+		return false;
+	}
+}
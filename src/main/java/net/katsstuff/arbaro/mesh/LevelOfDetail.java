@@ -0,0 +1,118 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.mesh;
+
+import net.katsstuff.arbaro.transformation.Vector;
+import net.katsstuff.arbaro.tree.StemSection;
+
+/**
+ * Describes how coarse a stem mesh should be. A level of detail
+ * reduces the points of the stem cross sections, leaves out sections
+ * lying nearly in line with their neighbours and drops small stems
+ * together with everything growing out of them.
+ */
+public class LevelOfDetail {
+
+	/**
+	 * The fraction of the cross section points that are kept
+	 */
+	public double pointRatio;
+
+	/**
+	 * Sections are left out, when the stem bends there by less
+	 * than this angle (in degrees)
+	 */
+	public double mergeAngle;
+
+	/**
+	 * Stems shorter than this fraction of the tree height are dropped
+	 */
+	public double minStemSize;
+
+	public LevelOfDetail(double pointRatio, double mergeAngle, double minStemSize) {
+		this.pointRatio = pointRatio;
+		this.mergeAngle = mergeAngle;
+		this.minStemSize = minStemSize;
+	}
+
+	/**
+	 * Returns the levels LOD0 (full detail) to LOD3
+	 *
+	 * @return the default levels of detail
+	 */
+	public static LevelOfDetail[] getDefaultLevels() {
+		return new LevelOfDetail[]{
+			new LevelOfDetail(1, 0, 0),
+			new LevelOfDetail(0.5, 5, 0.01),
+			new LevelOfDetail(0.25, 15, 0.03),
+			new LevelOfDetail(0.125, 30, 0.08)
+		};
+	}
+
+	/**
+	 * Returns every n-th point of a cross section, at least 3 points
+	 *
+	 * @param points the points of the section
+	 * @return the reduced points
+	 */
+	public Vector[] reducePoints(Vector[] points) {
+		int n = points.length;
+		int m = Math.max(3, (int) Math.round(n * pointRatio));
+		if (m >= n) {
+			return points;
+		}
+
+		Vector[] reduced = new Vector[m];
+		for (int i = 0; i < m; i++) {
+			reduced[i] = points[i * n / m];
+		}
+		return reduced;
+	}
+
+	/**
+	 * Tests if the stem bends at section cur by less than the merge angle
+	 *
+	 * @param prev the previous section
+	 * @param cur the section, which could be left out
+	 * @param next the next section
+	 * @return true, if the section can be left out
+	 */
+	public boolean isCollinear(StemSection prev, StemSection cur, StemSection next) {
+		if (mergeAngle <= 0) {
+			return false;
+		}
+
+		Vector d1 = cur.getPosition().sub(prev.getPosition());
+		Vector d2 = next.getPosition().sub(cur.getPosition());
+		double len = d1.abs() * d2.abs();
+		if (len < 1e-12) {
+			return true;
+		}
+		return d1.prod(d2) / len >= Math.cos(Math.toRadians(mergeAngle));
+	}
+
+	public String toString() {
+		return "LevelOfDetail(pointRatio=" + pointRatio + ", mergeAngle=" + mergeAngle
+			+ ", minStemSize=" + minStemSize + ")";
+	}
+}
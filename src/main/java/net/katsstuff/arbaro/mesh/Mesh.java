@@ -46,6 +46,9 @@ public class Mesh extends java.util.Vector {
 
 	final boolean debugMesh = false;
 	public int[] firstMeshPart; // first mesh part of each level 
+	private int[] levelPartCounts; // number of mesh parts of each level
+	private int lastLevel;
+	private boolean orderedByLevel = true;
 
 
 	private class VertexEnumerator implements Enumeration {
@@ -103,41 +106,38 @@ public class Mesh extends java.util.Vector {
 	private class PartEnumerator implements Enumeration {
 
 		private final int level;
-		private final Enumeration parts;
-		private MeshPart part;
+		private int next;
+		private final int end;
 
 		public PartEnumerator(int stemLevel) {
 			level = stemLevel;
-			parts = elements();
-			nextPart();
+			if (level >= 0 && orderedByLevel) {
+				// the parts of the level are one after the other
+				next = levelStart(level);
+				end = levelEnd(level);
+			} else {
+				next = 0;
+				end = size();
+				skipParts();
+			}
 		}
 
-		private void nextPart() {
-			if (parts.hasMoreElements()) {
-				part = (MeshPart) parts.nextElement();
-				if (level >= 0) {
-					while (part.stem.getLevel() != level) {
-						if (parts.hasMoreElements()) {
-							part = (MeshPart) parts.nextElement();
-						} else {
-							part = null;
-							return;
-						}
-					}
+		private void skipParts() {
+			if (level >= 0 && !orderedByLevel) {
+				while (next < end && ((MeshPart) elementAt(next)).stem.getLevel() != level) {
+					next++;
 				}
-			} else {
-				part = null;
 			}
 		}
 
 		public boolean hasMoreElements() {
-			return part != null;
+			return next < end;
 		}
 
 		public Object nextElement() {
-			if (part != null) {
-				MeshPart result = part;
-				nextPart();
+			if (next < end) {
+				MeshPart result = (MeshPart) elementAt(next++);
+				skipParts();
 				return result;
 			} else {
 				throw new NoSuchElementException();
@@ -202,6 +202,7 @@ public class Mesh extends java.util.Vector {
 		for (int i = 0; i < levels; i++) {
 			firstMeshPart[i] = -1;
 		}
+		levelPartCounts = new int[levels];
 	}
 
 	/**
@@ -209,9 +210,53 @@ public class Mesh extends java.util.Vector {
 	 */
 	public void addMeshpart(MeshPart meshpart) {
 		addElement(meshpart);
-		if (firstMeshPart[meshpart.stem.getLevel()] < 0) {
-			firstMeshPart[meshpart.stem.getLevel()] = size() - 1;
+		int level = meshpart.stem.getLevel();
+		if (firstMeshPart[level] < 0) {
+			firstMeshPart[level] = size() - 1;
+		}
+		levelPartCounts[level]++;
+		if (level < lastLevel) {
+			orderedByLevel = false;
+		}
+		lastLevel = level;
+	}
+
+	/**
+	 * Returns true, if the mesh parts are ordered by level like the ones
+	 * created by {@link MeshGenerator#createStemMeshByLevel(net.katsstuff.arbaro.tree.Tree,
+	 * net.katsstuff.arbaro.export.Progress)}. Only then the mesh parts of every
+	 * level have a range of indices.
+	 */
+	public boolean isOrderedByLevel() {
+		return orderedByLevel;
+	}
+
+	/**
+	 * Returns the index of the first mesh part of a level in a mesh ordered by level. The mesh parts of the level are
+	 * the ones from levelStart(level) to levelEnd(level)-1.
+	 *
+	 * @param level the stem level
+	 * @return index of the first mesh part of the level
+	 */
+	public int levelStart(int level) {
+		if (!orderedByLevel) {
+			throw new IllegalStateException("The mesh parts aren't ordered by level");
+		}
+		int start = 0;
+		for (int l = 0; l < level; l++) {
+			start += levelPartCounts[l];
 		}
+		return start;
+	}
+
+	/**
+	 * Returns the index after the last mesh part of a level in a mesh ordered by level
+	 *
+	 * @param level the stem level
+	 * @return index after the last mesh part of the level
+	 */
+	public int levelEnd(int level) {
+		return levelStart(level) + levelPartCounts[level];
 	}
 
 	public Enumeration allVertices(boolean UVVertices) {
@@ -270,7 +315,10 @@ public class Mesh extends java.util.Vector {
 		int cnt = 0;
 
 		for (int j : firstMeshPart) {
-			cnt += ((MeshPart) elementAt(j)).uvCount();
+			// levels without stems have no mesh parts
+			if (j >= 0) {
+				cnt += ((MeshPart) elementAt(j)).uvCount();
+			}
 		}
 		return cnt;
 	}
@@ -285,7 +333,9 @@ public class Mesh extends java.util.Vector {
 		int cnt = 0;
 
 		for (int i = 0; i < level; i++) {
-			cnt += ((MeshPart) elementAt(firstMeshPart[i])).uvCount();
+			if (firstMeshPart[i] >= 0) {
+				cnt += ((MeshPart) elementAt(firstMeshPart[i])).uvCount();
+			}
 		}
 		return cnt;
 	}
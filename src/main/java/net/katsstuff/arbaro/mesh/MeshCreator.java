@@ -22,6 +22,7 @@
 
 package net.katsstuff.arbaro.mesh;
 
+import java.util.Stack;
 import net.katsstuff.arbaro.export.Console;
 import net.katsstuff.arbaro.export.Progress;
 import net.katsstuff.arbaro.tree.Leaf;
@@ -44,7 +45,9 @@ class MeshCreator implements TreeTraversal {
 	boolean useQuads;
 //	Params params;
 
-	//private Stack meshparts;
+	// the mesh parts of the entered stems, null for stems without one,
+	// a clone's mesh part is linked to the one below it
+	private final Stack meshparts = new Stack();
 
 	public MeshCreator(/*Params params,*/ Mesh mesh, int level, boolean useQuads,
 		Progress progress
@@ -64,8 +67,10 @@ class MeshCreator implements TreeTraversal {
 		// Subsegment
 
 		if (level >= 0 && stem.getLevel() < level) {
+			meshparts.push(null);
 			return true; // look further for stems
 		} else if (level >= 0 && stem.getLevel() > level) {
+			meshparts.push(null);
 			return false; // go back to higher level
 		} else {
 //			try {
@@ -74,8 +79,12 @@ class MeshCreator implements TreeTraversal {
 			MeshPartCreator partCreator = new MeshPartCreator(stem, /*params,*/ useQuads);
 			MeshPart meshpart = partCreator.createMeshPart(progress);
 			if (meshpart != null) {
+				if (stem.isClone() && !meshparts.isEmpty()) {
+					meshpart.clonedFrom = (MeshPart) meshparts.peek();
+				}
 				mesh.addMeshpart(meshpart);
 			}
+			meshparts.push(meshpart);
 
 			// show progress
 			if (stem.getLevel() <= 1 && !stem.isClone()) {
@@ -97,6 +106,7 @@ class MeshCreator implements TreeTraversal {
 	}
 
 	public boolean leaveStem(Stem stem) {
+		meshparts.pop();
 		return true;
 	}
 
@@ -9,6 +9,19 @@ public interface MeshGenerator {
 
 	Mesh createStemMeshByLevel(Tree tree, Progress progress);
 
+	/**
+	 * Creates the stem mesh level by level like {@link #createStemMeshByLevel(Tree, Progress)}, but adds the mesh parts
+	 * to the given mesh. A subclass of Mesh can override {@link Mesh#addMeshpart(MeshPart)} to handle every part as
+	 * soon as it is created.
+	 */
+	Mesh createStemMeshByLevel(Tree tree, Progress progress, Mesh mesh);
+
+	/**
+	 * Creates one stem mesh for every level of detail. The sections of every stem are calculated only once and used
+	 * for all the meshes, which are ordered by level like the mesh of {@link #createStemMeshByLevel(Tree, Progress)}.
+	 */
+	Mesh[] createStemMeshes(Tree tree, Progress progress, LevelOfDetail[] lods);
+
 	LeafMesh createLeafMesh(Tree tree, boolean useQuads);
 
 	boolean getUseQuads();
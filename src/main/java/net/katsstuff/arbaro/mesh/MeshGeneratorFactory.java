@@ -31,6 +31,33 @@ public class MeshGeneratorFactory {
 		return new MeshGeneratorImpl(useQuads);
 	}
 
+	/**
+	 * Creates a mesh generator, which creates all stem meshes
+	 * with the given level of detail
+	 *
+	 * @param useQuads use quads instead of triangles
+	 * @param lod the level of detail, null for full detail
+	 */
+	static public MeshGenerator createMeshGenerator(boolean useQuads, LevelOfDetail lod) {
+		return new MeshGeneratorImpl(useQuads, lod);
+	}
+
+	/**
+	 * Creates a mesh generator, which creates the mesh parts of the stems
+	 * on several threads. The meshes are the same as with one thread.
+	 *
+	 * @param useQuads use quads instead of triangles
+	 * @param lod the level of detail, null for full detail
+	 * @param threads the number of threads
+	 */
+	static public MeshGenerator createMeshGenerator(boolean useQuads, LevelOfDetail lod, int threads) {
+		if (threads > 1) {
+			return new ParallelMeshGenerator(useQuads, lod, threads);
+		} else {
+			return new MeshGeneratorImpl(useQuads, lod);
+		}
+	}
+
 	static public MeshGenerator createShieldedMeshGenerator(boolean useQuads) {
 		return new ShieldedMeshGenerator(
 			new MeshGeneratorImpl(useQuads));
@@ -25,6 +25,7 @@ package net.katsstuff.arbaro.mesh;
 import net.katsstuff.arbaro.export.Console;
 import net.katsstuff.arbaro.export.Progress;
 import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeTraversal;
 
 /**
  * @author wolfram
@@ -33,6 +34,7 @@ class MeshGeneratorImpl implements MeshGenerator {
 
 	//	Params params;
 	public boolean useQuads;
+	public LevelOfDetail lod; // null for full detail
 
 	public boolean getUseQuads() {
 		return useQuads;
@@ -43,6 +45,11 @@ class MeshGeneratorImpl implements MeshGenerator {
 		this.useQuads = useQuads;
 	}
 
+	public MeshGeneratorImpl(boolean useQuads, LevelOfDetail lod) {
+		this(useQuads);
+		this.lod = lod;
+	}
+
 	/* (non-Javadoc)
 	 * @see net.katsstuff.arbaro.mesh.MeshGenerator#createStemMesh(net.katsstuff.arbaro.tree.Tree, net.katsstuff.arbaro.export.Progress)
 	 */
@@ -56,14 +63,22 @@ class MeshGeneratorImpl implements MeshGenerator {
 		}
 		getProgress().incProgress(trunks.size());
 		*/
-		MeshCreator meshCreator = new MeshCreator(/*params,*/ mesh, -1, useQuads, progress);
-		tree.traverseTree(meshCreator);
+		tree.traverseTree(createMeshCreator(mesh, -1, progress));
 
 		progress.endPhase();
 		return mesh;
 	}
 
-	private void outputVertexInfo(Tree tree) {
+	private TreeTraversal createMeshCreator(Mesh mesh, int level, Progress progress) {
+		if (lod == null) {
+			return new MeshCreator(/*params,*/ mesh, level, useQuads, progress);
+		} else {
+			return new LODMeshCreator(new Mesh[]{mesh}, new LevelOfDetail[]{lod},
+				level, useQuads, progress);
+		}
+	}
+
+	void outputVertexInfo(Tree tree) {
 		Console.verboseOutput("Output: mesh");
 		for (int l = 0; l < Math.min(tree.getLevels(), 4); l++) {
 			Console.verboseOutput("  Level " + l + ": "
@@ -79,17 +94,54 @@ class MeshGeneratorImpl implements MeshGenerator {
 		progress.beginPhase("Creating mesh", tree.getStemCount());
 		outputVertexInfo(tree);
 
-		Mesh mesh = new Mesh(tree.getLevels());
+		// collect the mesh parts by level in one traversal
+		ByLevelMesh levels = new ByLevelMesh(tree.getLevels());
+		tree.traverseTree(createMeshCreator(levels, -1, progress));
+		Mesh mesh = levels.addTo(new Mesh(tree.getLevels()));
+
+		progress.endPhase();
+		return mesh;
+	}
+
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.mesh.MeshGenerator#createStemMeshByLevel(net.katsstuff.arbaro.tree.Tree, net.katsstuff.arbaro.export.Progress, net.katsstuff.arbaro.mesh.Mesh)
+	 */
+	public Mesh createStemMeshByLevel(Tree tree, Progress progress, Mesh mesh) {
+		// the mesh gets every part as soon as it is created, so
+		// the tree is traversed once for every level
+
+		progress.beginPhase("Creating mesh", tree.getStemCount());
+		outputVertexInfo(tree);
 
 		for (int level = 0; level < tree.getLevels(); level++) {
-			MeshCreator meshCreator = new MeshCreator(mesh, level, useQuads, progress);
-			tree.traverseTree(meshCreator);
+			tree.traverseTree(createMeshCreator(mesh, level, progress));
 		}
 
 		progress.endPhase();
 		return mesh;
 	}
 
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.mesh.MeshGenerator#createStemMeshes(net.katsstuff.arbaro.tree.Tree, net.katsstuff.arbaro.export.Progress, net.katsstuff.arbaro.mesh.LevelOfDetail[])
+	 */
+	public Mesh[] createStemMeshes(Tree tree, Progress progress, LevelOfDetail[] lods) {
+		progress.beginPhase("Creating meshes", tree.getStemCount());
+		outputVertexInfo(tree);
+
+		ByLevelMesh[] levels = new ByLevelMesh[lods.length];
+		for (int i = 0; i < lods.length; i++) {
+			levels[i] = new ByLevelMesh(tree.getLevels());
+		}
+		tree.traverseTree(new LODMeshCreator(levels, lods, -1, useQuads, progress));
+		Mesh[] meshes = new Mesh[lods.length];
+		for (int i = 0; i < lods.length; i++) {
+			meshes[i] = levels[i].addTo(new Mesh(tree.getLevels()));
+		}
+
+		progress.endPhase();
+		return meshes;
+	}
+
 	// FIXME move to MeshFactory
 	public LeafMesh createLeafMesh(Tree tree, boolean useQuads) {
 		return new LeafMesh(tree.getLeafShape(),
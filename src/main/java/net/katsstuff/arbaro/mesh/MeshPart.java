@@ -24,6 +24,7 @@ package net.katsstuff.arbaro.mesh;
 
 import java.util.Enumeration;
 import net.katsstuff.arbaro.export.Console;
+import net.katsstuff.arbaro.transformation.Vector;
 import net.katsstuff.arbaro.tree.Stem;
 
 /**
@@ -39,6 +40,12 @@ public class MeshPart extends java.util.Vector {
 	boolean useNormals;
 	boolean useQuads;
 
+	// the mesh part of the stem, from which this clone was split off, or null
+	MeshPart clonedFrom;
+
+	// the vertex normals, calculated by getNormals
+	private double[] normals;
+
 	private class VertexEnumerator implements Enumeration {
 
 		private final Enumeration sections;
@@ -89,24 +96,8 @@ public class MeshPart extends java.util.Vector {
 			MeshSection sec =
 				(MeshSection) sections.nextElement();
 
-			// if it's a clone calculate a vertex offset
-			// finding the corresponding segment in the parent stem's mesh
-			int uvVertexOffset = 0;
-			if (uv && stem.isClone()) {
-				MeshPart mp = ((MeshPart) mesh.elementAt(mesh.firstMeshPart[stem.getLevel()]));
-
-				MeshSection ms = ((MeshSection) mp.elementAt(1)); // ignore root vertex
-
-//				if (Console.debug()) Console.debugOutput("cloneOff: "+stem.getCloneSectionOffset());
-				for (int i = 0; i < stem.getCloneSectionOffset(); i++) {
-					uvVertexOffset += ms.size() == 1 ? 1 : ms.size() + 1;
-					if (Console.debug()) {
-						Console.debugOutput("i: " + i + " vertexOff: " + uvVertexOffset);
-					}
-					ms = ms.next;
-				}
-
-				startIndex += uvVertexOffset;
+			if (uv) {
+				startIndex += uvCloneOffset(mesh);
 			}
 
 			nextSection(true);
@@ -150,6 +141,30 @@ public class MeshPart extends java.util.Vector {
 		this.stem = stem;
 	}
 
+	/**
+	 * Returns the offset of the part's uv vectors from the uv vectors of its level. The uv vectors are taken from the
+	 * first mesh part of the level, so for a clone the offset is found from the corresponding section in the parent
+	 * stem's mesh.
+	 */
+	int uvCloneOffset(Mesh mesh) {
+		int uvVertexOffset = 0;
+		if (stem.isClone()) {
+			MeshPart mp = ((MeshPart) mesh.elementAt(mesh.firstMeshPart[stem.getLevel()]));
+
+			MeshSection ms = ((MeshSection) mp.elementAt(1)); // ignore root vertex
+
+//			if (Console.debug()) Console.debugOutput("cloneOff: "+stem.getCloneSectionOffset());
+			for (int i = 0; i < stem.getCloneSectionOffset(); i++) {
+				uvVertexOffset += ms.size() == 1 ? 1 : ms.size() + 1;
+				if (Console.debug()) {
+					Console.debugOutput("i: " + i + " vertexOff: " + uvVertexOffset);
+				}
+				ms = ms.next;
+			}
+		}
+		return uvVertexOffset;
+	}
+
 	public Stem getStem() {
 		return stem;
 	}
@@ -187,53 +202,107 @@ public class MeshPart extends java.util.Vector {
 
 
 	/**
-	 * Sets the normals in all mesh sections
+	 * Returns the normals of all vertices in the order of allVertices(false), x, y and z of every normal one after the
+	 * other. They are calculated the first time they are needed and kept with the mesh part.
+	 * <p>
+	 * Every face between two sections adds its normal weighted with its area to the normals of its vertices. The
+	 * faces of the root point aren't used, so the lowest ring gets the normals of the faces above it only. The last
+	 * section keeps the normals in stem direction set by the MeshPartCreator.
 	 */
-	public void setNormals(boolean checkNull) {
-		// normals for begin and end point (first and last section)
-		// are set to a z-Vector by MeshPartCreator
-		if (checkNull) {
-			MeshSection s = ((MeshSection) elementAt(0));
-			for (int i = 0; i < s.size(); i++) {
-				if (((Vertex) s.elementAt(i)).normal == null) {
-					Console.errorOutput("No normal set for lower section of mesh part of stem "
-										+ stem.getTreePosition());
-				}
-			}
+	public synchronized double[] getNormals() {
+		if (normals != null) {
+			return normals;
+		}
 
-			s = ((MeshSection) elementAt(size() - 1));
-			for (int i = 0; i < s.size(); i++) {
-				if (((Vertex) s.elementAt(i)).normal == null) {
-					Console.errorOutput("No normal set for upper section of mesh part of stem "
-										+ stem.getTreePosition());
-				}
+		int sections = size() - 1;
+		if (sections < 1) {
+			Console.errorOutput("WARNING: degnerated MeshPart with only " + size() + " sections at" +
+								" tree position " + stem.getTreePosition() + ".");
+			normals = new double[0];
+			return normals;
+		}
+		int[] starts = new int[sections + 1];
+		for (int s = 0; s < sections; s++) {
+			starts[s + 1] = starts[s] + ((MeshSection) elementAt(s + 1)).size();
+		}
+		int count = starts[sections];
+		double[] pos = new double[3 * count];
+		double[] nor = new double[3 * count];
+		for (int s = 0, v = 0; s < sections; s++) {
+			MeshSection section = (MeshSection) elementAt(s + 1);
+			for (int i = 0; i < section.size(); i++, v += 3) {
+				Vector point = ((Vertex) section.elementAt(i)).point;
+				pos[v] = point.getX();
+				pos[v + 1] = point.getY();
+				pos[v + 2] = point.getZ();
 			}
 		}
 
-		//System.err.println("MESHSECT 1: "+((MeshSection)elementAt(1)).size());
+		// the faces between section s and s+1 as quads from the lower vertices
+		// i, i+1 to the upper vertices i+1, i, a section with only one point
+		// gives triangles. The cross product of the diagonals has the direction
+		// of the face normal and the length of twice its area.
+		for (int s = 0; s < sections - 1; s++) {
+			int lower = starts[s];
+			int upper = starts[s + 1];
+			int lowerSize = upper - lower;
+			int upperSize = starts[s + 2] - upper;
+			int n = Math.max(lowerSize, upperSize);
+			for (int i = 0; i < n; i++) {
+				int a = 3 * (lower + i % lowerSize);
+				int b = 3 * (lower + (i + 1) % lowerSize);
+				int c = 3 * (upper + (i + 1) % upperSize);
+				int d = 3 * (upper + i % upperSize);
+
+				double ux = pos[c] - pos[a];
+				double uy = pos[c + 1] - pos[a + 1];
+				double uz = pos[c + 2] - pos[a + 2];
+				double vx = pos[d] - pos[b];
+				double vy = pos[d + 1] - pos[b + 1];
+				double vz = pos[d + 2] - pos[b + 2];
+				double nx = uy * vz - uz * vy;
+				double ny = uz * vx - ux * vz;
+				double nz = ux * vy - uy * vx;
+
+				nor[a] += nx;
+				nor[a + 1] += ny;
+				nor[a + 2] += nz;
+				nor[b] += nx;
+				nor[b + 1] += ny;
+				nor[b + 2] += nz;
+				nor[c] += nx;
+				nor[c + 1] += ny;
+				nor[c + 2] += nz;
+				nor[d] += nx;
+				nor[d + 1] += ny;
+				nor[d + 2] += nz;
+			}
+		}
 
-		if (size() > 1) {
-			((MeshSection) elementAt(1)).setNormalsUp();
-			for (int i = 2; i < size() - 1; i++) {
-				((MeshSection) elementAt(i)).setNormalsUpDown();
+		for (int v = 0; v < 3 * starts[sections - 1]; v += 3) {
+			double length = Math.sqrt(nor[v] * nor[v] + nor[v + 1] * nor[v + 1] + nor[v + 2] * nor[v + 2]);
+			if (length > 0) {
+				nor[v] /= length;
+				nor[v + 1] /= length;
+				nor[v + 2] /= length;
+			} else {
+				// stem radius too small
+				nor[v] = 0;
+				nor[v + 1] = 0;
+				nor[v + 2] = 1;
 			}
-			//DBG
-			//MeshSection m = (MeshSection)elementAt(i);
-			//System.err.println("MeshSection "+i+" vert: "+m.size());
+		}
 
-		} else {
-			Console.errorOutput("WARNING: degnerated MeshPart with only " + size() + " sections at" +
-								" tree position " + stem.getTreePosition() + ".");
+		MeshSection last = (MeshSection) lastElement();
+		for (int i = 0, v = 3 * starts[sections - 1]; i < last.size(); i++, v += 3) {
+			Vector normal = ((Vertex) last.elementAt(i)).normal;
+			nor[v] = normal.getX();
+			nor[v + 1] = normal.getY();
+			nor[v + 2] = normal.getZ();
 		}
 
-		//DBG
-		/*
-		 try {
-		 MeshSection m = (MeshSection)lastElement();
-		 System.err.println("MeshSection last vert: "+m.size()+" normal[0] "+m.normal_at(0).povray());
-		 } catch (Exception e) {}
-		 */
-		// sections.last().set_normals_down();
+		normals = nor;
+		return normals;
 	}
 
 
@@ -276,6 +345,9 @@ public class MeshPart extends java.util.Vector {
 				cnt += Math.max(c_i, c_i1);
 			} else if (c_i > 1) {
 				cnt += 2 * c_i;
+			} else {
+				// the face enumerator makes one degenerated face between two single points
+				cnt++;
 			}
 		}
 		return cnt;
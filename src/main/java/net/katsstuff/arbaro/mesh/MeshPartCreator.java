@@ -62,6 +62,7 @@ class MeshPartCreator {
 		// first section
 		Enumeration sections = stem.sections();
 		StemSection section = (StemSection) sections.nextElement();
+		int index = 0;
 
 		// first section - create lower meshpoints
 		// one point at the stem origin, with normal in reverse z-direction
@@ -72,7 +73,7 @@ class MeshPartCreator {
 
 			// create meshpoints at each section
 			createSectionMeshpoints(
-				section,
+				section, index,
 				/*vBase+*/section.getDistance() / vLength
 			);
 			//(/*vBase+*/segment.getIndex()*segment.getLength()+ss.getHeight())/vLength);
@@ -91,6 +92,7 @@ class MeshPartCreator {
 			// next section
 			if (sections.hasMoreElements()) {
 				section = (StemSection) sections.nextElement();
+				index++;
 			} else {
 				break;
 			}
@@ -118,10 +120,85 @@ class MeshPartCreator {
 	}
 
 
-	private void createSectionMeshpoints(StemSection sec, double vMap) {
-		Vector[] points = sec.getSectionPoints();
+	/**
+	 * Creates a MeshPart with a reduced level of detail. The section points
+	 * are passed in, because the section points of some stems depend on
+	 * random numbers and can be calculated only once per section.
+	 *
+	 * @param sections the sections of the stem
+	 * @param points the section points of every section
+	 * @param lod the level of detail
+	 * @param mergeSections if false, no sections are left out
+	 * @return the mesh part or null if it has no sections
+	 */
+	public MeshPart createMeshPart(StemSection[] sections, Vector[][] points,
+		LevelOfDetail lod, boolean mergeSections
+	) {
+		meshPart = new MeshPart(stem, stem.isSmooth(), useQuads);
+		double vLength = stem.getLength() + stem.getBaseRadius() + stem.getPeakRadius();
+		int last = sections.length - 1;
+
+		createMidPoint(sections[0], 0);
+		((MeshSection) meshPart.firstElement()).setNormalsToVector(sections[0].getZ().mul(-1));
+
+		// the first and the last section are always kept, sections between
+		// are left out, when they are nearly in line with their neighbours
+		int kept = 0;
+		for (int i = 0; i <= last; i++) {
+			if (mergeSections && i > 0 && i < last
+				&& lod.isCollinear(sections[kept], sections[i], sections[i + 1])
+			) {
+				continue;
+			}
+			kept = i;
+			createSectionMeshpoints(lod.reducePoints(points[i]), i,
+				sections[i].getDistance() / vLength);
+		}
+
+		if (sections[last].getRadius() > 0.000001) {
+			createMidPoint(sections[last], 1);
+		}
+		((MeshSection) meshPart.lastElement()).setNormalsToVector(sections[last].getZ());
+
+		if (meshPart.size() > 0) {
+			return meshPart;
+		} else {
+			return null;
+		}
+	}
+
+
+	/**
+	 * Creates a MeshPart with a reduced level of detail from the stem's
+	 * own sections
+	 *
+	 * @param lod the level of detail
+	 * @param mergeSections if false, no sections are left out
+	 * @return the mesh part or null if it has no sections
+	 */
+	public MeshPart createMeshPart(LevelOfDetail lod, boolean mergeSections) {
+		java.util.Vector sectionList = new java.util.Vector();
+		for (Enumeration e = stem.sections(); e.hasMoreElements(); ) {
+			sectionList.addElement(e.nextElement());
+		}
+		StemSection[] sections = new StemSection[sectionList.size()];
+		sectionList.copyInto(sections);
+		Vector[][] points = new Vector[sections.length][];
+		for (int s = 0; s < sections.length; s++) {
+			points[s] = sections[s].getSectionPoints();
+		}
+		return createMeshPart(sections, points, lod, mergeSections);
+	}
+
+
+	private void createSectionMeshpoints(StemSection sec, int index, double vMap) {
+		createSectionMeshpoints(sec.getSectionPoints(), index, vMap);
+	}
+
 
+	private void createSectionMeshpoints(Vector[] points, int index, double vMap) {
 		MeshSection section = new MeshSection(points.length, vMap);
+		section.stemSection = index;
 		//stem.DBG("MESH+LOBES: lobes: %d, depth: %f\n"%(self.tree.Lobes, self.tree.LobeDepth))
 
 		if (points.length == 1) {
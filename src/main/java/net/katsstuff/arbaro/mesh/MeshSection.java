@@ -22,11 +22,9 @@
 
 package net.katsstuff.arbaro.mesh;
 
-import java.text.NumberFormat;
 import java.util.Enumeration;
 import java.util.NoSuchElementException;
 import net.katsstuff.arbaro.export.Console;
-import net.katsstuff.arbaro.params.FloatFormat;
 import net.katsstuff.arbaro.transformation.Vector;
 
 /**
@@ -48,6 +46,7 @@ public class MeshSection extends java.util.Vector {
 	public MeshSection previous;
 	public MeshSection next;
 	public double mapV; // v-coordinate of uv-map
+	int stemSection = -1; // index of the stem section the points were taken from, -1 for mid points
 //	public Segment segment;
 
 	private class UVVertexEnumerator implements Enumeration {
@@ -243,30 +242,6 @@ public class MeshSection extends java.util.Vector {
 	}
 
 
-	/**
-	 * Returns the normal of the vertex i.
-	 *
-	 * @param i
-	 * @return normal of the vertex i
-	 * @throws Exception
-	 */
-	public Vector normalAt(int i) throws Exception {
-		Vertex v = (Vertex) elementAt(i);
-		if (v.normal == null) {
-			throw new MeshException("Error: Normal not set for point "
-									+ vectorStr(v.point));
-		}
-		return v.normal;
-	}
-
-	private String vectorStr(Vector v) {
-		NumberFormat fmt = FloatFormat.getInstance();
-		return "<" + fmt.format(v.getX()) + ","
-			   + fmt.format(v.getZ()) + ","
-			   + fmt.format(v.getY()) + ">";
-	}
-
-
 	/**
 	 * Returns the point number i.
 	 *
@@ -318,30 +293,6 @@ public class MeshSection extends java.util.Vector {
 		return ((Vertex) (previous.elementAt(i % previous.size()))).point;
 	}
 
-	/**
-	 * Returns the normal of the plane built by the vectors a-b and c-b
-	 *
-	 * @param a
-	 * @param b
-	 * @param c
-	 * @return normal of the plane built by the vectors a-b and c-b
-	 */
-	public Vector normal(Vector a, Vector b, Vector c) {
-		Vector u = (a.sub(b)).normalize();
-		Vector v = (c.sub(b)).normalize();
-		Vector norm = new Vector(
-			u.getY() * v.getZ() - u.getZ() * v.getY(),
-			u.getZ() * v.getX() - u.getX() * v.getZ(),
-			u.getX() * v.getY() - u.getY() * v.getX()
-		).normalize();
-		if (Double.isNaN(norm.getX()) && Double.isNaN(norm.getY())
-			&& Double.isNaN(norm.getZ())) {
-			System.err.println("WARNING: invalid normal vector - stem radius too small?");
-			norm = new Vector(0, 0, 1);
-		}
-		return norm;
-	}
-
 	/**
 	 * Sets all normals to the vector vec
 	 *
@@ -352,52 +303,4 @@ public class MeshSection extends java.util.Vector {
 			((Vertex) elementAt(i)).normal = vec;
 		}
 	}
-
-	/**
-	 * Sets all normals to the average
-	 * of the two left and right upper triangles
-	 *
-	 */
-	public void setNormalsUp() {
-		for (int i = 0; i < size(); i++) {
-			((Vertex) elementAt(i)).normal =
-				(normal(up(i), here(i), left(i)).add(
-					normal(right(i), here(i), up(i)))).normalize();
-		}
-	}
-
-	/**
-	 * Sets all normals to the average
-	 * of the two left and right lower triangles
-	 *
-	 */
-	public void setNormalsDown() {
-		for (int i = 0; i < size(); i++) {
-			((Vertex) elementAt(i)).normal =
-				(normal(down(i), here(i), right(i)).add(
-					normal(left(i), here(i), down(i)))).normalize();
-		}
-	}
-
-	/**
-	 * Sets all normals to the average
-	 * of the four left and right upper and lower triangles
-	 */
-	public void setNormalsUpDown() {
-		for (int i = 0; i < size(); i++) {
-			((Vertex) elementAt(i)).normal =
-				(normal(up(i), here(i), left(i)).add(
-					normal(right(i), here(i), up(i))).add(
-					normal(down(i), here(i), right(i))).add(
-					normal(left(i), here(i), down(i)))).normalize();
-		}
-	}
 }
-
-
-
-
-
-
-
-
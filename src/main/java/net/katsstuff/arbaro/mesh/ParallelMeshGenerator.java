@@ -0,0 +1,277 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.mesh;
+
+import java.util.LinkedList;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.katsstuff.arbaro.export.Console;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.tree.DefaultTreeTraversal;
+import net.katsstuff.arbaro.tree.Leaf;
+import net.katsstuff.arbaro.tree.Stem;
+import net.katsstuff.arbaro.tree.Tree;
+
+/**
+ * Creates the stem meshes on several threads. The stems are collected in one traversal of the tree, their mesh parts
+ * are created concurrently and added to the mesh in the order of the traversal, so the mesh is the same as the one
+ * created by MeshGeneratorImpl.
+ * <p>
+ * The section points of the trunks can depend on the tree's random generator, so the trunks' mesh parts are created
+ * by the calling thread in the order of the traversal.
+ */
+class ParallelMeshGenerator extends MeshGeneratorImpl {
+
+	// stems given to a thread at once
+	private static final int STEMS_PER_TASK = 32;
+
+	// tasks created ahead of the mesh per thread
+	private static final int TASKS_PER_THREAD = 4;
+
+	int threads;
+
+	/**
+	 * Collects the stems, which go into the mesh, in the order of the traversal, and for every clone the index of the
+	 * stem it was split from
+	 */
+	private class StemCollector extends DefaultTreeTraversal {
+
+		java.util.Vector stems = new java.util.Vector();
+		java.util.Vector clonedFrom = new java.util.Vector();
+		Stack entered = new Stack();
+		Tree tree;
+
+		public boolean enterTree(Tree tree) {
+			this.tree = tree;
+			return true;
+		}
+
+		public boolean enterStem(Stem stem) {
+			if (lod != null && stem.getLength() < lod.minStemSize * tree.getHeight()) {
+				entered.push(Integer.valueOf(-1));
+				return false; // its substems are dropped too
+			}
+			clonedFrom.addElement(stem.isClone() && !entered.isEmpty() ? entered.peek() : Integer.valueOf(-1));
+			entered.push(Integer.valueOf(stems.size()));
+			stems.addElement(stem);
+			return true;
+		}
+
+		public boolean leaveStem(Stem stem) {
+			entered.pop();
+			return true;
+		}
+
+		public boolean visitLeaf(Leaf leaf) {
+			return false;
+		}
+	}
+
+	public ParallelMeshGenerator(boolean useQuads, LevelOfDetail lod, int threads) {
+		super(useQuads, lod);
+		this.threads = threads;
+	}
+
+	public Mesh createStemMesh(Tree tree, Progress progress) {
+		progress.beginPhase("Creating mesh", tree.getStemCount());
+		outputVertexInfo(tree);
+
+		Mesh mesh = new Mesh(tree.getLevels());
+		StemCollector collector = collectStems(tree);
+		Stem[] stems = new Stem[collector.stems.size()];
+		collector.stems.copyInto(stems);
+		int[] clonedFrom = new int[stems.length];
+		for (int i = 0; i < stems.length; i++) {
+			clonedFrom[i] = ((Integer) collector.clonedFrom.elementAt(i)).intValue();
+		}
+		createMeshParts(mesh, stems, clonedFrom, progress);
+
+		progress.endPhase();
+		return mesh;
+	}
+
+	public Mesh createStemMeshByLevel(Tree tree, Progress progress) {
+		return createStemMeshByLevel(tree, progress, new Mesh(tree.getLevels()));
+	}
+
+	public Mesh createStemMeshByLevel(Tree tree, Progress progress, Mesh mesh) {
+		progress.beginPhase("Creating mesh", tree.getStemCount());
+		outputVertexInfo(tree);
+
+		// the stems of every level keep the order of the traversal
+		java.util.Vector[] levels = new java.util.Vector[tree.getLevels()];
+		for (int l = 0; l < levels.length; l++) {
+			levels[l] = new java.util.Vector();
+		}
+		StemCollector collector = collectStems(tree);
+		for (int i = 0; i < collector.stems.size(); i++) {
+			int level = ((Stem) collector.stems.elementAt(i)).getLevel();
+			if (level < levels.length) {
+				levels[level].addElement(Integer.valueOf(i));
+			}
+		}
+
+		// a clone has the level of its stem, so that one comes first in the new order too
+		int[] position = new int[collector.stems.size()];
+		java.util.Vector byLevel = new java.util.Vector(position.length);
+		for (int l = 0; l < levels.length; l++) {
+			byLevel.addAll(levels[l]);
+		}
+		Stem[] stems = new Stem[byLevel.size()];
+		int[] clonedFrom = new int[stems.length];
+		for (int i = 0; i < stems.length; i++) {
+			int traversed = ((Integer) byLevel.elementAt(i)).intValue();
+			position[traversed] = i;
+			stems[i] = (Stem) collector.stems.elementAt(traversed);
+			int from = ((Integer) collector.clonedFrom.elementAt(traversed)).intValue();
+			clonedFrom[i] = from >= 0 ? position[from] : -1;
+		}
+
+		createMeshParts(mesh, stems, clonedFrom, progress);
+
+		progress.endPhase();
+		return mesh;
+	}
+
+	private StemCollector collectStems(Tree tree) {
+		StemCollector collector = new StemCollector();
+		tree.traverseTree(collector);
+		return collector;
+	}
+
+	/**
+	 * Creates the mesh parts of the stems and adds them to the mesh in the given order
+	 *
+	 * @param clonedFrom for every clone the index of the stem it was split from, which has to come before it, or -1
+	 */
+	private void createMeshParts(Mesh mesh, final Stem[] stems, int[] clonedFrom, Progress progress) {
+		// the uv coordinates of a level are calculated from its
+		// first mesh part, so this one keeps all its sections
+		final boolean[] merge = new boolean[stems.length];
+		boolean[] levelSeen = new boolean[mesh.firstMeshPart.length];
+		for (int i = 0; i < stems.length; i++) {
+			int level = stems[i].getLevel();
+			merge[i] = levelSeen[level] || mesh.firstMeshPart[level] >= 0;
+			levelSeen[level] = true;
+		}
+
+		// the mesh parts of stems with clones are kept until the end to link the clones to them
+		boolean[] keep = new boolean[stems.length];
+		for (int i = 0; i < stems.length; i++) {
+			if (clonedFrom[i] >= 0) {
+				keep[clonedFrom[i]] = true;
+			}
+		}
+
+		final MeshPart[] parts = new MeshPart[stems.length];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		LinkedList pending = new LinkedList();
+		int added = 0;
+		try {
+			for (int start = 0; start < stems.length; start += STEMS_PER_TASK) {
+				final int from = start;
+				final int to = Math.min(start + STEMS_PER_TASK, stems.length);
+
+				for (int i = from; i < to; i++) {
+					if (stems[i].getLevel() == 0) {
+						parts[i] = createMeshPart(stems[i], merge[i]);
+					}
+				}
+
+				while (pending.size() >= threads * TASKS_PER_THREAD) {
+					added = addMeshParts(mesh, stems, parts, clonedFrom, keep, added, pending, progress);
+				}
+
+				pending.addLast(pool.submit(new Callable() {
+					public Object call() {
+						for (int i = from; i < to; i++) {
+							if (stems[i].getLevel() != 0) {
+								parts[i] = createMeshPart(stems[i], merge[i]);
+							}
+						}
+						return Integer.valueOf(to);
+					}
+				}));
+			}
+			while (!pending.isEmpty()) {
+				added = addMeshParts(mesh, stems, parts, clonedFrom, keep, added, pending, progress);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for the first pending task and adds the mesh parts created up to its end
+	 *
+	 * @return the index of the next mesh part to add
+	 */
+	private int addMeshParts(Mesh mesh, Stem[] stems, MeshPart[] parts, int[] clonedFrom, boolean[] keep,
+		int added, LinkedList pending, Progress progress
+	) {
+		int to;
+		try {
+			to = ((Integer) ((Future) pending.removeFirst()).get()).intValue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while creating mesh", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+
+		for (; added < to; added++) {
+			if (parts[added] != null) {
+				if (clonedFrom[added] >= 0) {
+					parts[added].clonedFrom = parts[clonedFrom[added]];
+				}
+				mesh.addMeshpart(parts[added]);
+				if (!keep[added]) {
+					parts[added] = null;
+				}
+			}
+
+			// show progress
+			if (stems[added].getLevel() <= 1 && !stems[added].isClone()) {
+				Console.progressChar();
+			}
+			progress.incProgress(1);
+		}
+		return added;
+	}
+
+	private MeshPart createMeshPart(Stem stem, boolean merge) {
+		MeshPartCreator partCreator = new MeshPartCreator(stem, useQuads);
+		if (lod == null) {
+			return partCreator.createMeshPart(null);
+		} else {
+			return partCreator.createMeshPart(lod, merge);
+		}
+	}
+}
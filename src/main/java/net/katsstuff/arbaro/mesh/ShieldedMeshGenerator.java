@@ -84,4 +84,28 @@ public class ShieldedMeshGenerator implements MeshGenerator {
 			return null;
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.mesh.MeshGenerator#createStemMeshByLevel(net.katsstuff.arbaro.tree.Tree, net.katsstuff.arbaro.export.Progress, net.katsstuff.arbaro.mesh.Mesh)
+	 */
+	public Mesh createStemMeshByLevel(Tree tree, Progress progress, Mesh mesh) {
+		try {
+			return meshGenerator.createStemMeshByLevel(tree, progress, mesh);
+		} catch (Exception e) {
+			showException(e);
+			return null;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.mesh.MeshGenerator#createStemMeshes(net.katsstuff.arbaro.tree.Tree, net.katsstuff.arbaro.export.Progress, net.katsstuff.arbaro.mesh.LevelOfDetail[])
+	 */
+	public Mesh[] createStemMeshes(Tree tree, Progress progress, LevelOfDetail[] lods) {
+		try {
+			return meshGenerator.createStemMeshes(tree, progress, lods);
+		} catch (Exception e) {
+			showException(e);
+			return null;
+		}
+	}
 }
@@ -0,0 +1,133 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.params;
+
+import java.io.PrintWriter;
+import java.text.NumberFormat;
+
+/**
+ * A fast replacement for {@link FloatFormat}, which writes doubles with at most 5 fraction digits into a char array.
+ * The output is the same as the one of FloatFormat, including the grouping of the integer digits. Usual values are
+ * written without creating objects, only values near the middle between two results and very big values are passed to
+ * a NumberFormat. Every instance has its own buffer and NumberFormat, so it must not be shared between threads.
+ */
+public final class FloatEncoder {
+
+	/**
+	 * The maximal number of chars needed for a double
+	 */
+	public static final int MAX_LENGTH = 448;
+
+	private static final int FRACTION_DIGITS = 5;
+	private static final double SCALE = 100000;
+
+	// above this the NumberFormat rounds the shortest decimal representation
+	// of a value instead of the value itself
+	private static final double FAST_LIMIT = 1e9;
+
+	private final NumberFormat format = (NumberFormat) FloatFormat.getInstance().clone();
+	private final char[] buffer = new char[MAX_LENGTH];
+
+	/**
+	 * Writes a double to a PrintWriter
+	 */
+	public void write(PrintWriter w, double value) {
+		w.write(buffer, 0, encode(value, buffer, 0));
+	}
+
+	/**
+	 * @return the formatted double
+	 */
+	public String format(double value) {
+		return new String(buffer, 0, encode(value, buffer, 0));
+	}
+
+	/**
+	 * Writes a double into a char array
+	 *
+	 * @param value the double
+	 * @param dst the array, it needs space for {@link #MAX_LENGTH} chars after pos
+	 * @param pos the position of the first char in the array
+	 * @return the position after the last char written
+	 */
+	public int encode(double value, char[] dst, int pos) {
+		double abs = Math.abs(value);
+		if (abs < FAST_LIMIT) {
+			double scaled = abs * SCALE;
+			double floor = Math.floor(scaled);
+			double frac = scaled - floor;
+			// scaled and the decimal representation the NumberFormat rounds
+			// differ by less than two ulps from the exact value
+			if (Math.abs(frac - 0.5) > 4 * Math.ulp(scaled)) {
+				// the sign is written for -0.0 and for negative values rounded to 0 too
+				if (Double.doubleToRawLongBits(value) < 0) {
+					dst[pos++] = '-';
+				}
+				return encodeScaled((long) floor + (frac > 0.5 ? 1 : 0), dst, pos);
+			}
+		}
+
+		String s = format.format(value);
+		s.getChars(0, s.length(), dst, pos);
+		return pos + s.length();
+	}
+
+	// writes a value given in units of 10^-5
+	private static int encodeScaled(long n, char[] dst, int pos) {
+		long integer = n / 100000;
+		int frac = (int) (n % 100000);
+
+		// integer digits with a comma after every group of three
+		int digits = 1;
+		for (long i = integer; i >= 10; i /= 10) {
+			digits++;
+		}
+		int end = pos + digits + (digits - 1) / 3;
+		int p = end;
+		int count = 0;
+		do {
+			if (count > 0 && count % 3 == 0) {
+				dst[--p] = ',';
+			}
+			dst[--p] = (char) ('0' + integer % 10);
+			integer /= 10;
+			count++;
+		} while (integer > 0);
+		pos = end;
+
+		if (frac != 0) {
+			int fracDigits = FRACTION_DIGITS;
+			while (frac % 10 == 0) {
+				frac /= 10;
+				fracDigits--;
+			}
+			dst[pos++] = '.';
+			for (int i = fracDigits - 1; i >= 0; i--) {
+				dst[pos + i] = (char) ('0' + frac % 10);
+				frac /= 10;
+			}
+			pos += fracDigits;
+		}
+		return pos;
+	}
+}
@@ -29,8 +29,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.TreeMap;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -180,6 +185,13 @@ public class Params {
 	public boolean preview = false;
 	public boolean ignoreVParams;
 	public int stopLevel;
+	// every stem gets an own random generator derived from the seed and its
+	// position in the tree instead of sharing the one of its level
+	public boolean positionalRandom = false;
+	// stems keep only what is needed to make their leaves, and the leaves are
+	// made again whenever the tree is traversed. The tree is the same, but needs
+	// much less memory. The params mustn't be changed while the tree is used.
+	public boolean lazyLeaves = false;
 
 	// general params
 	public String Species;
@@ -281,6 +293,8 @@ public class Params {
 		//verbose = other.verbose;
 		ignoreVParams = other.ignoreVParams;
 		stopLevel = other.stopLevel;
+		positionalRandom = other.positionalRandom;
+		lazyLeaves = other.lazyLeaves;
 		Species = other.Species;
 //		Seed = other.Seed;
 		Smooth = other.Smooth;
@@ -592,6 +606,46 @@ public class Params {
 		return result;
 	}
 
+	/**
+	 * Returns a hex encoded SHA-1 hash of all parameter values and the settings, which influence the generated tree.
+	 * Trees made with the same seed from params with the same digest are the same. Call it after prepare(), then
+	 * missing values are replaced by their defaults.
+	 *
+	 * @return the digest
+	 */
+	public String getDigest() {
+		TreeMap values = new TreeMap();
+		for (Enumeration e = paramDB.elements(); e.hasMoreElements(); ) {
+			AbstractParam p = (AbstractParam) e.nextElement();
+			values.put(p.getName(), p.getValue());
+		}
+
+		StringBuilder str = new StringBuilder();
+		for (Iterator i = values.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry entry = (Map.Entry) i.next();
+			str.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+		}
+		str.append("stopLevel=").append(stopLevel).append('\n');
+		str.append("positionalRandom=").append(positionalRandom).append('\n');
+		str.append("ignoreVParams=").append(ignoreVParams).append('\n');
+		str.append("preview=").append(preview).append('\n');
+
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-1").digest(str.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-1
+			throw new IllegalStateException(e.getMessage());
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < hash.length; i++) {
+			hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(hash[i] & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
 	// help methods for createing param-db
 
 	int order;
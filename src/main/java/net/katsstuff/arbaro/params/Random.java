@@ -30,10 +30,50 @@ public class Random extends java.util.Random {
 
 	private static final long serialVersionUID = 1L;
 
+	// the linear congruential generator of java.util.Random, kept here to be able to read its state
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	// no initializer, it is set by setSeed() called from the constructor of java.util.Random
+	private long seed;
+
 	public Random(long seed) {
 		super(seed);
 	}
 
+	public void setSeed(long seed) {
+		this.seed = (seed ^ MULTIPLIER) & MASK;
+		super.setSeed(seed);
+	}
+
+	protected int next(int bits) {
+		seed = (seed * MULTIPLIER + ADDEND) & MASK;
+		return (int) (seed >>> (48 - bits));
+	}
+
+	/**
+	 * Returns the internal state of the generator. Other than getState() this doesn't change the random sequence.
+	 *
+	 * @return the state
+	 */
+	public long getRawState() {
+		return seed;
+	}
+
+	/**
+	 * Creates a new generator of the same kind, which continues the random sequence at a state got from
+	 * getRawState(). This generator isn't changed.
+	 *
+	 * @param rawState the state
+	 * @return the new generator
+	 */
+	public Random atRawState(long rawState) {
+		Random r = new Random(0);
+		r.seed = rawState;
+		return r;
+	}
+
 	public double uniform(double low, double high) {
 		return low + nextDouble() * (high - low);
 	}
@@ -0,0 +1,96 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.params;
+
+/**
+ * SplitMix64 random generator. Other than the generator of java.util.Random its state can be read and set directly,
+ * and independent streams can be derived cheaply from a seed and a key, e.g. the position of a stem in the tree.
+ */
+public class SplitMix64Random extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+
+	public SplitMix64Random(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * Creates a generator for the stream identified by the seed and the key. The same seed and key always give the same
+	 * stream, different keys give independent streams.
+	 *
+	 * @param seed the seed, e.g. the seed of the tree
+	 * @param key the key of the stream, e.g. the tree position of a stem
+	 * @return the random generator
+	 */
+	public static SplitMix64Random forKey(long seed, String key) {
+		long h = mix64(seed + GOLDEN_GAMMA);
+		for (int i = 0; i < key.length(); i++) {
+			h = mix64(h + (key.charAt(i) + 1) * GOLDEN_GAMMA);
+		}
+		return new SplitMix64Random(h);
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	public void setSeed(long seed) {
+		// invoked by the constructor of java.util.Random too
+		state = seed;
+	}
+
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	public long getState() {
+		return state;
+	}
+
+	public long getRawState() {
+		return state;
+	}
+
+	public Random atRawState(long rawState) {
+		return new SplitMix64Random(rawState);
+	}
+
+	public void setState(long state) {
+		this.state = state;
+	}
+}
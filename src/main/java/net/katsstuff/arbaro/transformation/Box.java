@@ -59,7 +59,7 @@ public final class Box {
 
 	public void makeEmpty() {
 		min = new Vector(Double.MAX_VALUE);
-		max = new Vector(Double.MIN_VALUE);
+		max = new Vector(-Double.MAX_VALUE);
 	}
 
 	public void extendBy(Vector point) {
@@ -73,6 +73,27 @@ public final class Box {
 		}
 	}
 
+	public void extendBy(double x, double y, double z) {
+		if (x < min.getX()) {
+			min.set(X, x);
+		}
+		if (x > max.getX()) {
+			max.set(X, x);
+		}
+		if (y < min.getY()) {
+			min.set(Y, y);
+		}
+		if (y > max.getY()) {
+			max.set(Y, y);
+		}
+		if (z < min.getZ()) {
+			min.set(Z, z);
+		}
+		if (z > max.getZ()) {
+			max.set(Z, z);
+		}
+	}
+
 	public void extendBy(Box box) {
 		for (int i = 0; i < 3; i++) {
 			if (box.getMin().get(i) < min.get(i)) {
@@ -44,6 +44,10 @@ public final class Matrix {
 		}
 	}
 
+	public Matrix(Matrix other) {
+		data = other.data.clone();
+	}
+
 	public Matrix(
 		double xx, double xy, double xz,
 		double yx, double yy, double yz,
@@ -106,15 +110,55 @@ public final class Matrix {
 
 	public Matrix prod(Matrix M) {
 		//returns the Matrix product
-		Matrix R = new Matrix();
+		Matrix R = new Matrix(this);
+		R.prodLocal(M.data);
+		return R;
+	}
 
+	/**
+	 * Multiplies this Matrix from the right with another Matrix given by its data, i.e. this = this * M. No objects are
+	 * created.
+	 *
+	 * @param m the data of the other Matrix, row by row
+	 */
+	void prodLocal(double[] m) {
+		prodLocal(m[0], m[1], m[2], m[3], m[4], m[5], m[6], m[7], m[8]);
+	}
+
+	/**
+	 * Multiplies this Matrix from the right with the Matrix given by its values, i.e. this = this * M
+	 */
+	void prodLocal(
+		double xx, double xy, double xz,
+		double yx, double yy, double yz,
+		double zx, double zy, double zz
+	) {
 		for (int r = X; r <= Z; r++) {
-			for (int c = X; c <= Z; c++) {
-				R.set(r, c, row(r).prod(M.col(c)));
-			}
+			double a = data[r * 3 + X];
+			double b = data[r * 3 + Y];
+			double c = data[r * 3 + Z];
+			data[r * 3 + X] = a * xx + b * yx + c * zx;
+			data[r * 3 + Y] = a * xy + b * yy + c * zy;
+			data[r * 3 + Z] = a * xz + b * yz + c * zz;
 		}
+	}
 
-		return R;
+	/**
+	 * Multiplies this Matrix from the left with the Matrix given by its values, i.e. this = M * this
+	 */
+	void preProdLocal(
+		double xx, double xy, double xz,
+		double yx, double yy, double yz,
+		double zx, double zy, double zz
+	) {
+		for (int c = X; c <= Z; c++) {
+			double a = data[X * 3 + c];
+			double b = data[Y * 3 + c];
+			double d = data[Z * 3 + c];
+			data[X * 3 + c] = xx * a + xy * b + xz * d;
+			data[Y * 3 + c] = yx * a + yy * b + yz * d;
+			data[Z * 3 + c] = zx * a + zy * b + zz * d;
+		}
 	}
 
 	/**
@@ -141,7 +185,25 @@ public final class Matrix {
 	 * @return The product of the Matrix and the vector
 	 */
 	public Vector prod(Vector v) {
-		return new Vector(row(X).prod(v), row(Y).prod(v), row(Z).prod(v));
+		return prod(v, new Vector());
+	}
+
+	/**
+	 * Multiplies the Matrix with a vector and stores the result in dst. The vector and dst can be the same object.
+	 *
+	 * @param v the vector
+	 * @param dst the vector for the result
+	 * @return dst
+	 */
+	public Vector prod(Vector v, Vector dst) {
+		double x = v.getX();
+		double y = v.getY();
+		double z = v.getZ();
+		return dst.set(
+			data[0] * x + data[1] * y + data[2] * z,
+			data[3] * x + data[4] * y + data[5] * z,
+			data[6] * x + data[7] * y + data[8] * z
+		);
 	}
 
 	/**
@@ -52,6 +52,17 @@ public final class Transformation {
 		vector = v;
 	}
 
+	/**
+	 * Creates a copy of another transformation, which doesn't share the matrix and vector with it. Such a copy can be
+	 * changed with the *Local methods.
+	 *
+	 * @param other the transformation to copy
+	 */
+	public Transformation(Transformation other) {
+		matrix = new Matrix(other.matrix);
+		vector = new Vector(other.vector);
+	}
+
 	public Matrix matrix() {
 		return matrix;
 	}
@@ -78,7 +89,18 @@ public final class Transformation {
 	 * @return resulting vector
 	 */
 	public Vector apply(Vector v) {
-		return matrix.prod(v).add(vector);
+		return apply(v, new Vector());
+	}
+
+	/**
+	 * Applies the transformation to a vector and stores the result in dst. The vector and dst can be the same object.
+	 *
+	 * @param v the vector
+	 * @param dst the vector for the result
+	 * @return dst
+	 */
+	public Vector apply(Vector v, Vector dst) {
+		return matrix.prod(v, dst).addLocal(vector);
 	}
 
 	/**
@@ -148,36 +170,73 @@ public final class Transformation {
 
 	public Transformation rotz(double angle) {
 		// local rotation about z-axis
+		return new Transformation(new Matrix(matrix), vector).rotzLocal(angle);
+	}
+
+	public Transformation roty(double angle) {
+		// local rotation about y-axis
+		return new Transformation(new Matrix(matrix), vector).rotyLocal(angle);
+	}
+
+	public Transformation rotx(double angle) {
+		// local rotation about the x axis
+		return new Transformation(new Matrix(matrix), vector).rotxLocal(angle);
+	}
+
+	public Transformation rotxz(double delta, double rho) {
+		// local rotation about the x and z axees - for the substems
+		return new Transformation(new Matrix(matrix), vector).rotxzLocal(delta, rho);
+	}
+
+	public Transformation rotaxisz(double delta, double rho) {
+		// local rotation away from the local z-axis 
+		// about an angle delta using an axis given by rho 
+		// - used for splitting and random rotations
+		return new Transformation(new Matrix(matrix), vector).rotaxiszLocal(delta, rho);
+	}
+
+	public Transformation translate(Vector v) {
+		return new Transformation(matrix, vector.add(v));
+	}
+
+	public Transformation rotaxis(double angle, Vector axis) {
+		// rotation about an axis
+		return new Transformation(new Matrix(matrix), vector).rotaxisLocal(angle, axis);
+	}
+
+	// The following methods change this transformation instead of creating a new
+	// one and give the same values as the methods above. The methods above share
+	// the matrix or the vector between the old and the new transformation, so
+	// use these only for transformations made with new or the copy constructor.
+
+	public Transformation rotzLocal(double angle) {
 		double radAngle = angle * Math.PI / 180;
-		Matrix rm = new Matrix(Math.cos(radAngle), -Math.sin(radAngle), 0,
+		matrix.prodLocal(Math.cos(radAngle), -Math.sin(radAngle), 0,
 			Math.sin(radAngle), Math.cos(radAngle), 0,
 			0, 0, 1
 		);
-		return new Transformation(matrix.prod(rm), vector);
+		return this;
 	}
 
-	public Transformation roty(double angle) {
-		// local rotation about z-axis
+	public Transformation rotyLocal(double angle) {
 		double radAngle = angle * Math.PI / 180;
-		Matrix rm = new Matrix(Math.cos(radAngle), 0, -Math.sin(radAngle),
+		matrix.prodLocal(Math.cos(radAngle), 0, -Math.sin(radAngle),
 			0, 1, 0,
 			Math.sin(radAngle), 0, Math.cos(radAngle)
 		);
-		return new Transformation(matrix.prod(rm), vector);
+		return this;
 	}
 
-	public Transformation rotx(double angle) {
-		// local rotation about the x axis
+	public Transformation rotxLocal(double angle) {
 		double radAngle = angle * Math.PI / 180;
-		Matrix rm = new Matrix(1, 0, 0,
+		matrix.prodLocal(1, 0, 0,
 			0, Math.cos(radAngle), -Math.sin(radAngle),
 			0, Math.sin(radAngle), Math.cos(radAngle)
 		);
-		return new Transformation(matrix.prod(rm), vector);
+		return this;
 	}
 
-	public Transformation rotxz(double delta, double rho) {
-		// local rotation about the x and z axees - for the substems
+	public Transformation rotxzLocal(double delta, double rho) {
 		double radDelta = delta * Math.PI / 180;
 		double radRho = rho * Math.PI / 180;
 		double sir = Math.sin(radRho);
@@ -185,17 +244,14 @@ public final class Transformation {
 		double sid = Math.sin(radDelta);
 		double cod = Math.cos(radDelta);
 
-		Matrix rm = new Matrix(cor, -sir * cod, sir * sid,
+		matrix.prodLocal(cor, -sir * cod, sir * sid,
 			sir, cor * cod, -cor * sid,
 			0, sid, cod
 		);
-		return new Transformation(matrix.prod(rm), vector);
+		return this;
 	}
 
-	public Transformation rotaxisz(double delta, double rho) {
-		// local rotation away from the local z-axis 
-		// about an angle delta using an axis given by rho 
-		// - used for splitting and random rotations
+	public Transformation rotaxiszLocal(double delta, double rho) {
 		double radDelta = delta * Math.PI / 180;
 		double radRho = rho * Math.PI / 180;
 
@@ -204,33 +260,33 @@ public final class Transformation {
 		double si = Math.sin(radDelta);
 		double co = Math.cos(radDelta);
 
-		Matrix rm = new Matrix((co + a * a * (1 - co)), (b * a * (1 - co)), (b * si),
+		matrix.prodLocal((co + a * a * (1 - co)), (b * a * (1 - co)), (b * si),
 			(a * b * (1 - co)), (co + b * b * (1 - co)), (-a * si),
 			(-b * si), (a * si), (co)
 		);
-		return new Transformation(matrix.prod(rm), vector);
+		return this;
 	}
 
-	public Transformation translate(Vector v) {
-		return new Transformation(matrix, vector.add(v));
+	public Transformation translateLocal(Vector v) {
+		vector.addLocal(v);
+		return this;
 	}
 
-	public Transformation rotaxis(double angle, Vector axis) {
-		// rotation about an axis
+	public Transformation rotaxisLocal(double angle, Vector axis) {
 		double radAngle = angle * Math.PI / 180;
-		Vector normAxis = axis.normalize();
-		double a = normAxis.getX();
-		double b = normAxis.getY();
-		double c = normAxis.getZ();
+		double abs = axis.abs();
+		double a = axis.getX() / abs;
+		double b = axis.getY() / abs;
+		double c = axis.getZ() / abs;
 		double si = Math.sin(radAngle);
 		double co = Math.cos(radAngle);
 
-		Matrix rm = new Matrix(
+		matrix.preProdLocal(
 			(co + a * a * (1 - co)), (-c * si + b * a * (1 - co)), (b * si + c * a * (1 - co)),
 			(c * si + a * b * (1 - co)), (co + b * b * (1 - co)), (-a * si + c * b * (1 - co)),
 			(-b * si + a * c * (1 - co)), (a * si + b * c * (1 - co)), (co + c * c * (1 - co))
 		);
-		return new Transformation(rm.prod(matrix), vector);
+		return this;
 	}
 
 	public Transformation inverse() {
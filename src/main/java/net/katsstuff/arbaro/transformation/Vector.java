@@ -40,30 +40,28 @@ public final class Vector {
 	public final static Vector Y_AXIS = new Vector(0, 1, 0);
 	public final static Vector Z_AXIS = new Vector(0, 0, 1);
 
-	private double[] coord = {0, 0, 0};
+	// scalar fields instead of an array, so a vector is a single object
+	private double x;
+	private double y;
+	private double z;
 
 	public Vector() {
-		coord = new double[Z + 1];
-		//coord = {0,0,0};
 	}
 
 	public Vector(Vector v) {
-		coord = new double[Z + 1];
-		coord[X] = v.coord[X];
-		coord[Y] = v.coord[Y];
-		coord[Z] = v.coord[Z];
+		x = v.x;
+		y = v.y;
+		z = v.z;
 	}
 
 	public Vector(double value) {
-		coord = new double[Z + 1];
-		coord[X] = coord[Y] = coord[Z] = value;
+		x = y = z = value;
 	}
 
 	public Vector(double x, double y, double z) {
-		coord = new double[Z + 1];
-		coord[X] = x;
-		coord[Y] = y;
-		coord[Z] = z;
+		this.x = x;
+		this.y = y;
+		this.z = z;
 	}
 
 	public boolean equals(Vector v) {
@@ -72,61 +70,82 @@ public final class Vector {
 
 	public double abs() {
 		//returns the length of the vector
-		return Math.sqrt(coord[X] * coord[X] + coord[Y] * coord[Y] + coord[Z] * coord[Z]);
+		return Math.sqrt(x * x + y * y + z * z);
 	}
 
 	public String toString() {
 		NumberFormat fmt = FloatFormat.getInstance();
-		return "<" + fmt.format(coord[X]) + ","
-			   + fmt.format(coord[Y]) + ","
-			   + fmt.format(coord[Z]) + ">";
+		return "<" + fmt.format(x) + ","
+			   + fmt.format(y) + ","
+			   + fmt.format(z) + ">";
 	}
 
 	public Vector normalize() {
 		double abs = this.abs();
-		return new Vector(coord[X] / abs, coord[Y] / abs, coord[Z] / abs);
+		return new Vector(x / abs, y / abs, z / abs);
 	}
 
 	public double getX() {
-		return coord[X];
+		return x;
 	}
 
 	public double getY() {
-		return coord[Y];
+		return y;
 	}
 
 	public double getZ() {
-		return coord[Z];
+		return z;
 	}
 
 	public double get(int index) {
-		return coord[index];
+		switch (index) {
+			case X:
+				return x;
+			case Y:
+				return y;
+			case Z:
+				return z;
+			default:
+				throw new ArrayIndexOutOfBoundsException(index);
+		}
 	}
 
 	public void setX(double x) {
-		coord[X] = x;
+		this.x = x;
 	}
 
 	public void setY(double y) {
-		coord[Y] = y;
+		this.y = y;
 	}
 
 	public void setZ(double z) {
-		coord[Z] = z;
+		this.z = z;
 	}
 
 	public void set(int index, double value) {
-		coord[index] = value;
+		switch (index) {
+			case X:
+				x = value;
+				break;
+			case Y:
+				y = value;
+				break;
+			case Z:
+				z = value;
+				break;
+			default:
+				throw new ArrayIndexOutOfBoundsException(index);
+		}
 	}
 
 	public Vector mul(double factor) {
 		// scales the vector
-		return new Vector(coord[X] * factor, coord[Y] * factor, coord[Z] * factor);
+		return new Vector(x * factor, y * factor, z * factor);
 	}
 
 	public double prod(Vector v) {
 		// inner product of two vectors
-		return coord[X] * v.getX() + coord[Y] * v.getY() + coord[Z] * v.getZ();
+		return x * v.x + y * v.y + z * v.z;
 	}
 
 	public Vector div(double factor) {
@@ -134,11 +153,61 @@ public final class Vector {
 	}
 
 	public Vector add(Vector v) {
-		return new Vector(coord[X] + v.getX(), coord[Y] + v.getY(), coord[Z] + v.getZ());
+		return new Vector(x + v.x, y + v.y, z + v.z);
 	}
 
 	public Vector sub(Vector v) {
-		return this.add(v.mul(-1));
+		return new Vector(x - v.x, y - v.y, z - v.z);
+	}
+
+	// The following methods change this vector instead of creating a new one.
+	// They give the same values as the methods above and return this vector.
+
+	public Vector set(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	public Vector set(Vector v) {
+		x = v.x;
+		y = v.y;
+		z = v.z;
+		return this;
+	}
+
+	public Vector mulLocal(double factor) {
+		x *= factor;
+		y *= factor;
+		z *= factor;
+		return this;
+	}
+
+	public Vector divLocal(double factor) {
+		return mulLocal(1 / factor);
+	}
+
+	public Vector addLocal(Vector v) {
+		x += v.x;
+		y += v.y;
+		z += v.z;
+		return this;
+	}
+
+	public Vector subLocal(Vector v) {
+		x -= v.x;
+		y -= v.y;
+		z -= v.z;
+		return this;
+	}
+
+	public Vector normalizeLocal() {
+		double abs = this.abs();
+		x /= abs;
+		y /= abs;
+		z /= abs;
+		return this;
 	}
 
 	/**
@@ -166,34 +235,26 @@ public final class Vector {
 	}
 
 	public void setMaxCoord(Vector v) {
-		if (v.getX() > coord[X]) {
-			coord[X] = v.getX();
+		if (v.x > x) {
+			x = v.x;
 		}
-		if (v.getY() > coord[Y]) {
-			coord[Y] = v.getY();
+		if (v.y > y) {
+			y = v.y;
 		}
-		if (v.getZ() > coord[Z]) {
-			coord[Z] = v.getZ();
+		if (v.z > z) {
+			z = v.z;
 		}
 	}
 
 	public void setMinCoord(Vector v) {
-		if (v.getX() < coord[X]) {
-			coord[X] = v.getX();
+		if (v.x < x) {
+			x = v.x;
 		}
-		if (v.getY() < coord[Y]) {
-			coord[Y] = v.getY();
+		if (v.y < y) {
+			y = v.y;
 		}
-		if (v.getZ() < coord[Z]) {
-			coord[Z] = v.getZ();
+		if (v.z < z) {
+			z = v.z;
 		}
 	}
 }
-
-
-
-
-
-
-
-
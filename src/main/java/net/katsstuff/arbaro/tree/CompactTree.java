@@ -0,0 +1,775 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.tree;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import net.katsstuff.arbaro.params.Params;
+import net.katsstuff.arbaro.transformation.Box;
+import net.katsstuff.arbaro.transformation.Matrix;
+import net.katsstuff.arbaro.transformation.Transformation;
+import net.katsstuff.arbaro.transformation.Vector;
+
+/**
+ * A generated tree stored in flat arrays of primitives instead of an object for every stem, segment, subsegment and
+ * leaf. It needs a fraction of the memory of the generated tree and gives the same results when traversed or exported.
+ * <p>
+ * The stems are stored in the order of the tree traversal, every stem is followed by its substems and clones. Stems,
+ * sections and leaves handed to a TreeTraversal are small views of these arrays, created while traversing.
+ * <p>
+ * The arrays are int and double buffers, which are on the heap for a compacted tree or a view of a memory mapped file
+ * for a tree read with TreeFile.
+ */
+public final class CompactTree implements Tree {
+
+	// doubles per transformation: a 3x3 rotation matrix (row by row) and a translation vector
+	private static final int TRF = 12;
+
+	private final Params params;
+	private final int seed;
+	private final long stemCount;
+	private final long leafCount;
+	private final Vector minPoint;
+	private final Vector maxPoint;
+
+	// stems
+	private final IntBuffer stemLevel;
+	private final IntBuffer stemParent; // the stem, which has this one as substem or clone, -1 for trunks
+	private final IntBuffer stemEnd; // the first stem after all substems and clones of this stem
+	private final IntBuffer stemIndex;
+	private final IntBuffer stemCloneNumber; // -1 if the stem isn't a clone
+	private final IntBuffer stemCloneSectionOffset;
+	private final DoubleBuffer stemLength;
+	private final DoubleBuffer stemBaseRadius;
+	private final DoubleBuffer stemPeakRadius;
+	private final DoubleBuffer stemBounds; // min x,y,z and max x,y,z
+	private final DoubleBuffer stemTransformation;
+	// the sections and leaves of stem s are stored before the ones of stem s+1
+	private final IntBuffer stemSectionStart;
+	private final IntBuffer stemLeafStart;
+
+	// segments
+	private final DoubleBuffer segmentTransformation;
+	private final DoubleBuffer segmentLength;
+	private final IntBuffer segmentIndex;
+	private final IntBuffer segmentSubsegmentCount;
+
+	// sections, the first one of a stem is the base of its first segment
+	private final IntBuffer sectionSegment;
+	private final DoubleBuffer sectionPosition;
+	private final DoubleBuffer sectionRadius;
+	private final DoubleBuffer sectionDistance; // distance from the segment's base
+
+	// leaves
+	private final DoubleBuffer leafTransformation;
+
+	// the bounding volume hierarchy, built when it's needed first or read from the tree file
+	TreeBVH bvh;
+
+	/**
+	 * Creates a compact copy of a tree made by a TreeGenerator
+	 *
+	 * @param tree the tree
+	 * @return the compact tree, which can be used instead of the tree
+	 * @throws IllegalArgumentException if the tree wasn't made by a TreeGenerator
+	 */
+	public static CompactTree compact(Tree tree) {
+		if (tree instanceof CompactTree) {
+			return (CompactTree) tree;
+		}
+		if (!(tree instanceof TreeImpl)) {
+			throw new IllegalArgumentException("Only a generated tree can be made compact");
+		}
+		CompactTree compact = new CompactTree((TreeImpl) tree);
+		// the stems and leaves are traversed in the same order, so the hierarchy fits to the compact tree too
+		compact.bvh = ((TreeImpl) tree).bvh;
+		return compact;
+	}
+
+	private CompactTree(TreeImpl tree) {
+		params = tree.params;
+		seed = tree.getSeed();
+		stemCount = tree.getStemCount();
+		leafCount = tree.getLeafCount();
+		minPoint = new Vector(tree.getMinPoint());
+		maxPoint = new Vector(tree.getMaxPoint());
+
+		Counter counter = new Counter();
+		tree.traverseTree(counter);
+
+		int stems = counter.stems;
+		stemLevel = IntBuffer.allocate(stems);
+		stemParent = IntBuffer.allocate(stems);
+		stemEnd = IntBuffer.allocate(stems);
+		stemIndex = IntBuffer.allocate(stems);
+		stemCloneNumber = IntBuffer.allocate(stems);
+		stemCloneSectionOffset = IntBuffer.allocate(stems);
+		stemLength = DoubleBuffer.allocate(stems);
+		stemBaseRadius = DoubleBuffer.allocate(stems);
+		stemPeakRadius = DoubleBuffer.allocate(stems);
+		stemBounds = DoubleBuffer.allocate(stems * 6);
+		stemTransformation = DoubleBuffer.allocate(stems * TRF);
+		stemSectionStart = IntBuffer.allocate(stems + 1);
+		stemLeafStart = IntBuffer.allocate(stems + 1);
+
+		segmentTransformation = DoubleBuffer.allocate(counter.segments * TRF);
+		segmentLength = DoubleBuffer.allocate(counter.segments);
+		segmentIndex = IntBuffer.allocate(counter.segments);
+		segmentSubsegmentCount = IntBuffer.allocate(counter.segments);
+
+		sectionSegment = IntBuffer.allocate(counter.sections);
+		sectionPosition = DoubleBuffer.allocate(counter.sections * 3);
+		sectionRadius = DoubleBuffer.allocate(counter.sections);
+		sectionDistance = DoubleBuffer.allocate(counter.sections);
+
+		leafTransformation = DoubleBuffer.allocate(counter.leaves * TRF);
+
+		Filler filler = new Filler();
+		tree.traverseTree(filler);
+		stemSectionStart.put(stems, filler.sections);
+		stemLeafStart.put(stems, filler.leaves);
+	}
+
+	/**
+	 * Creates a compact tree from its binary form written by write(). The arrays are views of the data, not copies.
+	 *
+	 * @param params the prepared parameters, the tree was made with
+	 * @param data   the binary form in little endian byte order, positioned at its start
+	 * @throws IOException if the data isn't a valid compact tree
+	 */
+	CompactTree(Params params, ByteBuffer data) throws IOException {
+		this.params = params;
+		try {
+			seed = data.getInt();
+			data.getInt(); // padding
+			stemCount = data.getLong();
+			leafCount = data.getLong();
+			minPoint = new Vector(data.getDouble(), data.getDouble(), data.getDouble());
+			maxPoint = new Vector(data.getDouble(), data.getDouble(), data.getDouble());
+
+			stemLevel = readInts(data);
+			stemParent = readInts(data);
+			stemEnd = readInts(data);
+			stemIndex = readInts(data);
+			stemCloneNumber = readInts(data);
+			stemCloneSectionOffset = readInts(data);
+			stemLength = readDoubles(data);
+			stemBaseRadius = readDoubles(data);
+			stemPeakRadius = readDoubles(data);
+			stemBounds = readDoubles(data);
+			stemTransformation = readDoubles(data);
+			stemSectionStart = readInts(data);
+			stemLeafStart = readInts(data);
+
+			segmentTransformation = readDoubles(data);
+			segmentLength = readDoubles(data);
+			segmentIndex = readInts(data);
+			segmentSubsegmentCount = readInts(data);
+
+			sectionSegment = readInts(data);
+			sectionPosition = readDoubles(data);
+			sectionRadius = readDoubles(data);
+			sectionDistance = readDoubles(data);
+
+			leafTransformation = readDoubles(data);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of tree data");
+		}
+
+		int stems = stemLevel.capacity();
+		if (stemSectionStart.capacity() != stems + 1 || stemLeafStart.capacity() != stems + 1
+			|| stemLeafStart.get(stems) * TRF != leafTransformation.capacity()
+			|| stemSectionStart.get(stems) != sectionRadius.capacity()) {
+			throw new IOException("Inconsistent tree data");
+		}
+	}
+
+	/**
+	 * Writes the tree in a binary form, which can be read again with CompactTree(Params, ByteBuffer). The parameters
+	 * aren't written. All numbers are little endian, every array starts with its length as a long and is padded to a
+	 * multiple of 8 bytes, so the arrays can be used directly from a memory mapped file.
+	 *
+	 * @param out the channel to write to
+	 * @throws IOException if the channel can't be written
+	 */
+	void write(WritableByteChannel out) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(seed);
+		buf.putInt(0);
+		buf.putLong(stemCount);
+		buf.putLong(leafCount);
+		buf.putDouble(minPoint.getX());
+		buf.putDouble(minPoint.getY());
+		buf.putDouble(minPoint.getZ());
+		buf.putDouble(maxPoint.getX());
+		buf.putDouble(maxPoint.getY());
+		buf.putDouble(maxPoint.getZ());
+
+		writeInts(out, buf, stemLevel);
+		writeInts(out, buf, stemParent);
+		writeInts(out, buf, stemEnd);
+		writeInts(out, buf, stemIndex);
+		writeInts(out, buf, stemCloneNumber);
+		writeInts(out, buf, stemCloneSectionOffset);
+		writeDoubles(out, buf, stemLength);
+		writeDoubles(out, buf, stemBaseRadius);
+		writeDoubles(out, buf, stemPeakRadius);
+		writeDoubles(out, buf, stemBounds);
+		writeDoubles(out, buf, stemTransformation);
+		writeInts(out, buf, stemSectionStart);
+		writeInts(out, buf, stemLeafStart);
+
+		writeDoubles(out, buf, segmentTransformation);
+		writeDoubles(out, buf, segmentLength);
+		writeInts(out, buf, segmentIndex);
+		writeInts(out, buf, segmentSubsegmentCount);
+
+		writeInts(out, buf, sectionSegment);
+		writeDoubles(out, buf, sectionPosition);
+		writeDoubles(out, buf, sectionRadius);
+		writeDoubles(out, buf, sectionDistance);
+
+		writeDoubles(out, buf, leafTransformation);
+		flush(out, buf);
+	}
+
+	/**
+	 * @return the number of bytes write() writes
+	 */
+	long byteSize() {
+		long size = 72; // seed, counts and bounds
+		IntBuffer[] ints = {stemLevel, stemParent, stemEnd, stemIndex, stemCloneNumber, stemCloneSectionOffset,
+			stemSectionStart, stemLeafStart, segmentIndex, segmentSubsegmentCount, sectionSegment};
+		DoubleBuffer[] doubles = {stemLength, stemBaseRadius, stemPeakRadius, stemBounds, stemTransformation,
+			segmentTransformation, segmentLength, sectionPosition, sectionRadius, sectionDistance, leafTransformation};
+		for (int i = 0; i < ints.length; i++) {
+			size += 8 + padded(ints[i].capacity() * 4L);
+		}
+		for (int i = 0; i < doubles.length; i++) {
+			size += 8 + doubles[i].capacity() * 8L;
+		}
+		return size;
+	}
+
+	static long padded(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	static void flush(WritableByteChannel out, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			out.write(buf);
+		}
+		buf.clear();
+	}
+
+	static void writeInts(WritableByteChannel out, ByteBuffer buf, IntBuffer a) throws IOException {
+		int n = a.capacity();
+		if (buf.remaining() < 8) {
+			flush(out, buf);
+		}
+		buf.putLong(n);
+		for (int i = 0; i < n; i++) {
+			if (buf.remaining() < 8) {
+				flush(out, buf);
+			}
+			buf.putInt(a.get(i));
+		}
+		if (n % 2 != 0) {
+			buf.putInt(0);
+		}
+	}
+
+	static void writeDoubles(WritableByteChannel out, ByteBuffer buf, DoubleBuffer a) throws IOException {
+		int n = a.capacity();
+		if (buf.remaining() < 8) {
+			flush(out, buf);
+		}
+		buf.putLong(n);
+		for (int i = 0; i < n; i++) {
+			if (buf.remaining() < 8) {
+				flush(out, buf);
+			}
+			buf.putDouble(a.get(i));
+		}
+	}
+
+	static ByteBuffer readArray(ByteBuffer data, int elementSize) throws IOException {
+		long n = data.getLong();
+		if (n < 0 || n * elementSize > data.remaining()) {
+			throw new IOException("Invalid array length " + n);
+		}
+		ByteBuffer array = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		array.limit((int) n * elementSize);
+		data.position(data.position() + (int) padded(n * elementSize));
+		return array;
+	}
+
+	static IntBuffer readInts(ByteBuffer data) throws IOException {
+		return readArray(data, 4).asIntBuffer();
+	}
+
+	static DoubleBuffer readDoubles(ByteBuffer data) throws IOException {
+		return readArray(data, 8).asDoubleBuffer();
+	}
+
+	/**
+	 * Counts the stems, segments, sections and leaves of a generated tree
+	 */
+	private static class Counter extends DefaultTreeTraversal {
+
+		int stems;
+		int segments;
+		int sections;
+		int leaves;
+
+		public boolean enterStem(Stem stem) {
+			StemImpl s = (StemImpl) stem;
+			stems++;
+			segments += s.segments.size();
+			for (int i = 0; i < s.segments.size(); i++) {
+				sections += ((SegmentImpl) s.segments.elementAt(i)).subsegments.size();
+			}
+			if (s.segments.size() > 0) {
+				sections++; // the base section
+			}
+			return true;
+		}
+
+		public boolean visitLeaf(Leaf leaf) {
+			leaves++;
+			return true;
+		}
+	}
+
+	/**
+	 * Copies the stems, segments, sections and leaves of a generated tree into the arrays
+	 */
+	private class Filler extends DefaultTreeTraversal {
+
+		int stems;
+		int segments;
+		int sections;
+		int leaves;
+		int current = -1;
+
+		public boolean enterStem(Stem stem) {
+			StemImpl s = (StemImpl) stem;
+			int i = stems++;
+
+			stemLevel.put(i, s.stemlevel);
+			stemParent.put(i, current);
+			stemIndex.put(i, s.index);
+			stemCloneNumber.put(i, s.isClone()
+				? ((Integer) s.cloneIndex.lastElement()).intValue() : -1);
+			stemCloneSectionOffset.put(i, s.getCloneSectionOffset());
+			stemLength.put(i, s.length);
+			if (s.segments.size() > 0) {
+				stemBaseRadius.put(i, s.getBaseRadius());
+				stemPeakRadius.put(i, s.getPeakRadius());
+			}
+			putVector(stemBounds, i * 6, s.bounds.getMin());
+			putVector(stemBounds, i * 6 + 3, s.bounds.getMax());
+			putTransformation(stemTransformation, i, s.transf);
+
+			stemSectionStart.put(i, sections);
+			for (int g = 0; g < s.segments.size(); g++) {
+				SegmentImpl segment = (SegmentImpl) s.segments.elementAt(g);
+				int k = segments++;
+				putTransformation(segmentTransformation, k, segment.transf);
+				segmentLength.put(k, segment.length);
+				segmentIndex.put(k, segment.index);
+				segmentSubsegmentCount.put(k, segment.subsegments.size());
+
+				if (g == 0) {
+					// the segment itself is the base section of the stem
+					addSection(k, segment.getPosition(), segment.rad1, 0);
+				}
+				for (int j = 0; j < segment.subsegments.size(); j++) {
+					SubsegmentImpl ss = (SubsegmentImpl) segment.subsegments.elementAt(j);
+					addSection(k, ss.pos, ss.rad, ss.dist);
+				}
+			}
+
+			stemLeafStart.put(i, leaves);
+			current = i;
+			return true;
+		}
+
+		private void addSection(int segment, Vector pos, double rad, double dist) {
+			int k = sections++;
+			sectionSegment.put(k, segment);
+			putVector(sectionPosition, k * 3, pos);
+			sectionRadius.put(k, rad);
+			sectionDistance.put(k, dist);
+		}
+
+		public boolean leaveStem(Stem stem) {
+			stemEnd.put(current, stems);
+			current = stemParent.get(current);
+			return true;
+		}
+
+		public boolean visitLeaf(Leaf leaf) {
+			putTransformation(leafTransformation, leaves++, leaf.getTransformation());
+			return true;
+		}
+	}
+
+	private static void putVector(DoubleBuffer a, int i, Vector v) {
+		a.put(i, v.getX());
+		a.put(i + 1, v.getY());
+		a.put(i + 2, v.getZ());
+	}
+
+	private static void putTransformation(DoubleBuffer a, int i, Transformation trf) {
+		Matrix m = trf.matrix();
+		int k = i * TRF;
+		for (int r = 0; r < 3; r++) {
+			for (int c = 0; c < 3; c++) {
+				a.put(k++, m.get(r, c));
+			}
+		}
+		putVector(a, k, trf.vector());
+	}
+
+	private static Vector getVector(DoubleBuffer a, int i) {
+		return new Vector(a.get(i), a.get(i + 1), a.get(i + 2));
+	}
+
+	private static Transformation getTransformation(DoubleBuffer a, int i) {
+		int k = i * TRF;
+		return new Transformation(
+			new Matrix(
+				a.get(k), a.get(k + 1), a.get(k + 2),
+				a.get(k + 3), a.get(k + 4), a.get(k + 5),
+				a.get(k + 6), a.get(k + 7), a.get(k + 8)
+			),
+			getVector(a, k + 9)
+		);
+	}
+
+	public boolean traverseTree(TreeTraversal traversal) {
+		if (traversal.enterTree(this)) {
+			for (int s = 0; s < stemLevel.capacity(); s = stemEnd.get(s)) {
+				if (!traverseStem(s, traversal)) {
+					break;
+				}
+			}
+		}
+
+		return traversal.leaveTree(this);
+	}
+
+	// traverses a stem in the same order as a generated stem: leaves, substems and clones
+	boolean traverseStem(int s, TreeTraversal traversal) {
+		CompactStem stem = new CompactStem(s);
+		if (traversal.enterStem(stem)) {
+			for (int l = stemLeafStart.get(s); l < stemLeafStart.get(s + 1); l++) {
+				if (!traversal.visitLeaf(new CompactLeaf(l))) {
+					break;
+				}
+			}
+
+			int end = stemEnd.get(s);
+			int level = stemLevel.get(s);
+			int c = s + 1;
+			while (c < end && stemLevel.get(c) > level) {
+				if (!traverseStem(c, traversal)) {
+					break;
+				}
+				c = stemEnd.get(c);
+			}
+
+			// skip the rest of the substems, when traversal of one stopped
+			while (c < end && stemLevel.get(c) > level) {
+				c = stemEnd.get(c);
+			}
+
+			while (c < end) {
+				if (!traverseStem(c, traversal)) {
+					break;
+				}
+				c = stemEnd.get(c);
+			}
+		}
+
+		return traversal.leaveStem(stem);
+	}
+
+	/**
+	 * A stem of the compact tree
+	 */
+	private class CompactStem implements Stem {
+
+		private final int s;
+
+		CompactStem(int s) {
+			this.s = s;
+		}
+
+		public Enumeration sections() {
+			return new Enumeration() {
+				int i = stemSectionStart.get(s);
+				final int end = stemSectionStart.get(s + 1);
+
+				public boolean hasMoreElements() {
+					return i < end;
+				}
+
+				public Object nextElement() {
+					if (i >= end) {
+						throw new NoSuchElementException("CompactStem.sections");
+					}
+					return new CompactSection(i++, stemLevel.get(s));
+				}
+			};
+		}
+
+		public int getCloneSectionOffset() {
+			return stemCloneSectionOffset.get(s);
+		}
+
+		public Vector getMinPoint() {
+			return getVector(stemBounds, s * 6);
+		}
+
+		public Vector getMaxPoint() {
+			return getVector(stemBounds, s * 6 + 3);
+		}
+
+		public Box getBounds() {
+			return new Box(getMinPoint(), getMaxPoint());
+		}
+
+		public String getTreePosition() {
+			// the same as StemImpl.getTreePosition, e.g. 0c0.1 for the
+			// second substem of the first clone of the trunk
+			StringBuilder pos = new StringBuilder();
+			int stem = s;
+			while (stem >= 0) {
+				int level = stemLevel.get(stem);
+				StringBuilder clonestr = new StringBuilder();
+				int c = stem;
+				while (stemCloneNumber.get(c) >= 0) {
+					clonestr.insert(0, "c" + stemCloneNumber.get(c));
+					c = stemParent.get(c);
+				}
+				pos.insert(0, "" + stemIndex.get(stem) + clonestr + ".");
+
+				// go to the stem, from which this one grows out
+				while (stem >= 0 && stemLevel.get(stem) >= level) {
+					stem = stemParent.get(stem);
+				}
+			}
+			return pos.substring(0, pos.length() - 1);
+		}
+
+		public double getLength() {
+			return stemLength.get(s);
+		}
+
+		public double getBaseRadius() {
+			return stemBaseRadius.get(s);
+		}
+
+		public double getPeakRadius() {
+			return stemPeakRadius.get(s);
+		}
+
+		public int getLevel() {
+			return stemLevel.get(s);
+		}
+
+		public boolean traverseTree(TreeTraversal traversal) {
+			return traverseStem(s, traversal);
+		}
+
+		public long getLeafCount() {
+			return stemLeafStart.get(s + 1) - stemLeafStart.get(s);
+		}
+
+		public boolean isClone() {
+			return stemCloneNumber.get(s) >= 0;
+		}
+
+		public boolean isSmooth() {
+			return stemLevel.get(s) <= params.smooth_mesh_level;
+		}
+
+		public Transformation getTransformation() {
+			return CompactTree.getTransformation(stemTransformation, s);
+		}
+	}
+
+	/**
+	 * A section of a stem of the compact tree
+	 */
+	private class CompactSection implements StemSection {
+
+		private final int i;
+		private final int level;
+
+		CompactSection(int i, int level) {
+			this.i = i;
+			this.level = level;
+		}
+
+		public Vector getPosition() {
+			return getVector(sectionPosition, i * 3);
+		}
+
+		public double getRadius() {
+			return sectionRadius.get(i);
+		}
+
+		public double getDistance() {
+			int g = sectionSegment.get(i);
+			return segmentIndex.get(g) * segmentLength.get(g) + sectionDistance.get(i);
+		}
+
+		public Transformation getTransformation() {
+			// the segment's transformation moved to the section,
+			// calculated like in SubsegmentImpl
+			Transformation trf = CompactTree.getTransformation(segmentTransformation, sectionSegment.get(i));
+			return trf.translate(getPosition().sub(trf.getT()));
+		}
+
+		public Vector getZ() {
+			int k = sectionSegment.get(i) * TRF;
+			return new Vector(segmentTransformation.get(k + 2), segmentTransformation.get(k + 5),
+				segmentTransformation.get(k + 8));
+		}
+
+		public Vector[] getSectionPoints() {
+			return SegmentImpl.sectionPoints(params, params.getLevelParams(level),
+				getTransformation(), sectionRadius.get(i), segmentSubsegmentCount.get(sectionSegment.get(i)));
+		}
+	}
+
+	/**
+	 * A leaf of the compact tree
+	 */
+	private class CompactLeaf implements Leaf {
+
+		private final int l;
+
+		CompactLeaf(int l) {
+			this.l = l;
+		}
+
+		public boolean traverseTree(TreeTraversal traversal) {
+			return traversal.visitLeaf(this);
+		}
+
+		public Transformation getTransformation() {
+			return CompactTree.getTransformation(leafTransformation, l);
+		}
+	}
+
+	public synchronized TreeBVH getBVH() {
+		if (bvh == null) {
+			bvh = TreeBVH.build(this);
+		}
+		return bvh;
+	}
+
+	public long getStemCount() {
+		return stemCount;
+	}
+
+	public long getLeafCount() {
+		return leafCount;
+	}
+
+	public Vector getMaxPoint() {
+		return maxPoint;
+	}
+
+	public Vector getMinPoint() {
+		return minPoint;
+	}
+
+	public int getSeed() {
+		return seed;
+	}
+
+	public double getHeight() {
+		return maxPoint.getZ();
+	}
+
+	public double getWidth() {
+		return Math.sqrt(Math.max(
+			minPoint.getX() * minPoint.getX()
+			+ minPoint.getY() * minPoint.getY(),
+			maxPoint.getX() * maxPoint.getX()
+			+ maxPoint.getY() * maxPoint.getY()
+		));
+	}
+
+	public void paramsToXML(PrintWriter out) {
+		params.toXML(out);
+	}
+
+	public String getSpecies() {
+		return params.getSpecies();
+	}
+
+	public double getScale() {
+		return params.Scale;
+	}
+
+	public int getLevels() {
+		return params.Levels;
+	}
+
+	public String getLeafShape() {
+		return params.LeafShape;
+	}
+
+	public double getLeafWidth() {
+		return params.LeafScale * params.LeafScaleX / Math.sqrt(params.LeafQuality);
+	}
+
+	public double getLeafLength() {
+		return params.LeafScale / Math.sqrt(params.LeafQuality);
+	}
+
+	public double getLeafStemLength() {
+		return params.LeafStemLen;
+	}
+
+	public String getVertexInfo(int level) {
+		return "vertices/section: "
+			   + params.getLevelParams(level).mesh_points + ", smooth: "
+			   + (params.smooth_mesh_level >= level ? "yes" : "no");
+	}
+}
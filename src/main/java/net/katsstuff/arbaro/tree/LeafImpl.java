@@ -80,7 +80,8 @@ class LeafImpl implements Leaf {
 
 		bend_angle = par.LeafBend * fbend;
 
-		transf = transf.rotx(bend_angle);
+		// rotaxis() made a new matrix, so it can be changed in place
+		transf.rotxLocal(bend_angle);
 
 //		this is from the paper, but is equivalent with
 //      local x-rotation (upper code line)
@@ -25,6 +25,7 @@ package net.katsstuff.arbaro.tree;
 import net.katsstuff.arbaro.export.Console;
 import net.katsstuff.arbaro.params.LevelParams;
 import net.katsstuff.arbaro.params.Params;
+import net.katsstuff.arbaro.transformation.Matrix;
 import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 
@@ -93,8 +94,15 @@ class SegmentImpl implements StemSection {
 
 
 	void minMaxTest() {
-		stem.minMaxTest(getUpperPosition());
-		stem.minMaxTest(getLowerPosition());
+		// extend the stem's box by the lower and upper position
+		Vector t = transf.getT();
+		Matrix m = transf.matrix();
+		stem.bounds.extendBy(t);
+		stem.bounds.extendBy(
+			t.getX() + m.get(Transformation.X, Transformation.Z) * length,
+			t.getY() + m.get(Transformation.Y, Transformation.Z) * length,
+			t.getZ() + m.get(Transformation.Z, Transformation.Z) * length
+		);
 	}
 
 	/**
@@ -312,10 +320,24 @@ class SegmentImpl implements StemSection {
 
 
 	public Vector[] getSectionPoints() {
+		return sectionPoints(par, lpar, getTransformation(), rad1, getSubsegmentCount());
+	}
+
+	/**
+	 * Calculates the vertex points of a section, used for segments and subsegments
+	 *
+	 * @param par the tree parameters
+	 * @param lpar the parameters of the stem level
+	 * @param trf the transformation of the section
+	 * @param rad the radius of the section
+	 * @param subsegmentCount the number of subsegments of the segment
+	 * @return the section points
+	 */
+	static Vector[] sectionPoints(Params par, LevelParams lpar, Transformation trf,
+		double rad, int subsegmentCount
+	) {
 		int pt_cnt = lpar.mesh_points;
 		Vector[] points;
-		Transformation trf = getTransformation(); //segment.getTransformation().translate(pos.sub(segment.getLowerPosition()));
-		double rad = this.rad1;
 
 		// if radius = 0 create only one point
 		if (rad < 0.000001) {
@@ -340,10 +362,10 @@ class SegmentImpl implements StemSection {
 				if (lpar.level == 0 && (par.Lobes != 0 || par._0ScaleV != 0)) {
 					double rad1 = rad * (1 +
 										 par.random.uniform(-par._0ScaleV, par._0ScaleV) /
-										 getSubsegmentCount());
-					pt = pt.mul(rad1 * (1.0 + par.LobeDepth * Math.cos(par.Lobes * angle * Math.PI / 180.0)));
+										 subsegmentCount);
+					pt.mulLocal(rad1 * (1.0 + par.LobeDepth * Math.cos(par.Lobes * angle * Math.PI / 180.0)));
 				} else {
-					pt = pt.mul(rad); // faster - no radius calculations
+					pt.mulLocal(rad); // faster - no radius calculations
 				}
 				// apply transformation to it
 				// (for the first trunk segment transformation shouldn't be applied to
@@ -352,8 +374,7 @@ class SegmentImpl implements StemSection {
 				// FIXME: for helical stems may be/may be not a random rotation 
 				// should applied additionally?
 
-				pt = trf.apply(pt);
-				points[i] = pt;
+				points[i] = trf.apply(pt, pt);
 			}
 		}
 
@@ -172,6 +172,52 @@ public class ShieldedTreeGenerator implements TreeGenerator {
 		}
 	}
 
+	/**
+	 * See TreeGenerator interface
+	 */
+	public void setParallelism(int parallelism) {
+		try {
+			treeGenerator.setParallelism(parallelism);
+		} catch (Exception e) {
+			showException(e);
+		}
+	}
+
+	/**
+	 * See TreeGenerator interface
+	 */
+	public int getParallelism() {
+		try {
+			return treeGenerator.getParallelism();
+		} catch (Exception e) {
+			showException(e);
+			return 1;
+		}
+	}
+
+	/**
+	 * See TreeGenerator interface
+	 */
+	public void setCache(TreeCache cache) {
+		try {
+			treeGenerator.setCache(cache);
+		} catch (Exception e) {
+			showException(e);
+		}
+	}
+
+	/**
+	 * See TreeGenerator interface
+	 */
+	public TreeCache getCache() {
+		try {
+			return treeGenerator.getCache();
+		} catch (Exception e) {
+			showException(e);
+			return null;
+		}
+	}
+
 	/**
 	 * See TreeGenerator interface
 	 */
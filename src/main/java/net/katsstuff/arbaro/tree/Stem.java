@@ -1,5 +1,6 @@
 package net.katsstuff.arbaro.tree;
 
+import net.katsstuff.arbaro.transformation.Box;
 import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 
@@ -31,6 +32,13 @@ public interface Stem {
 	 */
 	Vector getMaxPoint();
 
+	/**
+	 * The box containing the stem with all its substems and clones, e.g. for culling
+	 *
+	 * @return the bounding box of the stem
+	 */
+	Box getBounds();
+
 	/**
 	 * The position of the stem in the tree. 0.1c2.3 means: fourth twig of the third clone of the second branch growing
 	 * out of the first (only?) trunk
@@ -27,6 +27,9 @@ import java.util.NoSuchElementException;
 import net.katsstuff.arbaro.export.Console;
 import net.katsstuff.arbaro.params.LevelParams;
 import net.katsstuff.arbaro.params.Params;
+import net.katsstuff.arbaro.params.Random;
+import net.katsstuff.arbaro.params.SplitMix64Random;
+import net.katsstuff.arbaro.transformation.Box;
 import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 
@@ -68,21 +71,26 @@ class StemImpl implements Stem {
 		return transf;
 	}
 
-	Vector minPoint;
-	Vector maxPoint;
+	// the box containing the own segments, after mergeBounds()
+	// the substems and clones too
+	Box bounds = new Box();
 
 	/* (non-Javadoc)
 	 * @see net.katsstuff.arbaro.tree.TraversableStem#getMinPoint()
 	 */
 	public Vector getMinPoint() {
-		return minPoint;
+		return bounds.getMin();
 	}
 
 	/* (non-Javadoc)
 	 * @see net.katsstuff.arbaro.tree.TraversableStem#getMaxPoint()
 	 */
 	public Vector getMaxPoint() {
-		return maxPoint;
+		return bounds.getMax();
+	}
+
+	public Box getBounds() {
+		return bounds;
 	}
 
 	// stems shouldn't be shorter than 1/2 mm,
@@ -101,6 +109,7 @@ class StemImpl implements Stem {
 	java.util.Vector clones;      // the stem clones (for splitting)
 	java.util.Vector substems;    // the substems
 	java.util.Vector leaves;     // the leaves
+	java.util.Vector leafGroups; // what is needed to make the leaves again, for Params.lazyLeaves
 
 	double length;
 
@@ -120,10 +129,56 @@ class StemImpl implements Stem {
 	double splitCorrection;
 
 	boolean pruneTest; // flag for pruning cycles
+	PruneTrace pruneTrace; // records the segment ends while pruning, instead of testing them
+	boolean geometryDeferred; // subsegments and leaf orientations are made later by makeGeometry()
 
 	int index; // substem number
 	java.util.Vector cloneIndex; // clone number (Integers)
 
+	// own random generator and error values of the stem, used instead
+	// of the ones of the level, when Params.positionalRandom is set
+	Random random;
+	double splitErrorValue;
+	double substemErrorValue;
+	double leavesErrorValue;
+	private long randstate;
+	private double spliterrval;
+	private int substemIndex; // substems created, including the dropped ones
+
+	java.util.Vector pendingSubstems; // substems to be made by a StemTask
+
+	/**
+	 * The leaves of one segment for Params.lazyLeaves: the values, from which they are made, and the states of the
+	 * random generators and the rotation angle before making them
+	 */
+	static final class LeafGroup {
+		final SegmentImpl segment;
+		final int count;
+		final double offs;
+		final double rotangle;
+		final long randomState; // of the stem's generator or the one of its level
+		final long randomState1; // of the generator of the next level
+
+		LeafGroup(SegmentImpl segment, int count, double offs, double rotangle,
+				  long randomState, long randomState1) {
+			this.segment = segment;
+			this.count = count;
+			this.offs = offs;
+			this.rotangle = rotangle;
+			this.randomState = randomState;
+			this.randomState1 = randomState1;
+		}
+	}
+
+	/**
+	 * Own random generators and rotation angle for making leaves again, so the stem isn't changed
+	 */
+	private static final class LeafSource {
+		Random random;
+		Random random1;
+		double rotangle;
+	}
+
 	private static class SectionsEnumerator implements Enumeration {
 
 		private final Enumeration segments;
@@ -179,6 +234,13 @@ class StemImpl implements Stem {
 	 * Returns an enumeration of the leaves of the stem, but not the leaves of it's substems.
 	 */
 	public Enumeration stemLeaves() {
+		if (leafGroups != null) {
+			java.util.Vector all = new java.util.Vector();
+			for (int i = 0; i < leafGroups.size(); i++) {
+				all.addAll(makeLeaves((LeafGroup) leafGroups.elementAt(i)));
+			}
+			return all.elements();
+		}
 		return leaves.elements();
 	}
 
@@ -230,7 +292,11 @@ class StemImpl implements Stem {
 		}
 
 		if (stemlevel == par.Levels - 1 && par.Leaves != 0) {
-			leaves = new java.util.Vector(Math.abs(par.Leaves));
+			if (par.lazyLeaves) {
+				leafGroups = new java.util.Vector();
+			} else {
+				leaves = new java.util.Vector(Math.abs(par.Leaves));
+			}
 		}
 
 		// inialize other variables
@@ -241,10 +307,6 @@ class StemImpl implements Stem {
 
 		cloneIndex = new java.util.Vector();
 		pruneTest = false; // flag used for pruning
-
-		//...
-		maxPoint = new Vector(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
-		minPoint = new Vector(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
 	}
 
 	/**
@@ -266,7 +328,9 @@ class StemImpl implements Stem {
 
 	public void DBG(String dbgstr) {
 		// print debug string to stderr if debugging is enabled
-		Console.debugOutput(getTreePosition() + ":" + dbgstr);
+		if (Console.debug()) {
+			Console.debugOutput(getTreePosition() + ":" + dbgstr);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -338,6 +402,7 @@ class StemImpl implements Stem {
 		clone.baseRadius = baseRadius;
 		clone.splitCorrection = splitCorrection;
 		clone.pruneTest = pruneTest;
+		clone.pruneTrace = pruneTrace;
 		clone.index = index;
 
 		//DBG("Stem.clone(): clone_index "+clone_index);
@@ -345,6 +410,10 @@ class StemImpl implements Stem {
 
 		//DBG("Stem.clone(): level: "+stemlevel+" clones "+clones);
 		clone.cloneIndex.addElement(clones.size());
+		clone.initRandom();
+		clone.splitErrorValue = splitErrorValue;
+		clone.substemErrorValue = substemErrorValue;
+		clone.leavesErrorValue = leavesErrorValue;
 		if (!pruneTest) {
 			clone.lengthChildMax = lengthChildMax;
 			//clone.substem_cnt = substem_cnt;
@@ -366,6 +435,7 @@ class StemImpl implements Stem {
 	 */
 
 	public boolean make() {
+		initRandom();
 
 		// makes the stem with all its segments, substems, clones and leaves
 		segmentCount = lpar.nCurveRes;
@@ -374,7 +444,7 @@ class StemImpl implements Stem {
 		baseRadius = stemBaseRadius();
 		if (stemlevel == 0) {
 			double baseWidth = Math.max(baseRadius, stemRadius(0));
-			minMaxTest(new Vector(baseWidth, baseWidth, 0));
+			bounds.extendBy(baseWidth, baseWidth, 0);
 		}
 
 		if (Console.debug()) {
@@ -383,7 +453,11 @@ class StemImpl implements Stem {
 
 		// FIXME: should pruning occur for the trunk too?
 		if (stemlevel > 0 && par.PruneRatio > 0) {
-			pruning();
+			if (tree.pruneByRegeneration) {
+				pruningByRegeneration();
+			} else {
+				pruning();
+			}
 		}
 
 		// FIXME: if length<=MIN_STEM_LEN the stem object persists here but without any segments
@@ -403,14 +477,183 @@ class StemImpl implements Stem {
 	}
 
 
+	/**
+	 * Creates the own random generator of the stem, if every stem should have one. It is derived from the seed of the
+	 * tree and the position of the stem, so the stem doesn't depend on the stems made before.
+	 */
+
+	void initRandom() {
+		if (par.positionalRandom) {
+			random = SplitMix64Random.forKey(tree.seed, getTreePosition());
+
+			// independent stems can be made in parallel
+			if (tree.getParallelism() > 1 && stemlevel <= StemTask.FORK_LEVEL) {
+				pendingSubstems = new java.util.Vector();
+			}
+		}
+	}
+
+	/**
+	 * Returns a random variation value from (-variation,+variation). It comes from the random generator of the stem,
+	 * if it has one, otherwise from the random generator of the given level.
+	 *
+	 * @param lp the level params
+	 * @param variation the maximum variation
+	 * @return the random variation value
+	 */
+
+	double var(LevelParams lp, double variation) {
+		if (random != null) {
+			return random.uniform(-variation, variation);
+		}
+		return lp.var(variation);
+	}
+
+	// the same, but from the given generator, if it isn't null
+	double var(LevelParams lp, double variation, Random rnd) {
+		if (rnd != null) {
+			return rnd.uniform(-variation, variation);
+		}
+		return var(lp, variation);
+	}
+
+	void saveRandomState() {
+		if (random != null) {
+			randstate = random.getState();
+			spliterrval = splitErrorValue;
+		} else {
+			lpar.saveState();
+		}
+	}
+
+	void restoreRandomState() {
+		if (random != null) {
+			random.setState(randstate);
+			splitErrorValue = spliterrval;
+		} else {
+			lpar.restoreState();
+		}
+	}
+
+
 	/**
 	 * Apply pruning to the stem. If it grows out of the pruning envelope, it is shortened.
+	 * <p>
+	 * The stem and its clones are made only once with their full length. The directions of the segments don't depend
+	 * on the stem length, so the segment ends of a shorter stem are the recorded ones moved towards the stem base.
+	 * Every shorter length is tested with these points instead of making the stem again.
 	 */
 
 	void pruning() {
 
 		// save random state, split and len values
-		lpar.saveState();
+		saveRandomState();
+		double splitcorr = splitCorrection;
+		double origlen = length;
+
+		// start pruning, record the segment ends of the stem and its clones
+		pruneTest = true;
+		pruneTrace = new PruneTrace(transf.getT());
+		makeSegments(0, segmentCount);
+		PruneTrace trace = pruneTrace;
+		pruneTrace = null;
+
+		// test length
+		int segm = trace.outsideSegment(1.0);
+
+		while (segm >= 0 && length > 0.001 * par.scale_tree) {
+
+			// get new length
+			double minlen = length / 2; // shorten max. half of length
+			double maxlen = length - origlen / 15; // shorten min of 1/15 of orig. len
+			length = Math.min(Math.max(segmentLength * segm, minlen), maxlen);
+
+			// calc new values dependent from length
+			segmentLength = length / lpar.nCurveRes;
+			baseRadius = stemBaseRadius();
+
+			if (length > MIN_STEM_LEN && baseRadius < MIN_STEM_RADIUS) {
+				Console.errorOutput("WARNING: stem radius ("
+									+ baseRadius
+									+ ") too small for stem "
+									+ getTreePosition());
+			}
+
+			// test once more
+			if (length > MIN_STEM_LEN) {
+				segm = trace.outsideSegment(length / origlen);
+			}
+		}
+		// this length fits the envelope,
+		// diminish the effect corresp. to PruneRatio
+		length = origlen - (origlen - length) * par.PruneRatio;
+
+		// restore random state and split values
+		restoreRandomState();
+		splitCorrection = splitcorr;
+		// delete segments and clones
+		if (clones != null) {
+			clones.clear();
+		}
+		segments.clear();
+		pruneTest = false;
+	}
+
+	/**
+	 * The segment ends of a stem and its clones, in the order they are tested for pruning
+	 */
+
+	class PruneTrace {
+
+		private final Vector base;
+		private double[] points = new double[3 * 16]; // relative to the base
+		private int[] segments = new int[16];
+		private int size = 0;
+
+		PruneTrace(Vector base) {
+			this.base = base;
+		}
+
+		void add(Vector pt, int segment) {
+			if (size == segments.length) {
+				points = java.util.Arrays.copyOf(points, points.length * 2);
+				segments = java.util.Arrays.copyOf(segments, segments.length * 2);
+			}
+			points[size * 3] = pt.getX() - base.getX();
+			points[size * 3 + 1] = pt.getY() - base.getY();
+			points[size * 3 + 2] = pt.getZ() - base.getZ();
+			segments[size++] = segment;
+		}
+
+		/**
+		 * Tests the points of the stem scaled to another length
+		 *
+		 * @param scale the tested length divided by the recorded length
+		 * @return the first segment outside the pruning envelope, -1 if the stem is completely inside
+		 */
+		int outsideSegment(double scale) {
+			Vector pt = new Vector();
+			for (int i = 0; i < size; i++) {
+				pt.set(base.getX() + points[i * 3] * scale,
+					base.getY() + points[i * 3 + 1] * scale,
+					base.getZ() + points[i * 3 + 2] * scale);
+				if (!isInsideEnvelope(pt)) {
+					return segments[i];
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Apply pruning to the stem like pruning(), but make the stem again for every tested length. This was the only
+	 * pruning method before, it is kept to check the results of pruning().
+	 */
+
+	void pruningByRegeneration() {
+
+		// save random state, split and len values
+		saveRandomState();
 		double splitcorr = splitCorrection;
 		double origlen = length;
 		//double seglen = segmentLength;
@@ -424,7 +667,7 @@ class StemImpl implements Stem {
 		while (segm >= 0 && length > 0.001 * par.scale_tree) {
 
 			// restore random state and split values
-			lpar.restoreState();
+			restoreRandomState();
 			splitCorrection = splitcorr;
 
 			// delete segments and clones
@@ -459,7 +702,7 @@ class StemImpl implements Stem {
 		length = origlen - (origlen - length) * par.PruneRatio;
 
 		// restore random state and split values
-		lpar.restoreState();
+		restoreRandomState();
 		splitCorrection = splitcorr;
 		// delete segments and clones
 		if (clones != null) {
@@ -478,7 +721,7 @@ class StemImpl implements Stem {
 
 	double stemLength() {
 		if (stemlevel == 0) { // trunk
-			return (lpar.nLength + lpar.var(lpar.nLengthV)) * par.scale_tree;
+			return (lpar.nLength + var(lpar, lpar.nLengthV)) * par.scale_tree;
 		} else if (stemlevel == 1) {
 			double parlen = parent.length;
 			double baselen = par.BaseSize * par.scale_tree;
@@ -521,6 +764,10 @@ class StemImpl implements Stem {
 
 		Transformation trf = transf;
 
+		// when the tree is made in parallel the subsegments are made later,
+		// except for helical stems, which need them to place their substems
+		geometryDeferred = !pruneTest && tree.getParallelism() > 1 && lpar.nCurveV >= 0;
+
 		for (int s = start_seg; s < end_seg; s++) {
 			if (stemlevel == 0) {
 				tree.updateGenProgress();
@@ -544,7 +791,9 @@ class StemImpl implements Stem {
 
 			// create new segment
 			SegmentImpl segment = new SegmentImpl(this, s, trf, rad1, rad2);
-			segment.make();
+			if (!geometryDeferred && pruneTrace == null) {
+				segment.make();
+			}
 			segments.addElement(segment);
 
 			// create substems
@@ -564,7 +813,9 @@ class StemImpl implements Stem {
 			//self.DBG("pos: %s\n"%(transf.vector))
 
 			// test if too long
-			if (pruneTest && !isInsideEnvelope(trf.getT())) {
+			if (pruneTrace != null) {
+				pruneTrace.add(trf.getT(), s);
+			} else if (pruneTest && !isInsideEnvelope(trf.getT())) {
 				// DBG("PRUNE: not inside - return %d\n"%(s))
 				return s;
 			}
@@ -585,6 +836,28 @@ class StemImpl implements Stem {
 	}
 
 
+	/**
+	 * Makes the subsegments of all segments and orients the leaves, if this was deferred while making the stem. This
+	 * doesn't use random values, so it can be done for all stems in any order once the tree structure is made.
+	 */
+
+	void makeGeometry() {
+		if (!geometryDeferred) {
+			return;
+		}
+
+		for (int i = 0; i < segments.size(); i++) {
+			((SegmentImpl) segments.elementAt(i)).make();
+		}
+		if (leaves != null) {
+			for (int i = 0; i < leaves.size(); i++) {
+				((LeafImpl) leaves.elementAt(i)).make(par);
+			}
+		}
+		geometryDeferred = false;
+	}
+
+
 	/**
 	 * Tests if a point is inside the pruning envelope
 	 *
@@ -653,13 +926,15 @@ class StemImpl implements Stem {
 			//						/ lpar.nCurveRes;
 			//    		}	else {
 			// full random rotation
-			delta = lpar.var(lpar.nCurveV) / lpar.nCurveRes;
+			delta = var(lpar, lpar.nCurveV) / lpar.nCurveRes;
 			//    		}
 			// self.DBG("curvV (delta): %s\n" % str(delta))
-			double rho = 180 + lpar.var(180);
+			double rho = 180 + var(lpar, 180);
 			trf = trf.rotaxisz(delta, rho);
 		}
-		TRF("Stem.new_direction() after curving", trf);
+		if (Console.debug()) {
+			TRF("Stem.new_direction() after curving", trf);
+		}
 
 		// attraction up/down
 		if (par.AttractionUp != 0 && stemlevel >= 2) {
@@ -762,7 +1037,9 @@ class StemImpl implements Stem {
 			if (par.Flare != 0) {
 				double y = Math.max(0, 1 - 8 * Z);
 				double flare = 1 + par.Flare * (Math.pow(100, y) - 1) / 100.0;
-				DBG("Stem.stem_radius(): Flare: " + flare + " h: " + h + " Z: " + Z);
+				if (Console.debug()) {
+					DBG("Stem.stem_radius(): Flare: " + flare + " h: " + h + " Z: " + Z);
+				}
 				radius = radius * flare;
 			}
 			// add lobes - this is done in mesh creation not here at the moment
@@ -776,7 +1053,9 @@ class StemImpl implements Stem {
 			radius = radius * par._0Scale;
 		}
 
-		DBG("Stem.stem_radius(" + h + ") = " + radius);
+		if (Console.debug()) {
+			DBG("Stem.stem_radius(" + h + ") = " + radius);
+		}
 
 		return radius;
 	}
@@ -791,7 +1070,7 @@ class StemImpl implements Stem {
 		LevelParams lpar_1 = par.getLevelParams(stemlevel + 1);
 
 		// maximum length of a substem
-		lengthChildMax = lpar_1.nLength + lpar_1.var(lpar_1.nLengthV);
+		lengthChildMax = lpar_1.nLength + var(lpar_1, lpar_1.nLengthV);
 
 		// maximum number of substems
 		double stems_max = lpar_1.nBranches;
@@ -813,8 +1092,10 @@ class StemImpl implements Stem {
 			substem_cnt = (int) (stems_max *
 								 (0.2 + 0.8 * length / parent.length / parent.lengthChildMax));
 			substemsPerSegment = substem_cnt / (float) segmentCount;
-			DBG("Stem.prepare_substem_params(): substem_cnt: " + substem_cnt
-				+ " substems_per_segment: " + substemsPerSegment);
+			if (Console.debug()) {
+				DBG("Stem.prepare_substem_params(): substem_cnt: " + substem_cnt
+					+ " substems_per_segment: " + substemsPerSegment);
+			}
 		} else {
 			substem_cnt = (int) (stems_max * (1.0 - 0.5 * offset / parent.length));
 			substemsPerSegment = substem_cnt / (float) segmentCount;
@@ -890,39 +1171,61 @@ class StemImpl implements Stem {
 		}
 
 		// how many substems in this segment
-		int substems_eff = (int) (subst_per_segm + lpar.substemErrorValue + 0.5);
+		double errorValue = (random != null) ? substemErrorValue : lpar.substemErrorValue;
+		int substems_eff = (int) (subst_per_segm + errorValue + 0.5);
 
 		// adapt error value
-		lpar.substemErrorValue -= (substems_eff - subst_per_segm);
+		errorValue -= (substems_eff - subst_per_segm);
+		if (random != null) {
+			substemErrorValue = errorValue;
+		} else {
+			lpar.substemErrorValue = errorValue;
+		}
 
 		if (substems_eff <= 0) {
 			return;
 		}
 
-		DBG("Stem.make_substems(): substems_eff: " + substems_eff);
+		if (Console.debug()) {
+			DBG("Stem.make_substems(): substems_eff: " + substems_eff);
+		}
 
 		// what distance between the segements substems
 		double dist = (1.0 - offs) / substems_eff * lpar_1.nBranchDist;
 		double distv = dist * 0.25; // lpar_1.nBranchDistV/2;
 
-		DBG("Stem.make_substems(): offs: " + offs + " dist: " + dist + " distv: " + distv);
+		if (Console.debug()) {
+			DBG("Stem.make_substems(): offs: " + offs + " dist: " + dist + " distv: " + distv);
+		}
 
 		for (int s = 0; s < substems_eff; s++) {
 			// where on the segment add the substem
-			double where = offs + dist / 2 + s * dist + lpar_1.var(distv);
+			double where = offs + dist / 2 + s * dist + var(lpar_1, distv);
 
 			//offset from stembase
 			double offset = (segment.index + where) * segmentLength;
 
-			DBG("Stem.make_substems(): offset: " + offset + " segminx: " + segment.index
-				+ " where: " + where + " seglen: " + segmentLength);
+			if (Console.debug()) {
+				DBG("Stem.make_substems(): offset: " + offset + " segminx: " + segment.index
+					+ " where: " + where + " seglen: " + segmentLength);
+			}
 
 			Transformation trf = substemDirection(segment.transf, offset);
 			trf = segment.substemPosition(trf, where);
 
 			// create new substem
 			StemImpl substem = new StemImpl(tree, this, stemlevel + 1, trf, offset);
-			substem.index = substems.size();
+			if (random != null) {
+				// the position of the substem keys its random generator,
+				// so dropped substems don't pass their index on
+				substem.index = substemIndex++;
+			} else {
+				substem.index = substems.size();
+			}
+			if (pendingSubstems != null) {
+				pendingSubstems.addElement(substem);
+				continue;
+			}
 			DBG("Stem.make_substems(): make new substem");
 			if (substem.make()) {
 				substems.addElement(substem);
@@ -943,26 +1246,48 @@ class StemImpl implements Stem {
 	 */
 
 	Transformation substemDirection(Transformation trf, double offset) {
+		return substemDirection(trf, offset, null);
+	}
+
+	/**
+	 * Calcs the direction of a substem or leaf from the parameters
+	 *
+	 * @param trf The transformation of the current stem segment
+	 * @param offset The offset of the substem from the base of the currents stem
+	 * @param src The random generators and rotation angle to use instead of the stem's, or null
+	 * @return The direction of the substem
+	 */
+
+	Transformation substemDirection(Transformation trf, double offset, LeafSource src) {
 		LevelParams lpar_1 = par.getLevelParams(stemlevel + 1);
 		//lev = min(level+1,3);
+		Random rnd1 = src != null ? src.random1 : null;
+		double prevRotangle = src != null ? src.rotangle : substemRotangle;
 
 		// get rotation angle
 		double rotangle;
+		double nextRotangle;
 		if (lpar_1.nRotate >= 0) { // rotating substems
-			substemRotangle = (substemRotangle + lpar_1.nRotate + lpar_1.var(lpar_1.nRotateV) + 360) % 360;
-			rotangle = substemRotangle;
+			nextRotangle = (prevRotangle + lpar_1.nRotate + var(lpar_1, lpar_1.nRotateV, rnd1) + 360) % 360;
+			rotangle = nextRotangle;
 		} else { // alternating substems
-			if (Math.abs(substemRotangle) != 1) {
-				substemRotangle = 1;
+			nextRotangle = prevRotangle;
+			if (Math.abs(nextRotangle) != 1) {
+				nextRotangle = 1;
 			}
-			substemRotangle = -substemRotangle;
-			rotangle = substemRotangle * (180 + lpar_1.nRotate + lpar_1.var(lpar_1.nRotateV));
+			nextRotangle = -nextRotangle;
+			rotangle = nextRotangle * (180 + lpar_1.nRotate + var(lpar_1, lpar_1.nRotateV, rnd1));
+		}
+		if (src != null) {
+			src.rotangle = nextRotangle;
+		} else {
+			substemRotangle = nextRotangle;
 		}
 
 		// get downangle
 		double downangle;
 		if (lpar_1.nDownAngleV >= 0) {
-			downangle = lpar_1.nDownAngle + lpar_1.var(lpar_1.nDownAngleV);
+			downangle = lpar_1.nDownAngle + var(lpar_1, lpar_1.nDownAngleV, rnd1);
 		} else {
 			double len = (stemlevel == 0) ? length * (1 - par.BaseSize) : length;
 			downangle = lpar_1.nDownAngle +
@@ -985,10 +1310,16 @@ class StemImpl implements Stem {
 
 		if (par.Leaves > 0) { // ### NORMAL MODE, leaves along the stem
 			// how many leaves in this segment
-			double leaves_eff = (int) (leavesPerSegment + par.leavesErrorValue + 0.5);
+			double errorValue = (random != null) ? leavesErrorValue : par.leavesErrorValue;
+			double leaves_eff = (int) (leavesPerSegment + errorValue + 0.5);
 
 			// adapt error value
-			par.leavesErrorValue -= (leaves_eff - leavesPerSegment);
+			errorValue -= (leaves_eff - leavesPerSegment);
+			if (random != null) {
+				leavesErrorValue = errorValue;
+			} else {
+				par.leavesErrorValue = errorValue;
+			}
 
 			if (leaves_eff <= 0) {
 				return;
@@ -1001,34 +1332,97 @@ class StemImpl implements Stem {
 				offs = 0;
 			}
 
+			makeLeaves(segment, (int) leaves_eff, offs);
+		}
+
+		// ##### FAN MOD, leaves placed in a fan at stem end
+		else if (par.Leaves < 0 && segment.index == segmentCount - 1) {
+			makeLeaves(segment, (int) (leavesPerBranch() + 0.5), 0);
+		}
+	}
+
+	/**
+	 * Creates the leaves of a segment, or with lazy leaves only remembers how to make them
+	 */
+
+	private void makeLeaves(SegmentImpl segment, int count, double offs) {
+		if (leafGroups == null) {
+			makeLeaves(segment, count, offs, null, leaves);
+			return;
+		}
+
+		leafGroups.addElement(new LeafGroup(segment, count, offs, substemRotangle,
+			random != null ? random.getRawState() : lpar.random.getRawState(),
+			random != null ? 0 : par.getLevelParams(stemlevel + 1).random.getRawState()));
+		// the random values are used up like when keeping the leaves,
+		// so the following stems are the same
+		makeLeaves(segment, count, offs, null, null);
+	}
+
+	/**
+	 * Makes the leaves of a leaf group again
+	 *
+	 * @return the leaves
+	 */
+
+	java.util.Vector makeLeaves(LeafGroup group) {
+		LeafSource src = new LeafSource();
+		if (random != null) {
+			src.random = random.atRawState(group.randomState);
+			src.random1 = src.random;
+		} else {
+			// the last level uses the same generator for the next level
+			Random random1 = par.getLevelParams(stemlevel + 1).random;
+			src.random = lpar.random.atRawState(group.randomState);
+			src.random1 = random1 == lpar.random ? src.random : random1.atRawState(group.randomState1);
+		}
+		src.rotangle = group.rotangle;
+
+		java.util.Vector result = new java.util.Vector(group.count);
+		makeLeaves(group.segment, group.count, group.offs, src, result);
+		return result;
+	}
+
+	/**
+	 * Makes the leaves of a segment
+	 *
+	 * @param segment the segment
+	 * @param count the number of leaves
+	 * @param offs where the leaves start on the segment, for leaves along the stem
+	 * @param src the random generators and rotation angle to use instead of the stem's, or null
+	 * @param result the leaves are added to it, null if they are only made for using up the random values
+	 */
+
+	private void makeLeaves(SegmentImpl segment, int count, double offs, LeafSource src,
+							java.util.Vector result) {
+		if (par.Leaves > 0) { // ### NORMAL MODE, leaves along the stem
 			// what distance between the leaves
-			double dist = (1.0 - offs) / leaves_eff;
+			double dist = (1.0 - offs) / count;
 
-			for (int s = 0; s < leaves_eff; s++) {
+			for (int s = 0; s < count; s++) {
 				// where on the segment add the leaf
 
 				// FIXME: may be use the same distribution method (BranchDist) as for substems?
-				double where = offs + dist / 2 + s * dist + lpar.var(dist / 2);
+				double where = offs + dist / 2 + s * dist + var(lpar, dist / 2, src != null ? src.random : null);
 
 				// offset from stembase
 				double loffs = (segment.index + where) * segmentLength;
 				// get a new direction for the leaf
-				Transformation trf = substemDirection(segment.transf, loffs);
+				Transformation trf = substemDirection(segment.transf, loffs, src);
 				// translate it to its position on the stem
 				trf = trf.translate(segment.transf.getZ().mul(where * segmentLength));
 
 				// create new leaf
-				LeafImpl leaf = new LeafImpl(trf); // ,loffs);
-				leaf.make(par);
-				leaves.addElement(leaf);
+				addLeaf(trf, src, result); // ,loffs);
 			}
 		}
 
 		// ##### FAN MOD, leaves placed in a fan at stem end
-		else if (par.Leaves < 0 && segment.index == segmentCount - 1) {
+		else {
 
 			LevelParams lpar_1 = par.getLevelParams(stemlevel + 1);
-			int cnt = (int) (leavesPerBranch() + 0.5);
+			Random rnd1 = src != null ? src.random1 : null;
+			int cnt = count;
 
 			Transformation trf = segment.transf.translate(segment.transf.getZ().mul(segmentLength));
 			double distangle = lpar_1.nRotate / cnt;
@@ -1039,9 +1433,7 @@ class StemImpl implements Stem {
 			// use different method for odd and even number
 			if (cnt % 2 == 1) {
 				// create one leaf in the middle
-				LeafImpl leaf = new LeafImpl(trf); //,segmentCount*segmentLength);
-				leaf.make(par);
-				leaves.addElement(leaf);
+				addLeaf(trf, src, result); //,segmentCount*segmentLength);
 				offsetangle = distangle;
 			} else {
 				offsetangle = distangle / 2;
@@ -1050,16 +1442,26 @@ class StemImpl implements Stem {
 			for (int s = 0; s < cnt / 2; s++) {
 				for (int rot = 1; rot >= -1; rot -= 2) {
 					Transformation transf1 = trf.roty(rot * (offsetangle + s * distangle
-															 + lpar_1.var(varangle)));
-					transf1 = transf1.rotx(downangle + lpar_1.var(vardown));
-					LeafImpl leaf = new LeafImpl(transf1); //,segmentCount*segmentLength);
-					leaf.make(par);
-					leaves.addElement(leaf);
+															 + var(lpar_1, varangle, rnd1)));
+					transf1 = transf1.rotx(downangle + var(lpar_1, vardown, rnd1));
+					addLeaf(transf1, src, result); //,segmentCount*segmentLength);
 				}
 			}
 		}
 	}
 
+	private void addLeaf(Transformation trf, LeafSource src, java.util.Vector result) {
+		if (result == null) {
+			return;
+		}
+		LeafImpl leaf = new LeafImpl(trf);
+		// leaves made again are always oriented at once
+		if (!geometryDeferred || src != null) {
+			leaf.make(par);
+		}
+		result.addElement(leaf);
+	}
+
 
 	/**
 	 * Make clones of the current stem at the current segment
@@ -1079,10 +1481,16 @@ class StemImpl implements Stem {
 		} else {
 			// how many clones?
 			double seg_splits = lpar.nSegSplits;
-			seg_splits_eff = (int) (seg_splits + lpar.splitErrorValue + 0.5);
+			double errorValue = (random != null) ? splitErrorValue : lpar.splitErrorValue;
+			seg_splits_eff = (int) (seg_splits + errorValue + 0.5);
 
 			// adapt error value
-			lpar.splitErrorValue -= (seg_splits_eff - seg_splits);
+			errorValue -= (seg_splits_eff - seg_splits);
+			if (random != null) {
+				splitErrorValue = errorValue;
+			} else {
+				lpar.splitErrorValue = errorValue;
+			}
 		}
 
 		if (seg_splits_eff < 1) {
@@ -1151,7 +1559,7 @@ class StemImpl implements Stem {
 		// FIXME: don't know if it should be nSplitAngle or nSplitAngle/2
 		double declination = Math.acos(trf.getZ().getZ()) * 180 / Math.PI;
 		double split_angle = Math.max(0, (lpar.nSplitAngle
-										  + lpar.var(lpar.nSplitAngleV) - declination));
+										  + var(lpar, lpar.nSplitAngleV) - declination));
 
 		// FIXME: first works better for level 0, second for further levels
 		// transf = transf.rotxz(split_angle,s_angle)
@@ -1164,11 +1572,11 @@ class StemImpl implements Stem {
 		double split_diverge;
 		if (s_angle > 0) { // original stem has s_angle==0
 			if (par._0BaseSplits > 0 && stemlevel == 0 && nseg == 0) {
-				split_diverge = s_angle + lpar.var(lpar.nSplitAngleV);
+				split_diverge = s_angle + var(lpar, lpar.nSplitAngleV);
 			} else {
 				split_diverge = 20 + 0.75 * (30 + Math.abs(declination - 90))
-									 * Math.pow((lpar.var(1) + 1) / 2.0, 2);
-				if (lpar.var(1) >= 0) {
+									 * Math.pow((var(lpar, 1) + 1) / 2.0, 2);
+				if (var(lpar, 1) >= 0) {
 					split_diverge = -split_diverge;
 				}
 			}
@@ -1195,6 +1603,18 @@ class StemImpl implements Stem {
 	 # an umbrella formed acacia (don't know the english name of that trees) isn't
 	 */
 
+	// makes the leaves of the leaf groups again and traverses them
+	private void traverseLeafGroups(TreeTraversal traversal) {
+		for (int i = 0; i < leafGroups.size(); i++) {
+			Enumeration l = makeLeaves((LeafGroup) leafGroups.elementAt(i)).elements();
+			while (l.hasMoreElements()) {
+				if (!((Leaf) l.nextElement()).traverseTree(traversal)) {
+					return;
+				}
+			}
+		}
+	}
+
 	public boolean traverseTree(TreeTraversal traversal) {
 		if (traversal.enterStem(this))  // enter this tree?
 		{
@@ -1206,6 +1626,8 @@ class StemImpl implements Stem {
 						break;
 					}
 				}
+			} else if (leafGroups != null) {
+				traverseLeafGroups(traversal);
 			}
 
 			if (substems != null) {
@@ -1257,6 +1679,12 @@ class StemImpl implements Stem {
 	public long getLeafCount() {
 		if (leaves != null) {
 			return leaves.size();
+		} else if (leafGroups != null) {
+			long count = 0;
+			for (int i = 0; i < leafGroups.size(); i++) {
+				count += ((LeafGroup) leafGroups.elementAt(i)).count;
+			}
+			return count;
 		} else {
 			return 0;
 		}
@@ -1304,25 +1732,24 @@ class StemImpl implements Stem {
 
 
 	/**
-	 * For every stem there is a box (as minPoint, maxPoint), within the stem with all it's substems of any level should
-	 * be contained. The box is calculated by invoking this method for every point limiting a stem segment. If such
-	 * point of a stems segment of substems segment is outside of the box, the box is adapted.
-	 *
-	 * @param pt The point which should be inside of the containing box
+	 * Extends the box of the stem by the boxes of its clones and substems, which are merged before. This is done
+	 * bottom-up once the geometry of all stems is made, so every point is added to one box only.
 	 */
 
-	public void minMaxTest(Vector pt) {
-		maxPoint.setMaxCoord(pt);
-		minPoint.setMinCoord(pt);
-
-		if (clonedFrom != null) {
-			clonedFrom.minMaxTest(pt);
+	void mergeBounds() {
+		if (clones != null) {
+			for (int i = 0; i < clones.size(); i++) {
+				StemImpl clone = (StemImpl) clones.elementAt(i);
+				clone.mergeBounds();
+				bounds.extendBy(clone.bounds);
+			}
 		}
-		if (parent != null) {
-			parent.minMaxTest(pt);
-		} else {
-			// no parent, this must be a trunk
-			tree.minMaxTest(pt);
+		if (substems != null) {
+			for (int i = 0; i < substems.size(); i++) {
+				StemImpl substem = (StemImpl) substems.elementAt(i);
+				substem.mergeBounds();
+				bounds.extendBy(substem.bounds);
+			}
 		}
 	}
 }
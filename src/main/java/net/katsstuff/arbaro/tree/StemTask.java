@@ -0,0 +1,110 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.tree;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Makes the deferred geometry of a stem and all its clones and substems. Substems and clones of the lower levels are
+ * handled in own tasks, deeper levels are made in the task of their parent. When the stems have own random generators,
+ * the pending substems of a stem are made in their tasks too.
+ */
+class StemTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	// stems up to this level fork tasks for their clones and substems
+	static final int FORK_LEVEL = 1;
+
+	final StemImpl stem;
+	final boolean make; // the stem is pending and has to be made first
+	boolean made;
+
+	StemTask(StemImpl stem) {
+		this(stem, false);
+	}
+
+	StemTask(StemImpl stem, boolean make) {
+		this.stem = stem;
+		this.make = make;
+	}
+
+	protected void compute() {
+		if (make) {
+			made = stem.make();
+			if (!made) {
+				return;
+			}
+		}
+
+		if (stem.stemlevel > FORK_LEVEL) {
+			makeGeometry(stem);
+			return;
+		}
+
+		java.util.Vector tasks = new java.util.Vector();
+		if (stem.clones != null) {
+			for (int i = 0; i < stem.clones.size(); i++) {
+				tasks.addElement(new StemTask((StemImpl) stem.clones.elementAt(i)));
+			}
+		}
+		if (stem.substems != null) {
+			for (int i = 0; i < stem.substems.size(); i++) {
+				tasks.addElement(new StemTask((StemImpl) stem.substems.elementAt(i)));
+			}
+		}
+		java.util.Vector pending = new java.util.Vector();
+		if (stem.pendingSubstems != null) {
+			for (int i = 0; i < stem.pendingSubstems.size(); i++) {
+				pending.addElement(new StemTask((StemImpl) stem.pendingSubstems.elementAt(i), true));
+			}
+			tasks.addAll(pending);
+		}
+		stem.makeGeometry();
+		ForkJoinTask.invokeAll(tasks);
+
+		// add the made substems in the order they were created
+		for (int i = 0; i < pending.size(); i++) {
+			StemTask task = (StemTask) pending.elementAt(i);
+			if (task.made) {
+				stem.substems.addElement(task.stem);
+			}
+		}
+		stem.pendingSubstems = null;
+	}
+
+	static void makeGeometry(StemImpl stem) {
+		stem.makeGeometry();
+		if (stem.clones != null) {
+			for (int i = 0; i < stem.clones.size(); i++) {
+				makeGeometry((StemImpl) stem.clones.elementAt(i));
+			}
+		}
+		if (stem.substems != null) {
+			for (int i = 0; i < stem.substems.size(); i++) {
+				makeGeometry((StemImpl) stem.substems.elementAt(i));
+			}
+		}
+	}
+}
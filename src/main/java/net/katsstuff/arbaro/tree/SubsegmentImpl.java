@@ -23,8 +23,6 @@
 
 package net.katsstuff.arbaro.tree;
 
-import net.katsstuff.arbaro.params.LevelParams;
-import net.katsstuff.arbaro.params.Params;
 import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 
@@ -72,52 +70,7 @@ class SubsegmentImpl implements StemSection {
 	}
 
 	public Vector[] getSectionPoints() {
-		Params par = segment.par;
-		LevelParams lpar = segment.lpar;
-
-		int pt_cnt = lpar.mesh_points;
-		Vector[] points;
-		Transformation trf = getTransformation(); //segment.getTransformation().translate(pos.sub(segment.getLowerPosition()));
-
-		// if radius = 0 create only one point
-		if (rad < 0.000001) {
-			points = new Vector[1];
-			points[0] = trf.apply(new Vector(0, 0, 0));
-		} else { //create pt_cnt points
-			points = new Vector[pt_cnt];
-			//stem.DBG("MESH+LOBES: lobes: %d, depth: %f\n"%(self.tree.Lobes, self.tree.LobeDepth))
-
-			for (int i = 0; i < pt_cnt; i++) {
-				double angle = i * 360.0 / pt_cnt;
-				// for Lobes ensure that points are near lobes extrema, but not exactly there
-				// otherwise there are to sharp corners at the extrema
-				if (lpar.level == 0 && par.Lobes != 0) {
-					angle -= 10.0 / par.Lobes;
-				}
-
-				// create some point on the unit circle
-				Vector pt = new Vector(Math.cos(angle * Math.PI / 180), Math.sin(angle * Math.PI / 180), 0);
-				// scale it to stem radius
-				if (lpar.level == 0 && (par.Lobes != 0 || par._0ScaleV != 0)) {
-					double rad1 = rad * (1 +
-										 par.random.uniform(-par._0ScaleV, par._0ScaleV) /
-										 segment.getSubsegmentCount());
-					pt = pt.mul(rad1 * (1.0 + par.LobeDepth * Math.cos(par.Lobes * angle * Math.PI / 180.0)));
-				} else {
-					pt = pt.mul(rad); // faster - no radius calculations
-				}
-				// apply transformation to it
-				// (for the first trunk segment transformation shouldn't be applied to
-				// the lower meshpoints, otherwise there would be a gap between 
-				// ground and trunk)
-				// FIXME: for helical stems may be/may be not a random rotation 
-				// should applied additionally?
-
-				pt = trf.apply(pt);
-				points[i] = pt;
-			}
-		}
-
-		return points;
+		return SegmentImpl.sectionPoints(segment.par, segment.lpar, getTransformation(),
+			rad, segment.getSubsegmentCount());
 	}
 }
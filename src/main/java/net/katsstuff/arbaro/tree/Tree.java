@@ -38,6 +38,12 @@ public interface Tree {
 	 */
 	Vector getMinPoint();
 
+	/**
+	 * @return the bounding volume hierarchy of the stems and leaves for spatial queries. It is built the first time
+	 * 	it is needed, or read from the tree file, and kept with the tree.
+	 */
+	TreeBVH getBVH();
+
 	/**
 	 * @return the seed of the tree. It is used for randomnization.
 	 */
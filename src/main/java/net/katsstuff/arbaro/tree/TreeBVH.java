@@ -0,0 +1,735 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.tree;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Enumeration;
+import net.katsstuff.arbaro.transformation.Box;
+import net.katsstuff.arbaro.transformation.Transformation;
+import net.katsstuff.arbaro.transformation.Vector;
+
+/**
+ * A bounding volume hierarchy over the stems and leaves of a tree for spatial queries like ray intersection, box
+ * overlap and nearest stem lookup.
+ * <p>
+ * Every piece of a stem between two sections and every leaf is approximated by a capsule, i.e. a line segment with a
+ * radius. Stems and leaves are identified by the order in which a TreeTraversal visits them. The hierarchy is stored in
+ * arrays and can be serialized or saved in the tree file together with the tree (see TreeFile).
+ */
+public final class TreeBVH implements java.io.Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// capsules per node of the hierarchy
+	private static final int LEAF_SIZE = 4;
+
+	/**
+	 * The result of a query
+	 */
+	public static final class Hit {
+
+		/**
+		 * The distance from the ray origin or the query point
+		 */
+		public final double distance;
+
+		/**
+		 * The index of the stem or -1 if a leaf was hit
+		 */
+		public final int stem;
+
+		/**
+		 * The index of the leaf or -1 if a stem was hit
+		 */
+		public final int leaf;
+
+		Hit(double distance, int owner) {
+			this.distance = distance;
+			this.stem = owner >= 0 ? owner : -1;
+			this.leaf = owner < 0 ? -owner - 1 : -1;
+		}
+
+		public boolean isLeaf() {
+			return leaf >= 0;
+		}
+
+		public String toString() {
+			return (isLeaf() ? "Leaf " + leaf : "Stem " + stem) + " at distance " + distance;
+		}
+	}
+
+	private final String[] stemPositions;
+	private final int leafCount;
+
+	// the capsules, ordered by the nodes containing them
+	private final double[] capsuleA;
+	private final double[] capsuleB;
+	private final double[] capsuleRadius;
+	private final int[] capsuleOwner; // stem index, or -(leaf index+1) for leaves
+
+	// the nodes in depth first order, the left child of an inner node follows it
+	private final double[] nodeBounds; // min x,y,z and max x,y,z
+	private final int[] nodeFirst; // first capsule of a leaf node or right child of an inner node
+	private final int[] nodeCount; // capsules of a leaf node, 0 for inner nodes
+
+	/**
+	 * Builds the hierarchy for a tree in O(n log n) for n stem sections and leaves
+	 *
+	 * @param tree the tree
+	 * @return the hierarchy
+	 */
+	public static TreeBVH build(Tree tree) {
+		Collector collector = new Collector(tree);
+		tree.traverseTree(collector);
+		return new TreeBVH(collector);
+	}
+
+	/**
+	 * Collects the capsules of all stems and leaves of a tree
+	 */
+	private static class Collector extends DefaultTreeTraversal {
+
+		final double leafStart;
+		final double leafEnd;
+		final double leafRadius;
+
+		double[] a = new double[3 * 1024];
+		double[] b = new double[3 * 1024];
+		double[] radius = new double[1024];
+		int[] owner = new int[1024];
+		int size = 0;
+
+		java.util.Vector stemPositions = new java.util.Vector();
+		int leaves = 0;
+
+		Collector(Tree tree) {
+			// a leaf spans its z-axis from the leaf stem to the leaf tip
+			leafStart = tree.getLeafStemLength() * tree.getLeafLength();
+			leafEnd = (tree.getLeafStemLength() + 1) * tree.getLeafLength();
+			leafRadius = tree.getLeafWidth() / 2;
+		}
+
+		public boolean enterStem(Stem stem) {
+			int s = stemPositions.size();
+			stemPositions.addElement(stem.getTreePosition());
+
+			Enumeration sections = stem.sections();
+			if (!sections.hasMoreElements()) {
+				return true;
+			}
+			StemSection prev = (StemSection) sections.nextElement();
+			while (sections.hasMoreElements()) {
+				StemSection section = (StemSection) sections.nextElement();
+				add(prev.getPosition(), section.getPosition(),
+					Math.max(prev.getRadius(), section.getRadius()), s);
+				prev = section;
+			}
+			return true;
+		}
+
+		public boolean visitLeaf(Leaf leaf) {
+			Transformation trf = leaf.getTransformation();
+			add(trf.apply(new Vector(0, 0, leafStart)), trf.apply(new Vector(0, 0, leafEnd)),
+				leafRadius, -(leaves + 1));
+			leaves++;
+			return true;
+		}
+
+		private void add(Vector pa, Vector pb, double r, int o) {
+			if (size == owner.length) {
+				a = java.util.Arrays.copyOf(a, a.length * 2);
+				b = java.util.Arrays.copyOf(b, b.length * 2);
+				radius = java.util.Arrays.copyOf(radius, radius.length * 2);
+				owner = java.util.Arrays.copyOf(owner, owner.length * 2);
+			}
+			a[size * 3] = pa.getX();
+			a[size * 3 + 1] = pa.getY();
+			a[size * 3 + 2] = pa.getZ();
+			b[size * 3] = pb.getX();
+			b[size * 3 + 1] = pb.getY();
+			b[size * 3 + 2] = pb.getZ();
+			radius[size] = r;
+			owner[size] = o;
+			size++;
+		}
+	}
+
+	private TreeBVH(Collector c) {
+		int n = c.size;
+		stemPositions = new String[c.stemPositions.size()];
+		c.stemPositions.copyInto(stemPositions);
+		leafCount = c.leaves;
+
+		// capsule boxes and centers used for splitting
+		double[] boxes = new double[6 * n];
+		double[] centers = new double[3 * n];
+		for (int i = 0; i < n; i++) {
+			for (int k = 0; k < 3; k++) {
+				double pa = c.a[i * 3 + k];
+				double pb = c.b[i * 3 + k];
+				boxes[i * 6 + k] = Math.min(pa, pb) - c.radius[i];
+				boxes[i * 6 + 3 + k] = Math.max(pa, pb) + c.radius[i];
+				centers[i * 3 + k] = (pa + pb) / 2;
+			}
+		}
+
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+
+		// with median splits every leaf node has at least LEAF_SIZE/2 capsules
+		int maxNodes = Math.max(1, 2 * n / (LEAF_SIZE / 2));
+		Builder builder = new Builder(order, boxes, centers, maxNodes);
+		builder.build(0, n);
+
+		nodeBounds = java.util.Arrays.copyOf(builder.bounds, builder.nodes * 6);
+		nodeFirst = java.util.Arrays.copyOf(builder.first, builder.nodes);
+		nodeCount = java.util.Arrays.copyOf(builder.count, builder.nodes);
+
+		capsuleA = new double[3 * n];
+		capsuleB = new double[3 * n];
+		capsuleRadius = new double[n];
+		capsuleOwner = new int[n];
+		for (int i = 0; i < n; i++) {
+			int j = order[i];
+			System.arraycopy(c.a, j * 3, capsuleA, i * 3, 3);
+			System.arraycopy(c.b, j * 3, capsuleB, i * 3, 3);
+			capsuleRadius[i] = c.radius[j];
+			capsuleOwner[i] = c.owner[j];
+		}
+	}
+
+	/**
+	 * Creates a hierarchy from its binary form written by write()
+	 *
+	 * @param data the binary form in little endian byte order, positioned at its start
+	 * @throws IOException if the data isn't a valid hierarchy
+	 */
+	TreeBVH(ByteBuffer data) throws IOException {
+		try {
+			leafCount = data.getInt();
+			data.getInt(); // padding
+			ByteBuffer positions = CompactTree.readArray(data, 1);
+			byte[] bytes = new byte[positions.remaining()];
+			positions.get(bytes);
+			String joined = new String(bytes, StandardCharsets.UTF_8);
+			stemPositions = joined.length() == 0 ? new String[0] : joined.split("\n", -1);
+
+			capsuleA = toArray(CompactTree.readDoubles(data));
+			capsuleB = toArray(CompactTree.readDoubles(data));
+			capsuleRadius = toArray(CompactTree.readDoubles(data));
+			capsuleOwner = toArray(CompactTree.readInts(data));
+			nodeBounds = toArray(CompactTree.readDoubles(data));
+			nodeFirst = toArray(CompactTree.readInts(data));
+			nodeCount = toArray(CompactTree.readInts(data));
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of hierarchy data");
+		}
+
+		int n = capsuleOwner.length;
+		if (capsuleA.length != 3 * n || capsuleB.length != 3 * n || capsuleRadius.length != n
+			|| nodeBounds.length != 6 * nodeFirst.length || nodeCount.length != nodeFirst.length) {
+			throw new IOException("Inconsistent hierarchy data");
+		}
+	}
+
+	/**
+	 * Writes the hierarchy in a binary form, which can be read again with TreeBVH(ByteBuffer). The arrays are written
+	 * like the ones of CompactTree.write(), the stem positions are one array of UTF-8 bytes separated by newlines.
+	 *
+	 * @param out the channel to write to
+	 * @throws IOException if the channel can't be written
+	 */
+	void write(WritableByteChannel out) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		buf.putInt(leafCount);
+		buf.putInt(0);
+
+		byte[] positions = positionBytes();
+		buf.putLong(positions.length);
+		CompactTree.flush(out, buf);
+		ByteBuffer bytes = ByteBuffer.wrap(positions);
+		while (bytes.hasRemaining()) {
+			out.write(bytes);
+		}
+		for (long i = positions.length; i < CompactTree.padded(positions.length); i++) {
+			buf.put((byte) 0);
+		}
+
+		CompactTree.writeDoubles(out, buf, DoubleBuffer.wrap(capsuleA));
+		CompactTree.writeDoubles(out, buf, DoubleBuffer.wrap(capsuleB));
+		CompactTree.writeDoubles(out, buf, DoubleBuffer.wrap(capsuleRadius));
+		CompactTree.writeInts(out, buf, IntBuffer.wrap(capsuleOwner));
+		CompactTree.writeDoubles(out, buf, DoubleBuffer.wrap(nodeBounds));
+		CompactTree.writeInts(out, buf, IntBuffer.wrap(nodeFirst));
+		CompactTree.writeInts(out, buf, IntBuffer.wrap(nodeCount));
+		CompactTree.flush(out, buf);
+	}
+
+	/**
+	 * @return the number of bytes write() writes
+	 */
+	long byteSize() {
+		return 8 + 8 + CompactTree.padded(positionBytes().length)
+			   + 8 + capsuleA.length * 8L
+			   + 8 + capsuleB.length * 8L
+			   + 8 + capsuleRadius.length * 8L
+			   + 8 + CompactTree.padded(capsuleOwner.length * 4L)
+			   + 8 + nodeBounds.length * 8L
+			   + 8 + CompactTree.padded(nodeFirst.length * 4L)
+			   + 8 + CompactTree.padded(nodeCount.length * 4L);
+	}
+
+	private byte[] positionBytes() {
+		StringBuilder str = new StringBuilder();
+		for (int i = 0; i < stemPositions.length; i++) {
+			if (i > 0) {
+				str.append('\n');
+			}
+			str.append(stemPositions[i]);
+		}
+		return str.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static double[] toArray(DoubleBuffer buf) {
+		double[] a = new double[buf.remaining()];
+		buf.get(a);
+		return a;
+	}
+
+	private static int[] toArray(IntBuffer buf) {
+		int[] a = new int[buf.remaining()];
+		buf.get(a);
+		return a;
+	}
+
+	/**
+	 * Builds the nodes by splitting the capsules at the median of their centers along the longest axis
+	 */
+	private static class Builder {
+
+		final int[] order;
+		final double[] boxes;
+		final double[] centers;
+
+		double[] bounds;
+		int[] first;
+		int[] count;
+		int nodes = 0;
+
+		Builder(int[] order, double[] boxes, double[] centers, int maxNodes) {
+			this.order = order;
+			this.boxes = boxes;
+			this.centers = centers;
+			bounds = new double[maxNodes * 6];
+			first = new int[maxNodes];
+			count = new int[maxNodes];
+		}
+
+		void build(int start, int end) {
+			int node = nodes++;
+			double[] cmin = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+			double[] cmax = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+			for (int k = 0; k < 3; k++) {
+				bounds[node * 6 + k] = Double.MAX_VALUE;
+				bounds[node * 6 + 3 + k] = -Double.MAX_VALUE;
+			}
+			for (int i = start; i < end; i++) {
+				int p = order[i];
+				for (int k = 0; k < 3; k++) {
+					bounds[node * 6 + k] = Math.min(bounds[node * 6 + k], boxes[p * 6 + k]);
+					bounds[node * 6 + 3 + k] = Math.max(bounds[node * 6 + 3 + k], boxes[p * 6 + 3 + k]);
+					cmin[k] = Math.min(cmin[k], centers[p * 3 + k]);
+					cmax[k] = Math.max(cmax[k], centers[p * 3 + k]);
+				}
+			}
+
+			if (end - start <= LEAF_SIZE) {
+				first[node] = start;
+				count[node] = end - start;
+				return;
+			}
+
+			int axis = 0;
+			for (int k = 1; k < 3; k++) {
+				if (cmax[k] - cmin[k] > cmax[axis] - cmin[axis]) {
+					axis = k;
+				}
+			}
+
+			int mid = (start + end) / 2;
+			select(start, end - 1, mid, axis);
+
+			build(start, mid);
+			first[node] = nodes;
+			build(mid, end);
+		}
+
+		// moves the capsule with the k-th smallest center coordinate to position k,
+		// smaller ones before, bigger ones after it
+		private void select(int left, int right, int k, int axis) {
+			while (right > left) {
+				double pivot = centers[order[(left + right) >>> 1] * 3 + axis];
+				int i = left;
+				int j = right;
+				while (i <= j) {
+					while (centers[order[i] * 3 + axis] < pivot) {
+						i++;
+					}
+					while (centers[order[j] * 3 + axis] > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						int t = order[i];
+						order[i] = order[j];
+						order[j] = t;
+						i++;
+						j--;
+					}
+				}
+				if (k <= j) {
+					right = j;
+				} else if (k >= i) {
+					left = i;
+				} else {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of stems of the tree
+	 */
+	public int getStemCount() {
+		return stemPositions.length;
+	}
+
+	/**
+	 * @return the number of leaves of the tree
+	 */
+	public int getLeafCount() {
+		return leafCount;
+	}
+
+	/**
+	 * @param stem the stem index
+	 * @return the position of the stem in the tree, see {@link Stem#getTreePosition()}
+	 */
+	public String getStemPosition(int stem) {
+		return stemPositions[stem];
+	}
+
+	/**
+	 * @return the box containing all stems and leaves
+	 */
+	public Box getBounds() {
+		if (nodeCount.length == 0 || capsuleOwner.length == 0) {
+			return new Box();
+		}
+		return new Box(new Vector(nodeBounds[0], nodeBounds[1], nodeBounds[2]),
+			new Vector(nodeBounds[3], nodeBounds[4], nodeBounds[5]));
+	}
+
+	/**
+	 * Finds the first stem or leaf hit by a ray
+	 *
+	 * @param origin the origin of the ray
+	 * @param direction the direction of the ray, it doesn't need to be normalized
+	 * @param maxDistance hits farther from the origin are ignored
+	 * @return the nearest hit or null, if nothing is hit
+	 */
+	public Hit intersectRay(Vector origin, Vector direction, double maxDistance) {
+		double len = direction.abs();
+		if (len == 0 || capsuleOwner.length == 0) {
+			return null;
+		}
+		double[] o = {origin.getX(), origin.getY(), origin.getZ()};
+		double[] d = {direction.getX() / len, direction.getY() / len, direction.getZ() / len};
+		double[] inv = {1 / d[0], 1 / d[1], 1 / d[2]};
+
+		double best = maxDistance;
+		int bestOwner = 0;
+		boolean found = false;
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (rayBoxDistance(node, o, inv) > best) {
+				continue;
+			}
+			if (nodeCount[node] > 0) {
+				for (int i = nodeFirst[node]; i < nodeFirst[node] + nodeCount[node]; i++) {
+					double t = rayCapsuleDistance(i, o, d);
+					if (t >= 0 && t <= best) {
+						best = t;
+						bestOwner = capsuleOwner[i];
+						found = true;
+					}
+				}
+			} else {
+				stack[top++] = nodeFirst[node];
+				stack[top++] = node + 1;
+			}
+		}
+
+		return found ? new Hit(best, bestOwner) : null;
+	}
+
+	/**
+	 * Finds the stems overlapping a box
+	 *
+	 * @param box the box
+	 * @return the indices of the stems in ascending order
+	 */
+	public int[] stemsInBox(Box box) {
+		return ownersInBox(box, true);
+	}
+
+	/**
+	 * Finds the leaves overlapping a box
+	 *
+	 * @param box the box
+	 * @return the indices of the leaves in ascending order
+	 */
+	public int[] leavesInBox(Box box) {
+		return ownersInBox(box, false);
+	}
+
+	private int[] ownersInBox(Box box, boolean stems) {
+		double[] min = {box.getMin().getX(), box.getMin().getY(), box.getMin().getZ()};
+		double[] max = {box.getMax().getX(), box.getMax().getY(), box.getMax().getZ()};
+		BitSet found = new BitSet();
+
+		if (capsuleOwner.length > 0) {
+			int[] stack = new int[64];
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				if (!overlaps(nodeBounds, node, min, max)) {
+					continue;
+				}
+				if (nodeCount[node] > 0) {
+					for (int i = nodeFirst[node]; i < nodeFirst[node] + nodeCount[node]; i++) {
+						int owner = capsuleOwner[i];
+						if ((owner >= 0) == stems && capsuleOverlaps(i, min, max)) {
+							found.set(stems ? owner : -owner - 1);
+						}
+					}
+				} else {
+					stack[top++] = nodeFirst[node];
+					stack[top++] = node + 1;
+				}
+			}
+		}
+
+		int[] result = new int[found.cardinality()];
+		int k = 0;
+		for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+			result[k++] = i;
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the stem nearest to a point
+	 *
+	 * @param point the point
+	 * @return the nearest stem with the distance from its surface, 0 if the point is inside, or null if the tree has no
+	 * 	stems
+	 */
+	public Hit nearestStem(Vector point) {
+		double[] p = {point.getX(), point.getY(), point.getZ()};
+		double best = Double.MAX_VALUE;
+		int bestStem = -1;
+
+		if (capsuleOwner.length > 0) {
+			int[] stack = new int[64];
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				if (pointBoxDistance(node, p) >= best) {
+					continue;
+				}
+				if (nodeCount[node] > 0) {
+					for (int i = nodeFirst[node]; i < nodeFirst[node] + nodeCount[node]; i++) {
+						if (capsuleOwner[i] >= 0) {
+							double dist = Math.max(0, Math.sqrt(segmentDistance2(i, p)) - capsuleRadius[i]);
+							if (dist < best) {
+								best = dist;
+								bestStem = capsuleOwner[i];
+							}
+						}
+					}
+				} else {
+					// visit the nearer child first
+					int left = node + 1;
+					int right = nodeFirst[node];
+					if (pointBoxDistance(left, p) < pointBoxDistance(right, p)) {
+						stack[top++] = right;
+						stack[top++] = left;
+					} else {
+						stack[top++] = left;
+						stack[top++] = right;
+					}
+				}
+			}
+		}
+
+		return bestStem >= 0 ? new Hit(best, bestStem) : null;
+	}
+
+	// distance along the ray to the box of a node, infinity if the ray misses it
+	private double rayBoxDistance(int node, double[] o, double[] inv) {
+		double tmin = 0;
+		double tmax = Double.POSITIVE_INFINITY;
+		for (int k = 0; k < 3; k++) {
+			double t1 = (nodeBounds[node * 6 + k] - o[k]) * inv[k];
+			double t2 = (nodeBounds[node * 6 + 3 + k] - o[k]) * inv[k];
+			if (Double.isNaN(t1) || Double.isNaN(t2)) {
+				// the ray is parallel to the slab and starts on its border
+				continue;
+			}
+			tmin = Math.max(tmin, Math.min(t1, t2));
+			tmax = Math.min(tmax, Math.max(t1, t2));
+		}
+		return tmin <= tmax ? tmin : Double.POSITIVE_INFINITY;
+	}
+
+	// distance along the normalized ray to a capsule, -1 if the ray misses it
+	private double rayCapsuleDistance(int i, double[] o, double[] d) {
+		double r = capsuleRadius[i];
+		if (segmentDistance2(i, o) <= r * r) {
+			return 0; // the origin is inside
+		}
+
+		double best = -1;
+		double[] ba = new double[3];
+		double[] oa = new double[3];
+		for (int k = 0; k < 3; k++) {
+			ba[k] = capsuleB[i * 3 + k] - capsuleA[i * 3 + k];
+			oa[k] = o[k] - capsuleA[i * 3 + k];
+		}
+		double baba = dot(ba, ba);
+		double bard = dot(ba, d);
+		double baoa = dot(ba, oa);
+
+		// the cylinder between the end spheres
+		double a = baba - bard * bard;
+		if (a > 1e-12 * baba) {
+			double b = baba * dot(d, oa) - baoa * bard;
+			double c = baba * dot(oa, oa) - baoa * baoa - r * r * baba;
+			double h = b * b - a * c;
+			if (h >= 0) {
+				double t = (-b - Math.sqrt(h)) / a;
+				double y = baoa + t * bard;
+				if (t >= 0 && y > 0 && y < baba) {
+					best = t;
+				}
+			}
+		}
+
+		// the end spheres
+		for (int end = 0; end < 2; end++) {
+			double[] center = end == 0 ? capsuleA : capsuleB;
+			double ocx = o[0] - center[i * 3];
+			double ocy = o[1] - center[i * 3 + 1];
+			double ocz = o[2] - center[i * 3 + 2];
+			double b = ocx * d[0] + ocy * d[1] + ocz * d[2];
+			double c = ocx * ocx + ocy * ocy + ocz * ocz - r * r;
+			double h = b * b - c;
+			if (h >= 0) {
+				double t = -b - Math.sqrt(h);
+				if (t >= 0 && (best < 0 || t < best)) {
+					best = t;
+				}
+			}
+		}
+		return best;
+	}
+
+	// squared distance from a point to the axis of a capsule
+	private double segmentDistance2(int i, double[] p) {
+		double[] ba = new double[3];
+		double[] pa = new double[3];
+		for (int k = 0; k < 3; k++) {
+			ba[k] = capsuleB[i * 3 + k] - capsuleA[i * 3 + k];
+			pa[k] = p[k] - capsuleA[i * 3 + k];
+		}
+		double baba = dot(ba, ba);
+		double h = baba > 0 ? Math.max(0, Math.min(1, dot(pa, ba) / baba)) : 0;
+		double dist2 = 0;
+		for (int k = 0; k < 3; k++) {
+			double v = pa[k] - ba[k] * h;
+			dist2 += v * v;
+		}
+		return dist2;
+	}
+
+	private double pointBoxDistance(int node, double[] p) {
+		double dist2 = 0;
+		for (int k = 0; k < 3; k++) {
+			double v = Math.max(0, Math.max(nodeBounds[node * 6 + k] - p[k], p[k] - nodeBounds[node * 6 + 3 + k]));
+			dist2 += v * v;
+		}
+		return Math.sqrt(dist2);
+	}
+
+	private boolean capsuleOverlaps(int i, double[] min, double[] max) {
+		double r = capsuleRadius[i];
+		for (int k = 0; k < 3; k++) {
+			double pa = capsuleA[i * 3 + k];
+			double pb = capsuleB[i * 3 + k];
+			if (Math.max(pa, pb) + r < min[k] || Math.min(pa, pb) - r > max[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean overlaps(double[] bounds, int node, double[] min, double[] max) {
+		for (int k = 0; k < 3; k++) {
+			if (bounds[node * 6 + 3 + k] < min[k] || bounds[node * 6 + k] > max[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static double dot(double[] u, double[] v) {
+		return u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+	}
+}
@@ -0,0 +1,170 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import net.katsstuff.arbaro.export.Console;
+import net.katsstuff.arbaro.params.Params;
+
+/**
+ * A directory of generated trees, so a tree, which was made before with the same parameters and seed, doesn't need to
+ * be made again. The trees are stored as uncompressed tree files (see TreeFile), one file per tree named after the
+ * digest of the parameters and the seed. When the files get bigger than the maximal size, the least recently used
+ * ones are deleted.
+ * <p>
+ * Several processes can use the same directory, files are written to a temporary file first and renamed then.
+ */
+public class TreeCache {
+
+	static final String SUFFIX = ".tree";
+
+	private final File directory;
+	private final long maxSize;
+
+	/**
+	 * @param directory the directory for the tree files, it is created if it doesn't exist
+	 * @param maxSize   the maximal size of all tree files in bytes
+	 */
+	public TreeCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		directory.mkdirs();
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	File getFile(Params params, int seed) {
+		return new File(directory, params.getDigest() + "-" + seed + SUFFIX);
+	}
+
+	/**
+	 * Returns the tree made with the given parameters and seed, if it is in the cache
+	 *
+	 * @param params the prepared parameters
+	 * @param seed   the seed
+	 * @return the tree or null, if it isn't in the cache
+	 */
+	public synchronized Tree get(Params params, int seed) {
+		File file = getFile(params, seed);
+		if (!file.exists()) {
+			return null;
+		}
+
+		try {
+			CompactTree tree = TreeFile.read(file, params);
+			// mark as recently used
+			file.setLastModified(System.currentTimeMillis());
+			Console.verboseOutput("Tree read from cache file " + file);
+			return tree;
+		} catch (IOException e) {
+			Console.errorOutput("Couldn't read cached tree " + file + ": " + e.getMessage());
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Puts a tree into the cache, and deletes the least recently used trees, when the cache gets too big
+	 *
+	 * @param params the prepared parameters, the tree was made with
+	 * @param seed   the seed, the tree was made with
+	 * @param tree   the generated tree
+	 */
+	public synchronized void put(Params params, int seed, Tree tree) {
+		File file = getFile(params, seed);
+		File tmp = null;
+		try {
+			tmp = File.createTempFile("tree", ".tmp", directory);
+			TreeFile.write(tree, tmp, false);
+			if (!tmp.renameTo(file)) {
+				file.delete();
+				if (!tmp.renameTo(file)) {
+					throw new IOException("Couldn't rename " + tmp + " to " + file);
+				}
+			}
+			tmp = null;
+		} catch (IOException e) {
+			Console.errorOutput("Couldn't write cached tree " + file + ": " + e.getMessage());
+		} finally {
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+
+		evict();
+	}
+
+	/**
+	 * Deletes the least recently used tree files, until all files together aren't bigger than the maximal size
+	 */
+	synchronized void evict() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		long size = 0;
+		int count = 0;
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(SUFFIX)) {
+				files[count++] = files[i];
+				size += files[i].length();
+			}
+		}
+
+		File[] trees = new File[count];
+		System.arraycopy(files, 0, trees, 0, count);
+		final long[] used = new long[count];
+		for (int i = 0; i < count; i++) {
+			used[i] = trees[i].lastModified();
+		}
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator() {
+			public int compare(Object a, Object b) {
+				long ua = used[((Integer) a).intValue()];
+				long ub = used[((Integer) b).intValue()];
+				return ua < ub ? -1 : (ua == ub ? 0 : 1);
+			}
+		});
+
+		for (int i = 0; i < count && size > maxSize; i++) {
+			File file = trees[order[i].intValue()];
+			long length = file.length();
+			if (file.delete()) {
+				size -= length;
+			}
+		}
+	}
+}
@@ -0,0 +1,284 @@
+//  #**************************************************************************
+//  #
+//  #    Copyright (C) 2003-2006  Wolfram Diestel
+//  #
+//  #    This program is free software; you can redistribute it and/or modify
+//  #    it under the terms of the GNU General Public License as published by
+//  #    the Free Software Foundation; either version 2 of the License, or
+//  #    (at your option) any later version.
+//  #
+//  #    This program is distributed in the hope that it will be useful,
+//  #    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//  #    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//  #    GNU General Public License for more details.
+//  #
+//  #    You should have received a copy of the GNU General Public License
+//  #    along with this program; if not, write to the Free Software
+//  #    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//  #
+//  #    Send comments and bug fixes to diestel@steloj.de
+//  #
+//  #**************************************************************************/
+
+package net.katsstuff.arbaro.tree;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import net.katsstuff.arbaro.params.ParamException;
+import net.katsstuff.arbaro.params.Params;
+
+/**
+ * Saves generated trees in a binary file and reads them again, so a tree can be exported later or by other tools
+ * without making it again.
+ * <p>
+ * The file starts with a header of 32 bytes: the magic number "ARBT", the format version, flags, the seed, the length
+ * of the parameters and the length of the tree data. Then follow the parameters as XML and the arrays of the
+ * CompactTree. All numbers are little endian. With the DEFLATE flag the tree data is compressed, else it is memory
+ * mapped when reading and the tree uses the file's data directly.
+ * <p>
+ * With the BVH flag the tree data is followed by the length of the tree's bounding volume hierarchy as a long and the
+ * hierarchy (see TreeBVH), compressed too with the DEFLATE flag. Readers not knowing the flag just ignore it.
+ */
+public class TreeFile {
+
+	static final int MAGIC = 0x54425241; // "ARBT"
+	public static final int VERSION = 1;
+
+	// flags
+	static final int DEFLATE = 1;
+	static final int BVH = 2;
+
+	static final int HEADER_SIZE = 32;
+
+	/**
+	 * Writes a tree into a file. The bounding volume hierarchy is saved with the tree, if the tree has built it
+	 * already, see Tree.getBVH().
+	 *
+	 * @param tree     the tree made by a TreeGenerator or read from a tree file
+	 * @param file     the file
+	 * @param compress if the tree data should be deflated. Gives smaller files, but they can't be memory mapped.
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(Tree tree, File file, boolean compress) throws IOException {
+		CompactTree compact = CompactTree.compact(tree);
+		TreeBVH bvh = compact.bvh;
+
+		StringWriter xml = new StringWriter();
+		PrintWriter w = new PrintWriter(xml);
+		compact.paramsToXML(w);
+		w.flush();
+		byte[] paramBytes = xml.toString().getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + padded(paramBytes.length))
+			.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt((compress ? DEFLATE : 0) | (bvh != null ? BVH : 0));
+		header.putInt(compact.getSeed());
+		header.putInt(paramBytes.length);
+		header.putInt(0);
+		header.putLong(compact.byteSize());
+		header.put(paramBytes);
+		header.clear();
+
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			FileChannel channel = out.getChannel();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+
+			if (compress) {
+				Deflater deflater = new Deflater();
+				try {
+					DeflaterOutputStream deflated =
+						new DeflaterOutputStream(Channels.newOutputStream(channel), deflater, 1 << 16);
+					WritableByteChannel deflatedChannel = Channels.newChannel(deflated);
+					compact.write(deflatedChannel);
+					if (bvh != null) {
+						writeBVH(deflatedChannel, bvh);
+					}
+					deflated.finish();
+				} finally {
+					deflater.end();
+				}
+			} else {
+				compact.write(channel);
+				if (bvh != null) {
+					writeBVH(channel, bvh);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a tree from a file. The parameters are taken from the file.
+	 *
+	 * @param file the tree file
+	 * @return the tree, which can be exported or traversed like a generated one
+	 * @throws IOException if the file can't be read or isn't a tree file of this version
+	 */
+	public static Tree read(File file) throws IOException {
+		return read(file, null);
+	}
+
+	/**
+	 * Reads a tree from a file
+	 *
+	 * @param file   the tree file
+	 * @param params the prepared parameters, the tree was made with, or null for the parameters in the file
+	 * @return the tree
+	 * @throws IOException if the file can't be read or isn't a tree file of this version
+	 */
+	static CompactTree read(File file, Params params) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header);
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " isn't a tree file");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Tree file version " + version + " isn't supported");
+			}
+			int flags = header.getInt();
+			int seed = header.getInt();
+			int paramLength = header.getInt();
+			header.getInt();
+			long dataLength = header.getLong();
+			long dataStart = HEADER_SIZE + padded(paramLength);
+			if (paramLength < 0 || dataLength < 0 || dataLength > Integer.MAX_VALUE) {
+				throw new IOException("Invalid tree file header");
+			}
+
+			if (params == null) {
+				ByteBuffer paramBytes = ByteBuffer.allocate(paramLength);
+				readFully(channel, paramBytes);
+				params = readParams(paramBytes.array(), seed);
+			}
+
+			ByteBuffer data;
+			ByteBuffer bvhData = null;
+			if ((flags & DEFLATE) != 0) {
+				channel.position(dataStart);
+				data = ByteBuffer.allocate((int) dataLength);
+				Inflater inflater = new Inflater();
+				try {
+					InputStream inflated = new InflaterInputStream(Channels.newInputStream(channel), inflater, 1 << 16);
+					readFully(inflated, data);
+					if ((flags & BVH) != 0) {
+						ByteBuffer length = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+						readFully(inflated, length);
+						bvhData = ByteBuffer.allocate(bvhLength(length.getLong()));
+						readFully(inflated, bvhData);
+					}
+				} finally {
+					inflater.end();
+				}
+			} else {
+				if (dataStart + dataLength > channel.size()) {
+					throw new IOException("Unexpected end of tree file");
+				}
+				// the mapping stays valid after closing the file
+				data = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, dataLength);
+				if ((flags & BVH) != 0) {
+					channel.position(dataStart + dataLength);
+					ByteBuffer length = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+					readFully(channel, length);
+					int bvhLength = bvhLength(length.getLong());
+					if (dataStart + dataLength + 8 + bvhLength > channel.size()) {
+						throw new IOException("Unexpected end of tree file");
+					}
+					bvhData = ByteBuffer.allocate(bvhLength);
+					readFully(channel, bvhData);
+				}
+			}
+			data.order(ByteOrder.LITTLE_ENDIAN);
+
+			CompactTree tree = new CompactTree(params, data);
+			if (bvhData != null) {
+				TreeBVH bvh = new TreeBVH(bvhData.order(ByteOrder.LITTLE_ENDIAN));
+				if (bvh.getStemCount() != tree.getStemCount() || bvh.getLeafCount() != tree.getLeafCount()) {
+					throw new IOException("The bounding volume hierarchy doesn't fit to the tree");
+				}
+				tree.bvh = bvh;
+			}
+			return tree;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static Params readParams(byte[] xml, int seed) throws IOException {
+		try {
+			Params params = new Params();
+			params.readFromXML(new ByteArrayInputStream(xml));
+			params.prepare(seed);
+			return params;
+		} catch (ParamException e) {
+			throw new IOException("Invalid parameters in tree file: " + e.getMessage());
+		}
+	}
+
+	private static void writeBVH(WritableByteChannel out, TreeBVH bvh) throws IOException {
+		ByteBuffer length = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		length.putLong(bvh.byteSize());
+		length.flip();
+		while (length.hasRemaining()) {
+			out.write(length);
+		}
+		bvh.write(out);
+	}
+
+	private static int bvhLength(long length) throws IOException {
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IOException("Invalid length of the bounding volume hierarchy");
+		}
+		return (int) length;
+	}
+
+	private static void readFully(InputStream in, ByteBuffer buf) throws IOException {
+		int pos = 0;
+		while (pos < buf.capacity()) {
+			int n = in.read(buf.array(), pos, buf.capacity() - pos);
+			if (n < 0) {
+				throw new IOException("Unexpected end of tree file");
+			}
+			pos += n;
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			if (channel.read(buf) < 0) {
+				throw new IOException("Unexpected end of tree file");
+			}
+		}
+		buf.flip();
+	}
+
+	private static int padded(int bytes) {
+		return (bytes + 7) & ~7;
+	}
+}
@@ -14,6 +14,26 @@ public interface TreeGenerator {
 
 	int getSeed();
 
+	/**
+	 * Sets the number of threads used for making a tree. With a value below 2 the tree is made sequentially. The
+	 * created tree is the same in both cases.
+	 *
+	 * @param parallelism the number of worker threads
+	 */
+	void setParallelism(int parallelism);
+
+	int getParallelism();
+
+	/**
+	 * Sets a cache for generated trees. With a cache makeTree returns a tree made before with the same parameters and
+	 * seed instead of making it again, and puts new trees into the cache.
+	 *
+	 * @param cache the tree cache or null for no caching
+	 */
+	void setCache(TreeCache cache);
+
+	TreeCache getCache();
+
 	Params getParams();
 
 	void setParam(String param, String value);
@@ -39,14 +39,31 @@ class TreeGeneratorImpl implements TreeGenerator {
 	 * @see net.katsstuff.arbaro.tree.TreeGenerator#makeTree(net.katsstuff.arbaro.export.Progress)
 	 */
 	public Tree makeTree(Progress progress) {
+		if (cache != null) {
+			params.prepare(seed);
+			Tree cached = cache.get(params, seed);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
 		TreeImpl tree = new TreeImpl(seed, params);
+		tree.setParallelism(parallelism);
 		tree.make(progress);
 
+		if (cache != null) {
+			cache.put(params, seed, tree);
+		}
+
 		return tree;
 	}
 
 	private int seed = 13;
 
+	private int parallelism = 1;
+
+	private TreeCache cache = null;
+
 	public TreeGeneratorImpl() {
 		params = new Params();
 	}
@@ -69,6 +86,34 @@ class TreeGeneratorImpl implements TreeGenerator {
 		return seed;
 	}
 
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.tree.TreeGenerator#setParallelism(int)
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.tree.TreeGenerator#getParallelism()
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.tree.TreeGenerator#setCache(net.katsstuff.arbaro.tree.TreeCache)
+	 */
+	public void setCache(TreeCache cache) {
+		this.cache = cache;
+	}
+
+	/* (non-Javadoc)
+	 * @see net.katsstuff.arbaro.tree.TreeGenerator#getCache()
+	 */
+	public TreeCache getCache() {
+		return cache;
+	}
+
 	/* (non-Javadoc)
 	 * @see net.katsstuff.arbaro.tree.TreeGenerator#getParams()
 	 */
@@ -24,11 +24,13 @@ package net.katsstuff.arbaro.tree;
 
 import java.io.PrintWriter;
 import java.util.Enumeration;
+import java.util.concurrent.ForkJoinPool;
 import net.katsstuff.arbaro.export.Console;
 import net.katsstuff.arbaro.export.Progress;
 import net.katsstuff.arbaro.params.IntParam;
 import net.katsstuff.arbaro.params.LevelParams;
 import net.katsstuff.arbaro.params.Params;
+import net.katsstuff.arbaro.transformation.Box;
 import net.katsstuff.arbaro.transformation.Transformation;
 import net.katsstuff.arbaro.transformation.Vector;
 
@@ -52,8 +54,23 @@ class TreeImpl implements Tree {
 		return seed;
 	}
 
+	// number of threads making the stem geometry
+	int parallelism = 1;
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
 	Progress progress;
 
+	// prune stems with the former method, which makes a stem again
+	// for every tested length, used to check the results of pruning
+	boolean pruneByRegeneration = false;
+
 	long stemCount;
 	long leafCount;
 
@@ -73,28 +90,38 @@ class TreeImpl implements Tree {
 		leafCount = cnt;
 	}
 
+	TreeBVH bvh;
+
+	public synchronized TreeBVH getBVH() {
+		if (bvh == null) {
+			bvh = TreeBVH.build(this);
+		}
+		return bvh;
+	}
+
 	// the trunks (one for trees, many for bushes)
 	java.util.Vector trunks;
 	double trunk_rotangle = 0;
 
 	//Progress progress;
 
-	Vector maxPoint;
-	Vector minPoint;
+	Box bounds = new Box();
 
 	public Vector getMaxPoint() {
-		return maxPoint;
+		return bounds.getMax();
 	}
 
 	public Vector getMinPoint() {
-		return minPoint;
+		return bounds.getMin();
 	}
 
 	public double getHeight() {
-		return maxPoint.getZ();
+		return bounds.getMax().getZ();
 	}
 
 	public double getWidth() {
+		Vector minPoint = bounds.getMin();
+		Vector maxPoint = bounds.getMax();
 		return Math.sqrt(Math.max(
 			minPoint.getX() * minPoint.getX()
 			+ minPoint.getY() * minPoint.getY(),
@@ -140,8 +167,7 @@ class TreeImpl implements Tree {
 
 		setupGenProgress();
 		params.prepare(seed);
-		maxPoint = new Vector(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
-		minPoint = new Vector(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+		bounds = new Box();
 
 		Console.verboseOutput("Tree species: " + params.Species + ", Seed: " + seed);
 		Console.verboseOutput("making " + params.Species + "(" + seed + ") ");
@@ -161,10 +187,34 @@ class TreeImpl implements Tree {
 			));
 			StemImpl trunk = new StemImpl(this, null, 0, trf, 0);
 			trunks.addElement(trunk);
-			trunk.index = 0;
+			// trunks need different positions for their random generators
+			trunk.index = params.positionalRandom ? i : 0;
 			trunk.make();
 		}
 
+		// the tree structure is made sequentially, when all stems of a level
+		// share the random generator of that level, only the geometry is made
+		// in parallel then. With own random generators for every stem
+		// whole branches are made in parallel.
+		if (parallelism > 1) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				for (int i = 0; i < trunks.size(); i++) {
+					pool.invoke(new StemTask((StemImpl) trunks.elementAt(i)));
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		// all stems are made now, merge their boxes from the
+		// top of the tree down to the trunks
+		for (int i = 0; i < trunks.size(); i++) {
+			StemImpl trunk = (StemImpl) trunks.elementAt(i);
+			trunk.mergeBounds();
+			bounds.extendBy(trunk.bounds);
+		}
+
 		// set leafCount and stemCount for the tree
 		if (params.Leaves == 0) {
 			setLeafCount(0);
@@ -224,11 +274,6 @@ class TreeImpl implements Tree {
 		return traversal.leaveTree(this);
 	}
 
-	public void minMaxTest(Vector pt) {
-		maxPoint.setMaxCoord(pt);
-		minPoint.setMinCoord(pt);
-	}
-
 	/*
 	 void Tree::dump() const {
 	 cout << "TREE:\n";
@@ -0,0 +1,111 @@
+package net.katsstuff.arbaro.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeGenerator;
+import net.katsstuff.arbaro.tree.TreeGeneratorFactory;
+
+/**
+ * Checks, that the counts and lengths in the headers of the binary formats fit to the data written after them
+ */
+public class BinaryExporterTest extends TestCase {
+
+	// the high ratio power makes branches so thin, that their last two sections have a single point each
+	static final String cfg =
+		"species=thin\n" +
+		"Shape=2\n" +
+		"Levels=2\n" +
+		"Scale=10.0\n" +
+		"BaseSize=0.2\n" +
+		"Ratio=0.02\n" +
+		"RatioPower=5\n" +
+		"0CurveRes=6\n" +
+		"1Branches=20\n" +
+		"1Length=0.4\n" +
+		"1CurveRes=5\n" +
+		"Leaves=5\n";
+
+	private static Tree makeTree() {
+		TreeGenerator generator = TreeGeneratorFactory.createTreeGenerator();
+		generator.readParamsFromCfg(new ByteArrayInputStream(cfg.getBytes()));
+		generator.setSeed(7);
+		return generator.makeTree(new Progress());
+	}
+
+	private static ByteBuffer export(int format, boolean welded) throws Exception {
+		ExporterFactory.setWeldedStems(welded);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ExporterFactory.createExporter(makeTree(), format).write(out, new Progress());
+			return ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			ExporterFactory.setWeldedStems(false);
+		}
+	}
+
+	private static void checkPLY(boolean welded) throws Exception {
+		ByteBuffer ply = export(ExporterFactory.PLY, welded);
+		String text = new String(ply.array(), StandardCharsets.US_ASCII);
+		int end = text.indexOf("end_header\n") + "end_header\n".length();
+		String[] header = text.substring(0, end).split("\n");
+		int vertices = -1;
+		int faces = -1;
+		int properties = 0;
+		for (int i = 0; i < header.length; i++) {
+			if (header[i].startsWith("element vertex ")) {
+				vertices = Integer.parseInt(header[i].substring("element vertex ".length()));
+			} else if (header[i].startsWith("element face ")) {
+				faces = Integer.parseInt(header[i].substring("element face ".length()));
+			} else if (header[i].startsWith("property float ")) {
+				properties++;
+			}
+		}
+		assertTrue(vertices > 0);
+		assertTrue(faces > 0);
+
+		// the faces are a count byte followed by the vertex indices
+		ply.position(end + 4 * properties * vertices);
+		for (int f = 0; f < faces; f++) {
+			int size = ply.get();
+			assertTrue(size == 3 || size == 4);
+			for (int i = 0; i < size; i++) {
+				int index = ply.getInt();
+				assertTrue(index >= 0 && index < vertices);
+			}
+		}
+		assertEquals(0, ply.remaining());
+	}
+
+	public void testPLY() throws Exception {
+		checkPLY(false);
+	}
+
+	public void testWeldedPLY() throws Exception {
+		checkPLY(true);
+	}
+
+	public void testSTL() throws Exception {
+		ByteBuffer stl = export(ExporterFactory.STL, false);
+		// 80 bytes header, the triangle count and 50 bytes per triangle
+		int triangles = stl.getInt(80);
+		assertTrue(triangles > 0);
+		assertEquals(84 + 50 * triangles, stl.limit());
+	}
+
+	public void testGLB() throws Exception {
+		ByteBuffer glb = export(ExporterFactory.GLB, false);
+		assertEquals(0x46546C67, glb.getInt(0));
+		assertEquals(glb.limit(), glb.getInt(8));
+
+		int jsonLength = glb.getInt(12);
+		String json = new String(glb.array(), 20, jsonLength, StandardCharsets.UTF_8);
+		int binLength = glb.getInt(20 + jsonLength);
+		assertEquals(glb.limit(), 20 + jsonLength + 8 + binLength);
+		assertTrue(json.indexOf("\"buffers\":[{\"byteLength\":" + binLength + "}]") >= 0);
+	}
+}
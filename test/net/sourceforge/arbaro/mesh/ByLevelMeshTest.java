@@ -0,0 +1,34 @@
+package net.katsstuff.arbaro.mesh;
+
+import java.util.Enumeration;
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.tree.Tree;
+
+/**
+ * Checks, that a mesh created by level in one traversal has the parts of every level in the order of the tree
+ */
+public class ByLevelMeshTest extends TestCase {
+
+	public void testLevelRanges() {
+		Tree tree = MeshFixtures.makeTree();
+		MeshGenerator generator = new MeshGeneratorImpl(false);
+		Mesh byLevel = generator.createStemMeshByLevel(tree, new Progress());
+		Mesh byTree = generator.createStemMesh(MeshFixtures.makeTree(), new Progress());
+
+		assertTrue(byLevel.isOrderedByLevel());
+		assertFalse(byTree.isOrderedByLevel());
+		assertEquals(byTree.size(), byLevel.size());
+		assertEquals(byLevel.size(), byLevel.levelEnd(tree.getLevels() - 1));
+
+		for (int level = 0; level < tree.getLevels(); level++) {
+			assertEquals(byLevel.firstMeshPart[level], byLevel.levelStart(level));
+			int p = byLevel.levelStart(level);
+			for (Enumeration parts = byTree.allParts(level); parts.hasMoreElements(); p++) {
+				MeshPart part = (MeshPart) parts.nextElement();
+				assertEquals(part.getTreePosition(), ((MeshPart) byLevel.elementAt(p)).getTreePosition());
+			}
+			assertEquals(byLevel.levelEnd(level), p);
+		}
+	}
+}
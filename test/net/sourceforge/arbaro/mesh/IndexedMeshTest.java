@@ -0,0 +1,153 @@
+package net.katsstuff.arbaro.mesh;
+
+import java.util.Enumeration;
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.transformation.Vector;
+
+/**
+ * Checks, that an indexed mesh has the vertices and faces of the mesh's enumerations
+ */
+public class IndexedMeshTest extends TestCase {
+
+	private static void checkSame(boolean useQuads) {
+		Mesh mesh = new MeshGeneratorImpl(useQuads).createStemMeshByLevel(
+			MeshFixtures.makeTree(), new Progress());
+		IndexedMesh indexed = new IndexedMesh(mesh, true, true);
+
+		assertEquals(mesh.size(), indexed.partCount);
+		assertEquals(mesh.vertexCount(), indexed.vertexCount);
+		int v = 0;
+		for (Enumeration e = mesh.allVertices(false); e.hasMoreElements(); v++) {
+			Vertex vertex = (Vertex) e.nextElement();
+			assertEquals(vertex.point, indexed.positions, v);
+			assertEquals(vertex.uv.u, indexed.vertexUVs[2 * v], 0);
+			assertEquals(vertex.uv.v, indexed.vertexUVs[2 * v + 1], 0);
+		}
+		assertEquals(indexed.vertexCount, v);
+
+		for (int p = 0; p < mesh.size(); p++) {
+			double[] normals = ((MeshPart) mesh.elementAt(p)).getNormals();
+			for (int i = 0; i < normals.length; i++) {
+				assertEquals(normals[i], indexed.normals[3 * indexed.partVertexStarts[p] + i], 0);
+			}
+		}
+
+		int u = 0;
+		for (Enumeration e = mesh.allVertices(true); e.hasMoreElements(); u++) {
+			UVVector uv = (UVVector) e.nextElement();
+			assertEquals(uv.u, indexed.uvs[2 * u], 0);
+			assertEquals(uv.v, indexed.uvs[2 * u + 1], 0);
+		}
+		assertEquals(indexed.uvCount, u);
+
+		int f = 0;
+		Enumeration uvFaces = mesh.allFaces(0, true, -1);
+		for (Enumeration faces = mesh.allFaces(0, false, -1); faces.hasMoreElements(); f++) {
+			Face face = (Face) faces.nextElement();
+			Face uvFace = (Face) uvFaces.nextElement();
+			assertEquals(face.points.length, indexed.faceSize(f));
+			for (int i = 0; i < face.points.length; i++) {
+				assertEquals(face.points[i], indexed.indices[indexed.faceStarts[f] + i]);
+				assertEquals(uvFace.points[i], indexed.uvIndices[indexed.faceStarts[f] + i]);
+			}
+		}
+		assertEquals(indexed.faceCount, f);
+		assertEquals(indexed.faceCount, indexed.partFaceStarts[indexed.partCount]);
+	}
+
+	private static void assertEquals(Vector expected, double[] coords, int i) {
+		assertEquals(expected.getX(), coords[3 * i], 0);
+		assertEquals(expected.getY(), coords[3 * i + 1], 0);
+		assertEquals(expected.getZ(), coords[3 * i + 2], 0);
+	}
+
+	private static void checkWelded(LevelOfDetail lod) {
+		Mesh mesh = new MeshGeneratorImpl(false, lod).createStemMesh(
+			MeshFixtures.makeTree(MeshFixtures.splitCfg), new Progress());
+		IndexedMesh indexed = new IndexedMesh(mesh, false, true);
+		IndexedMesh welded = new IndexedMesh(mesh, false, true, true);
+		assertEquals(indexed.faceCount, welded.faceCount);
+
+		int clones = 0;
+		int clonesOfClones = 0;
+		int ringVertices = 0;
+		for (int p = 0; p < mesh.size(); p++) {
+			MeshPart part = (MeshPart) mesh.elementAt(p);
+			int ownVertices = welded.partVertexStarts[p + 1] - welded.partVertexStarts[p];
+			if (ownVertices == part.vertexCount()) {
+				continue; // not welded
+			}
+			assertNotNull(part.clonedFrom);
+			MeshSection first = (MeshSection) part.elementAt(1);
+			assertEquals(part.vertexCount() - first.size(), ownVertices);
+			ringVertices += first.size();
+			clones++;
+			if (part.clonedFrom.getStem().isClone()) {
+				clonesOfClones++;
+			}
+
+			// the parent's ring has the center and radius of the clone's
+			// first ring, but is rotated and tilted against it
+			Vector center = new Vector();
+			for (int i = 0; i < first.size(); i++) {
+				center = center.add(first.pointAt(i));
+			}
+			center = center.mul(1.0 / first.size());
+			double diameter = 0;
+			for (int i = 0; i < first.size(); i++) {
+				diameter = Math.max(diameter, 2 * first.pointAt(i).sub(center).abs());
+			}
+
+			for (int f = welded.partFaceStarts[p]; f < welded.partFaceStarts[p + 1]; f++) {
+				for (int i = welded.faceStarts[f]; i < welded.faceStarts[f + 1]; i++) {
+					int vertex = welded.indices[i];
+					int own = indexed.indices[i] - indexed.partVertexStarts[p];
+					if (vertex < welded.partVertexStarts[p]) {
+						// a vertex of the parent's ring in place of one of the clone's first ring
+						assertTrue(own < first.size());
+						assertTrue(distance(welded, vertex, first.pointAt(own)) <= diameter);
+					} else {
+						assertEquals(own - first.size(), vertex - welded.partVertexStarts[p]);
+						assertEquals(0, distance(welded, vertex, indexed, indexed.indices[i]), 0);
+					}
+					for (int j = i + 1; j < welded.faceStarts[f + 1]; j++) {
+						assertTrue(vertex != welded.indices[j]);
+					}
+					assertEquals(indexed.uvIndices[i], welded.uvIndices[i]);
+				}
+			}
+		}
+		assertTrue(clones > 0);
+		if (lod == null) {
+			assertTrue(clonesOfClones > 0);
+		}
+		assertEquals(indexed.vertexCount - ringVertices, welded.vertexCount);
+	}
+
+	private static double distance(IndexedMesh mesh, int v, Vector point) {
+		return new Vector(mesh.positions[3 * v], mesh.positions[3 * v + 1], mesh.positions[3 * v + 2])
+			.sub(point).abs();
+	}
+
+	private static double distance(IndexedMesh mesh, int v, IndexedMesh other, int w) {
+		return distance(mesh, v, new Vector(other.positions[3 * w], other.positions[3 * w + 1],
+			other.positions[3 * w + 2]));
+	}
+
+	public void testWelded() {
+		checkWelded(null);
+	}
+
+	public void testWeldedLOD() {
+		checkWelded(LevelOfDetail.getDefaultLevels()[2]);
+	}
+
+	public void testTriangles() {
+		checkSame(false);
+	}
+
+	public void testQuads() {
+		checkSame(true);
+	}
+}
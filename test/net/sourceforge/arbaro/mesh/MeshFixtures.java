@@ -0,0 +1,49 @@
+package net.katsstuff.arbaro.mesh;
+
+import java.io.ByteArrayInputStream;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.tree.Tree;
+import net.katsstuff.arbaro.tree.TreeGenerator;
+import net.katsstuff.arbaro.tree.TreeGeneratorFactory;
+
+/**
+ * The trees shared by the tests of the mesh package
+ */
+class MeshFixtures {
+
+	// trunks with lobes use the tree's random generator for their section points
+	static final String lobedCfg =
+		"species=lobed\n" +
+		"Shape=2\n" +
+		"Levels=3\n" +
+		"Scale=10.0\n" +
+		"BaseSize=0.2\n" +
+		"Ratio=0.02\n" +
+		"Lobes=5\n" +
+		"LobeDepth=0.1\n" +
+		"0ScaleV=0.5\n" +
+		"0BaseSplits=2\n" +
+		"0CurveRes=6\n" +
+		"1Branches=40\n" +
+		"1Length=0.4\n" +
+		"1CurveRes=5\n" +
+		"2Branches=20\n" +
+		"2Length=0.3\n" +
+		"2CurveRes=3\n";
+
+	// the branches split into clones, which split again
+	static final String splitCfg = lobedCfg +
+		"1SegSplits=0.6\n" +
+		"1SplitAngle=30\n";
+
+	static Tree makeTree(String cfg) {
+		TreeGenerator generator = TreeGeneratorFactory.createTreeGenerator();
+		generator.readParamsFromCfg(new ByteArrayInputStream(cfg.getBytes()));
+		generator.setSeed(7);
+		return generator.makeTree(new Progress());
+	}
+
+	static Tree makeTree() {
+		return makeTree(lobedCfg);
+	}
+}
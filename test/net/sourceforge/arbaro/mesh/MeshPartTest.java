@@ -0,0 +1,43 @@
+package net.katsstuff.arbaro.mesh;
+
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.transformation.Vector;
+
+/**
+ * Checks the vertex normals calculated for the mesh parts
+ */
+public class MeshPartTest extends TestCase {
+
+	public void testNormals() {
+		Mesh mesh = new MeshGeneratorImpl(false).createStemMesh(MeshFixtures.makeTree(), new Progress());
+		for (int p = 0; p < mesh.size(); p++) {
+			MeshPart part = (MeshPart) mesh.elementAt(p);
+			double[] normals = part.getNormals();
+			assertSame(normals, part.getNormals());
+			assertEquals(3 * part.vertexCount(), normals.length);
+
+			int k = 0;
+			for (int s = 1; s < part.size(); s++) {
+				MeshSection section = (MeshSection) part.elementAt(s);
+				Vector center = new Vector();
+				for (int i = 0; i < section.size(); i++) {
+					center = center.add(section.pointAt(i));
+				}
+				center = center.mul(1.0 / section.size());
+
+				for (int i = 0; i < section.size(); i++, k++) {
+					Vector normal = new Vector(normals[3 * k], normals[3 * k + 1], normals[3 * k + 2]);
+					assertEquals(1, normal.abs(), 1e-9);
+					if (s == part.size() - 1) {
+						// the last section keeps the normals in stem direction
+						assertEquals(0, normal.sub(((Vertex) section.elementAt(i)).normal).abs(), 0);
+					} else if (section.size() > 2) {
+						// the rings' normals point outwards
+						assertTrue(normal.prod(section.pointAt(i).sub(center)) > 0);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package net.katsstuff.arbaro.mesh;
+
+import java.util.Enumeration;
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+
+/**
+ * Checks, that the parallel mesh generator creates the same meshes as the sequential one
+ */
+public class ParallelMeshGeneratorTest extends TestCase {
+
+	private static String dump(Mesh mesh) {
+		StringBuffer buf = new StringBuffer();
+		for (int l = 0; l < mesh.firstMeshPart.length; l++) {
+			buf.append(mesh.firstMeshPart[l]).append(' ');
+		}
+		buf.append('\n');
+		for (int i = 0; i < mesh.size(); i++) {
+			MeshPart part = (MeshPart) mesh.elementAt(i);
+			buf.append(part.getTreePosition()).append('\n');
+			for (Enumeration v = part.allVertices(false); v.hasMoreElements(); ) {
+				Vertex vertex = (Vertex) v.nextElement();
+				buf.append(vertex.point).append(' ').append(vertex.normal).append('\n');
+			}
+		}
+		return buf.toString();
+	}
+
+	private static void checkSame(LevelOfDetail lod) {
+		// every mesh needs its own tree, because the trunks' random numbers are drawn again
+		Mesh sequential = new MeshGeneratorImpl(false, lod).createStemMesh(MeshFixtures.makeTree(), new Progress());
+		Mesh parallel = new ParallelMeshGenerator(false, lod, 3).createStemMesh(MeshFixtures.makeTree(), new Progress());
+		assertTrue(sequential.size() > 100);
+		assertEquals(dump(sequential), dump(parallel));
+
+		sequential = new MeshGeneratorImpl(true, lod).createStemMeshByLevel(MeshFixtures.makeTree(), new Progress());
+		parallel = new ParallelMeshGenerator(true, lod, 3).createStemMeshByLevel(MeshFixtures.makeTree(), new Progress());
+		assertEquals(dump(sequential), dump(parallel));
+	}
+
+	public void testFullDetail() {
+		checkSame(null);
+	}
+
+	public void testLevelOfDetail() {
+		checkSame(LevelOfDetail.getDefaultLevels()[2]);
+	}
+}
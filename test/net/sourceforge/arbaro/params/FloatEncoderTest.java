@@ -0,0 +1,51 @@
+package net.katsstuff.arbaro.params;
+
+import java.text.NumberFormat;
+import junit.framework.TestCase;
+
+/**
+ * Compares the output of FloatEncoder with the one of FloatFormat
+ */
+public class FloatEncoderTest extends TestCase {
+
+	static final double[] values = {
+		0, -0.0, 1, -1, 0.5, 0.000005, -0.000005, 0.000015, 0.000025, 0.0000049,
+		-0.0000001, 1.000005, 2.5, 999.999995, 99999.999995, 1234567.123456,
+		999999999.999995, 1e9, 123456789012345.678, 1e20, -1e-320,
+		Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+		Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+	};
+
+	private static void assertSame(FloatEncoder encoder, double value) {
+		NumberFormat format = FloatFormat.getInstance();
+		assertEquals("formatting " + value, format.format(value), encoder.format(value));
+	}
+
+	public void testSpecialValues() {
+		FloatEncoder encoder = new FloatEncoder();
+		for (int i = 0; i < values.length; i++) {
+			assertSame(encoder, values[i]);
+		}
+	}
+
+	public void testRandomValues() {
+		FloatEncoder encoder = new FloatEncoder();
+		java.util.Random random = new java.util.Random(1);
+		for (int i = 0; i < 100000; i++) {
+			assertSame(encoder, random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10));
+			// values on and next to the middle between two results
+			double tie = (random.nextInt(2000000) - 1000000) * 0.000005;
+			assertSame(encoder, tie);
+			assertSame(encoder, Math.nextUp(tie));
+			assertSame(encoder, Math.nextDown(tie));
+		}
+	}
+
+	public void testEncodeAtPosition() {
+		FloatEncoder encoder = new FloatEncoder();
+		char[] buf = new char[FloatEncoder.MAX_LENGTH + 2];
+		buf[0] = '<';
+		int end = encoder.encode(-1234.5, buf, 1);
+		assertEquals("<-1,234.5", new String(buf, 0, end));
+	}
+}
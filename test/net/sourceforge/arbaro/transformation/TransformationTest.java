@@ -95,6 +95,40 @@ public class TransformationTest extends TestCase {
 		assertVectorEquals(T.apply(new Vector(1,1,1)),new Vector(5,13,21));
 	}
 
+	public void testApplyDst() {
+		Transformation T = new Transformation(aTestMatrix, aTestVector);
+		Vector v = new Vector(1,1,1);
+		Vector dst = new Vector();
+		assertSame(T.apply(v,dst),dst);
+		assertVectorEquals(dst,new Vector(5,13,21));
+		// the vector itself can take the result
+		T.apply(v,v);
+		assertVectorEquals(v,new Vector(5,13,21));
+	}
+
+	public void testCopy() {
+		Transformation T = new Transformation(aTestMatrix,aTestVector);
+		Transformation C = new Transformation(T);
+		assertTransformationEquals(T,C);
+		assertNotSame(T.matrix(),C.matrix());
+		assertNotSame(T.vector(),C.vector());
+	}
+
+	public void testLocal() {
+		Transformation T = new Transformation().rotx(30).roty(-130).rotz(250).translate(aTestVector);
+		Transformation T1 = T.rotx(12).roty(-34).rotz(56).rotxz(-32,261).rotaxisz(17,83)
+			.rotaxis(135,aTestVector).translate(aTestVector);
+		Transformation T2 = new Transformation(T).rotxLocal(12).rotyLocal(-34).rotzLocal(56).rotxzLocal(-32,261)
+			.rotaxiszLocal(17,83).rotaxisLocal(135,aTestVector).translateLocal(aTestVector);
+		// the same values, not only within the precision
+		for (int r=0; r<=2; r++) {
+			for (int c=0;c<=2; c++) {
+				assertEquals(T1.matrix().get(r,c),T2.matrix().get(r,c),0);
+			}
+			assertEquals(T1.vector().get(r),T2.vector().get(r),0);
+		}
+	}
+
 	public void testGetX() {
 		assertVectorEquals(new Transformation(aTestMatrix,aTestVector).getX(),aTestMatrix.col(0));
 	}
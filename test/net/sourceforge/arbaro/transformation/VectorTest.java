@@ -126,6 +126,56 @@ public class VectorTest extends TestCase {
 		assertEquals(w.getZ(),1,prec);		
 	}
 
+	public void testSet() {
+		Vector u = new Vector(-1,2,3);
+		assertSame(u.set(4,5,6),u);
+		assertEquals(u.getX(),4,prec);
+		assertEquals(u.getY(),5,prec);
+		assertEquals(u.getZ(),6,prec);
+		u.set(new Vector(-2,2,2));
+		assertEquals(u.getX(),-2,prec);
+		assertEquals(u.getY(),2,prec);
+		assertEquals(u.getZ(),2,prec);
+	}
+
+	public void testMulLocal() {
+		Vector u = new Vector(-1,2,3);
+		Vector v = u.mul(-2);
+		assertSame(u.mulLocal(-2),u);
+		assertEquals(u.getX(),v.getX(),0);
+		assertEquals(u.getY(),v.getY(),0);
+		assertEquals(u.getZ(),v.getZ(),0);
+	}
+
+	public void testAddLocal() {
+		Vector u = new Vector(-1,2,3);
+		Vector v = new Vector(-2,2,2);
+		Vector w = u.add(v);
+		assertSame(u.addLocal(v),u);
+		assertEquals(u.getX(),w.getX(),0);
+		assertEquals(u.getY(),w.getY(),0);
+		assertEquals(u.getZ(),w.getZ(),0);
+	}
+
+	public void testSubLocal() {
+		Vector u = new Vector(-1,2,3);
+		Vector v = new Vector(-2,2,2);
+		Vector w = u.sub(v);
+		assertSame(u.subLocal(v),u);
+		assertEquals(u.getX(),w.getX(),0);
+		assertEquals(u.getY(),w.getY(),0);
+		assertEquals(u.getZ(),w.getZ(),0);
+	}
+
+	public void testNormalizeLocal() {
+		Vector u = new Vector(3,4,5);
+		Vector n = u.normalize();
+		assertSame(u.normalizeLocal(),u);
+		assertEquals(u.getX(),n.getX(),0);
+		assertEquals(u.getY(),n.getY(),0);
+		assertEquals(u.getZ(),n.getZ(),0);
+	}
+
 	public void testAtan2() {
 		assertEquals(Vector.atan2(0,2),0,prec);
 		assertEquals(Vector.atan2(2,0),90,prec);
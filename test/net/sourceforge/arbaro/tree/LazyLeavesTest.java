@@ -0,0 +1,43 @@
+package net.katsstuff.arbaro.tree;
+
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.params.Params;
+
+/**
+ * Checks, that trees with lazy leaves are the same as trees keeping their leaves
+ */
+public class LazyLeavesTest extends TestCase {
+
+	private static TreeImpl makeTree(String cfg, boolean lazy, boolean positional) {
+		Params params = TreeFixtures.readParams(cfg);
+		params.lazyLeaves = lazy;
+		params.positionalRandom = positional;
+		TreeImpl tree = new TreeImpl(4, params);
+		tree.make(new Progress());
+		return tree;
+	}
+
+	private static void checkSame(String cfg, boolean positional) {
+		TreeImpl eager = makeTree(cfg, false, positional);
+		TreeImpl lazy = makeTree(cfg, true, positional);
+
+		assertTrue(eager.getLeafCount() > 0);
+		assertEquals(eager.getLeafCount(), lazy.getLeafCount());
+		assertEquals(TreeFixtures.dump(eager), TreeFixtures.dump(lazy));
+		// leaves are made again for every traversal
+		assertEquals(TreeFixtures.dump(lazy), TreeFixtures.dump(lazy));
+	}
+
+	public void testLeavesAlongStems() {
+		String cfg = TreeFixtures.willowCfg.replaceAll("Leaves=0", "Leaves=10") + "Levels=3\nLeafBend=0.3\n";
+		checkSame(cfg, false);
+		checkSame(cfg, true);
+	}
+
+	public void testLeafFans() {
+		String cfg = TreeFixtures.willowCfg.replaceAll("Leaves=0", "Leaves=-5") + "Levels=2\n";
+		checkSame(cfg, false);
+		checkSame(cfg, true);
+	}
+}
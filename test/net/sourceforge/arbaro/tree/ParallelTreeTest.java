@@ -0,0 +1,60 @@
+package net.katsstuff.arbaro.tree;
+
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.params.Params;
+
+/**
+ * Checks, that trees made with several threads are the same as the ones made sequentially
+ */
+public class ParallelTreeTest extends TestCase {
+
+	// three levels, so stems fork tasks for their clones and substems and make deeper levels in their own task
+	static final String cfg = TreeFixtures.willowCfg.replaceAll("Leaves=0", "Leaves=10");
+
+	private static TreeImpl makeTree(int parallelism, boolean positional) {
+		Params params = TreeFixtures.readParams(cfg);
+		params.positionalRandom = positional;
+		TreeImpl tree = new TreeImpl(4, params);
+		tree.setParallelism(parallelism);
+		tree.make(new Progress());
+		return tree;
+	}
+
+	private static String transformations(Tree tree) {
+		final StringBuilder str = new StringBuilder();
+		tree.traverseTree(new DefaultTreeTraversal() {
+			public boolean enterStem(Stem stem) {
+				str.append(stem.getTreePosition()).append(' ').append(stem.getTransformation()).append('\n');
+				return true;
+			}
+
+			public boolean visitLeaf(Leaf leaf) {
+				str.append(leaf.getTransformation()).append('\n');
+				return true;
+			}
+		});
+		return str.toString();
+	}
+
+	private static void checkSame(boolean positional) {
+		TreeImpl sequential = makeTree(1, positional);
+		TreeImpl parallel = makeTree(4, positional);
+
+		assertTrue(sequential.getStemCount() > 100);
+		assertTrue(sequential.getLeafCount() > 0);
+		assertEquals(sequential.getStemCount(), parallel.getStemCount());
+		assertEquals(sequential.getLeafCount(), parallel.getLeafCount());
+		assertEquals(transformations(sequential), transformations(parallel));
+		assertEquals(TreeFixtures.dump(sequential), TreeFixtures.dump(parallel));
+	}
+
+	public void testSameAsSequential() {
+		checkSame(false);
+	}
+
+	// the substems of a stem are made in its task, when the stems have their own random generators
+	public void testPositionalRandom() {
+		checkSame(true);
+	}
+}
@@ -0,0 +1,43 @@
+package net.katsstuff.arbaro.tree;
+
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+
+/**
+ * Compares the stem lengths of pruned trees with the ones made by the former pruning method
+ */
+public class PruningTest extends TestCase {
+
+	static final double prec = 0.000001;
+
+	private static TreeImpl makeTree(int seed, boolean byRegeneration) {
+		TreeImpl tree = new TreeImpl(seed, TreeFixtures.readParams(TreeFixtures.willowCfg));
+		tree.pruneByRegeneration = byRegeneration;
+		tree.make(new Progress());
+		return tree;
+	}
+
+	private static java.util.Vector stemLengths(Tree tree) {
+		final java.util.Vector lengths = new java.util.Vector();
+		tree.traverseTree(new DefaultTreeTraversal() {
+			public boolean enterStem(Stem stem) {
+				lengths.addElement(Double.valueOf(stem.getLength()));
+				return true;
+			}
+		});
+		return lengths;
+	}
+
+	public void testPrunedLengths() {
+		for (int seed = 1; seed <= 3; seed++) {
+			java.util.Vector expected = stemLengths(makeTree(seed, true));
+			java.util.Vector actual = stemLengths(makeTree(seed, false));
+
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				double len = ((Double) expected.elementAt(i)).doubleValue();
+				assertEquals(len, ((Double) actual.elementAt(i)).doubleValue(), prec * Math.max(1, len));
+			}
+		}
+	}
+}
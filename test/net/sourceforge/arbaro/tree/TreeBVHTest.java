@@ -0,0 +1,92 @@
+package net.katsstuff.arbaro.tree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Enumeration;
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.transformation.Box;
+import net.katsstuff.arbaro.transformation.Vector;
+
+/**
+ * Checks the queries of the bounding volume hierarchy of a small tree
+ */
+public class TreeBVHTest extends TestCase {
+
+	static final double prec = 0.000001;
+
+	private static TreeImpl makeTree() {
+		return TreeFixtures.makeTree(TreeFixtures.leafyWillowCfg, 4);
+	}
+
+	public void testBoxContainsAll() {
+		TreeImpl tree = makeTree();
+		TreeBVH bvh = TreeBVH.build(tree);
+
+		assertEquals(tree.getStemCount(), bvh.getStemCount());
+		assertEquals(tree.getLeafCount(), bvh.getLeafCount());
+		assertEquals(tree.getStemCount(), bvh.stemsInBox(bvh.getBounds()).length);
+		assertEquals(tree.getLeafCount(), bvh.leavesInBox(bvh.getBounds()).length);
+
+		Box empty = new Box(new Vector(1000, 1000, 1000), new Vector(1001, 1001, 1001));
+		assertEquals(0, bvh.stemsInBox(empty).length);
+	}
+
+	public void testNearestStem() {
+		TreeImpl tree = makeTree();
+		TreeBVH bvh = TreeBVH.build(tree);
+
+		// the trunk sections lie inside the trunk
+		Stem trunk = (Stem) tree.trunks.elementAt(0);
+		for (Enumeration sections = trunk.sections(); sections.hasMoreElements(); ) {
+			StemSection section = (StemSection) sections.nextElement();
+			TreeBVH.Hit hit = bvh.nearestStem(section.getPosition());
+			assertEquals(0, hit.distance, prec);
+		}
+
+		TreeBVH.Hit hit = bvh.nearestStem(new Vector(0, 0, -10));
+		assertEquals(0, hit.stem);
+		assertEquals(trunk.getTreePosition(), bvh.getStemPosition(hit.stem));
+		// measured from the surface of the trunk base
+		assertTrue(hit.distance > 10 - trunk.getBaseRadius() * 2 && hit.distance < 10);
+	}
+
+	public void testRay() {
+		TreeBVH bvh = TreeBVH.build(makeTree());
+
+		// a horizontal ray hits the trunk near its base
+		TreeBVH.Hit hit = bvh.intersectRay(new Vector(-100, 0, 0.01), new Vector(2, 0, 0), 1000);
+		assertNotNull(hit);
+		assertFalse(hit.isLeaf());
+		assertEquals(0, hit.stem);
+		assertTrue(hit.distance > 99 && hit.distance < 100);
+
+		assertNull(bvh.intersectRay(new Vector(-100, 0, 0.01), new Vector(2, 0, 0), 50));
+		assertNull(bvh.intersectRay(new Vector(-100, 0, 0.01), new Vector(-1, 0, 0), 1000));
+	}
+
+	public void testKeptWithTree() {
+		TreeImpl tree = makeTree();
+		TreeBVH bvh = tree.getBVH();
+		assertSame(bvh, tree.getBVH());
+		// the compact tree has the same stems and leaves
+		assertSame(bvh, CompactTree.compact(tree).getBVH());
+		assertEquals(tree.getStemCount(), CompactTree.compact(makeTree()).getBVH().getStemCount());
+	}
+
+	public void testSerialization() throws Exception {
+		TreeBVH bvh = TreeBVH.build(makeTree());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(bvh);
+		out.close();
+		TreeBVH read = (TreeBVH) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+		Vector point = new Vector(1, 2, 3);
+		assertEquals(bvh.nearestStem(point).stem, read.nearestStem(point).stem);
+		assertEquals(bvh.nearestStem(point).distance, read.nearestStem(point).distance, prec);
+		assertEquals(bvh.leavesInBox(bvh.getBounds()).length, read.leavesInBox(read.getBounds()).length);
+	}
+}
@@ -0,0 +1,86 @@
+package net.katsstuff.arbaro.tree;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.params.Params;
+
+/**
+ * Checks, that cached trees are the same as generated ones and that the cache keeps its size
+ */
+public class TreeCacheTest extends TestCase {
+
+	private File dir;
+
+	protected void setUp() throws IOException {
+		dir = File.createTempFile("treecache", "");
+		dir.delete();
+	}
+
+	protected void tearDown() {
+		File[] files = dir.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			files[i].delete();
+		}
+		dir.delete();
+	}
+
+	private static TreeGenerator makeGenerator(int seed) {
+		TreeGenerator generator =
+			TreeGeneratorFactory.createTreeGenerator(TreeFixtures.readParams(TreeFixtures.leafyWillowCfg));
+		generator.setSeed(seed);
+		return generator;
+	}
+
+	public void testCachedTreeIsSame() {
+		TreeCache cache = new TreeCache(dir, 1 << 30);
+
+		TreeGenerator generator = makeGenerator(4);
+		generator.setCache(cache);
+		Tree made = generator.makeTree(new Progress());
+		assertTrue(made instanceof TreeImpl);
+		assertEquals(1, dir.listFiles().length);
+
+		generator = makeGenerator(4);
+		generator.setCache(cache);
+		Tree cached = generator.makeTree(new Progress());
+		assertTrue(cached instanceof CompactTree);
+		assertEquals(made.getStemCount(), cached.getStemCount());
+		assertEquals(made.getLeafCount(), cached.getLeafCount());
+		assertEquals(TreeFixtures.dump(made), TreeFixtures.dump(cached));
+
+		// another seed is another tree
+		generator = makeGenerator(5);
+		generator.setCache(cache);
+		assertTrue(generator.makeTree(new Progress()) instanceof TreeImpl);
+		assertEquals(2, dir.listFiles().length);
+	}
+
+	public void testEviction() {
+		TreeGenerator generator = makeGenerator(4);
+		generator.setCache(new TreeCache(dir, 1 << 30));
+		generator.makeTree(new Progress());
+		long size = dir.listFiles()[0].length();
+		dir.listFiles()[0].setLastModified(System.currentTimeMillis() - 100000);
+
+		// room for one tree only, the older one goes
+		TreeCache cache = new TreeCache(dir, size * 3 / 2);
+		generator = makeGenerator(5);
+		generator.setCache(cache);
+		generator.makeTree(new Progress());
+		File[] files = dir.listFiles();
+		assertEquals(1, files.length);
+		assertTrue(files[0].getName().endsWith("-5" + TreeCache.SUFFIX));
+	}
+
+	public void testDigest() {
+		Params params = makeGenerator(4).getParams();
+		params.prepare(4);
+		String digest = params.getDigest();
+		assertEquals(digest, new Params(params).getDigest());
+
+		params.setParam("Smooth", "0.1");
+		assertFalse(digest.equals(params.getDigest()));
+	}
+}
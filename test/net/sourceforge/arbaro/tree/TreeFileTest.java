@@ -0,0 +1,113 @@
+package net.katsstuff.arbaro.tree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import junit.framework.TestCase;
+
+/**
+ * Writes trees to tree files and checks, that the trees read from them are the same
+ */
+public class TreeFileTest extends TestCase {
+
+	private File file;
+
+	protected void setUp() throws IOException {
+		file = File.createTempFile("tree", TreeCache.SUFFIX);
+	}
+
+	protected void tearDown() {
+		file.delete();
+	}
+
+	private static TreeImpl makeTree() {
+		return TreeFixtures.makeTree(TreeFixtures.leafyWillowCfg, 4);
+	}
+
+	private void checkRoundTrip(boolean compress) throws IOException {
+		TreeImpl tree = makeTree();
+		TreeFile.write(tree, file, compress);
+		CompactTree read = (CompactTree) TreeFile.read(file);
+
+		assertEquals(tree.getSeed(), read.getSeed());
+		assertEquals(tree.getSpecies(), read.getSpecies());
+		assertEquals(tree.getStemCount(), read.getStemCount());
+		assertEquals(tree.getLeafCount(), read.getLeafCount());
+		assertEquals(tree.getMaxPoint().toString(), read.getMaxPoint().toString());
+		assertEquals(TreeFixtures.dump(tree), TreeFixtures.dump(read));
+		assertNull(read.bvh);
+	}
+
+	private static byte[] serialized(TreeBVH bvh) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(bvh);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private void checkBVHRoundTrip(boolean compress) throws IOException {
+		TreeImpl tree = makeTree();
+		TreeBVH bvh = tree.getBVH();
+		TreeFile.write(tree, file, compress);
+		CompactTree read = (CompactTree) TreeFile.read(file);
+
+		assertEquals(TreeFixtures.dump(tree), TreeFixtures.dump(read));
+		// read from the file, not built again
+		assertNotNull(read.bvh);
+		assertTrue(java.util.Arrays.equals(serialized(bvh), serialized(read.getBVH())));
+
+		// a tree read with its hierarchy saves it again
+		File copy = File.createTempFile("tree", TreeCache.SUFFIX);
+		try {
+			TreeFile.write(read, copy, !compress);
+			assertTrue(java.util.Arrays.equals(serialized(bvh), serialized(((CompactTree) TreeFile.read(copy)).bvh)));
+		} finally {
+			copy.delete();
+		}
+	}
+
+	public void testWriteRead() throws IOException {
+		checkRoundTrip(false);
+	}
+
+	public void testWriteReadDeflated() throws IOException {
+		checkRoundTrip(true);
+	}
+
+	public void testWriteReadBVH() throws IOException {
+		checkBVHRoundTrip(false);
+	}
+
+	public void testWriteReadBVHDeflated() throws IOException {
+		checkBVHRoundTrip(true);
+	}
+
+	public void testInvalidFile() throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("no tree".getBytes());
+		out.close();
+		try {
+			TreeFile.read(file);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+
+		// truncated tree data
+		TreeFile.write(makeTree(), file, false);
+		long length = file.length();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(length - 100);
+		raf.close();
+		try {
+			TreeFile.read(file);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package net.katsstuff.arbaro.tree;
+
+import java.io.ByteArrayInputStream;
+import java.util.Enumeration;
+import net.katsstuff.arbaro.export.Progress;
+import net.katsstuff.arbaro.params.Params;
+
+/**
+ * The tree parameters and helpers shared by the tests of the tree package
+ */
+class TreeFixtures {
+
+	// the weeping willow with fewer levels
+	static final String willowCfg =
+		"species=pruned_willow\n" +
+		"Shape=3\n" +
+		"Levels=3\n" +
+		"Scale=15.0\n" +
+		"ScaleV=5.0\n" +
+		"BaseSize=0.05\n" +
+		"Ratio=0.03\n" +
+		"RatioPower=2.0\n" +
+		"Leaves=0\n" +
+		"AttractionUp=-2.0\n" +
+		"PruneRatio=1.0\n" +
+		"PrunePowerLow=0.001\n" +
+		"PrunePowerHigh=0.5\n" +
+		"PruneWidth=0.4\n" +
+		"PruneWidthPeak=0.6\n" +
+		"0BaseSplits=2\n" +
+		"0Length=0.8\n" +
+		"0SegSplits=0.1\n" +
+		"0SplitAngle=3.0\n" +
+		"0CurveRes=8\n" +
+		"0CurveBack=20.0\n" +
+		"0CurveV=120.0\n" +
+		"1DownAngle=20.0\n" +
+		"1DownAngleV=10.0\n" +
+		"1Rotate=-120.0\n" +
+		"1RotateV=30.0\n" +
+		"1Branches=25\n" +
+		"1Length=0.5\n" +
+		"1LengthV=0.1\n" +
+		"1SegSplits=0.2\n" +
+		"1SplitAngle=30.0\n" +
+		"1SplitAngleV=10.0\n" +
+		"1CurveRes=16\n" +
+		"1Curve=40.0\n" +
+		"1CurveBack=80.0\n" +
+		"1CurveV=90.0\n" +
+		"2DownAngle=30.0\n" +
+		"2DownAngleV=10.0\n" +
+		"2Rotate=-120.0\n" +
+		"2RotateV=30.0\n" +
+		"2Branches=10\n" +
+		"2Length=1.5\n" +
+		"2SegSplits=0.2\n" +
+		"2SplitAngle=45.0\n" +
+		"2SplitAngleV=20.0\n" +
+		"2CurveRes=12\n";
+
+	// the willow with two levels and leaves, small enough to be made often
+	static final String leafyWillowCfg = willowCfg.replaceAll("Leaves=0", "Leaves=10") + "Levels=2\n";
+
+	static Params readParams(String cfg) {
+		Params params = new Params();
+		params.readFromCfg(new ByteArrayInputStream(cfg.getBytes()));
+		return params;
+	}
+
+	static TreeImpl makeTree(String cfg, int seed) {
+		TreeImpl tree = new TreeImpl(seed, readParams(cfg));
+		tree.make(new Progress());
+		return tree;
+	}
+
+	/**
+	 * @return the positions, lengths and sections of all stems and the transformations of all leaves
+	 */
+	static String dump(Tree tree) {
+		final StringBuilder str = new StringBuilder();
+		tree.traverseTree(new DefaultTreeTraversal() {
+			public boolean enterStem(Stem stem) {
+				str.append(stem.getTreePosition()).append(' ').append(stem.getLength()).append('\n');
+				for (Enumeration e = stem.sections(); e.hasMoreElements(); ) {
+					StemSection section = (StemSection) e.nextElement();
+					str.append(section.getPosition()).append(section.getRadius()).append('\n');
+				}
+				return true;
+			}
+
+			public boolean visitLeaf(Leaf leaf) {
+				str.append(leaf.getTransformation()).append('\n');
+				return true;
+			}
+		});
+		return str.toString();
+	}
+}